@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent;
+
+/**
+ * Calculate num of cmd can be run concurrently from host load
+ *
+ * - cpu: each cmd is expected to use one cpu, the idle cpu is num of cpu minus load average
+ * - memory: each cmd is expected to use fixed size of memory
+ * - disk io: no more cmd is accepted when io wait over the threshold
+ *
+ * The running cmd are included in host load, so the capacity is num of running cmd plus the headroom
+ *
+ * @author yang
+ */
+public class AdaptiveCapacity {
+
+    private final static double MAX_IO_WAIT = 0.3;
+
+    private final int min;
+
+    private final int max;
+
+    private final long memoryPerCmd;
+
+    /**
+     * @param min min capacity
+     * @param max max capacity
+     * @param memoryPerCmd estimated memory used by each cmd in bytes
+     */
+    public AdaptiveCapacity(int min, int max, long memoryPerCmd) {
+        this.min = min;
+        this.max = Math.max(min, max);
+        this.memoryPerCmd = memoryPerCmd;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public int calculate(HostLoad load, int numOfRunning) {
+        int capacity = max;
+
+        if (load.getCpuLoad() >= 0) {
+            double idleCpu = load.getNumOfCpu() * (1 - load.getCpuLoad());
+            capacity = Math.min(capacity, numOfRunning + (int) Math.max(Math.floor(idleCpu), 0));
+        }
+
+        if (load.getFreeMemory() >= 0 && memoryPerCmd > 0) {
+            capacity = Math.min(capacity, numOfRunning + (int) (load.getFreeMemory() / memoryPerCmd));
+        }
+
+        if (load.getIoWait() > MAX_IO_WAIT) {
+            capacity = Math.min(capacity, numOfRunning);
+        }
+
+        return Math.min(Math.max(capacity, min), max);
+    }
+}
@@ -16,16 +16,22 @@
 
 package com.flow.platform.agent;
 
+import com.flow.platform.domain.AgentCapacity;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.Jsonable;
 import com.flow.platform.util.zk.ZKClient;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 import org.apache.curator.framework.CuratorFramework;
-import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
 import org.apache.curator.framework.recipes.cache.TreeCacheEvent.Type;
 import org.apache.curator.framework.recipes.cache.TreeCacheListener;
@@ -44,6 +50,11 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
 
     private final static int ZK_RETRY_PERIOD = 500;
 
+    private final static long CAPACITY_REPORT_PERIOD = 10; // in seconds
+
+    // length of sequence suffix of zookeeper sequential node
+    private final static int SEQUENCE_LENGTH = 10;
+
     @Getter
     private final ZKClient zkClient;
 
@@ -54,12 +65,34 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
     private final String nodePath;    // zk node path, /flow-agents/{zone}/{name}
 
     @Getter
-    private final List<Cmd> cmdHistory = new LinkedList<>();
+    private final String capacityPath; // zk node path for capacity, /flow-agents-capacity/{zone}/{name}
+
+    @Getter
+    private final String mailboxPath; // zk node path for cmd mailbox, /flow-agents-mailbox/{zone}/{name}
+
+    // received cmd, the oldest one is removed when over max history size
+    @Getter
+    private final List<Cmd> cmdHistory = Collections.synchronizedList(new LinkedList<>());
+
+    private final int maxCmdHistory = Config.cmdHistorySize();
+
+    private final ScheduledExecutorService capacityReporter = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("capacity-reporter").setDaemon(true).build());
+
+    // last capacity advertised to zookeeper
+    private AgentCapacity capacity;
+
+    private final Object mailboxLock = new Object();
+
+    // sequence of last consumed cmd in mailbox
+    private long lastCmdSequence = -1;
 
     public AgentManager(String zkHost, int zkTimeout, String zone, String name) {
         this.zkClient = new ZKClient(zkHost, ZK_RETRY_PERIOD, ZK_RECONNECT_TIME);
         this.zonePath = ZKPaths.makePath(Config.ZK_ROOT, zone);
         this.nodePath = ZKPaths.makePath(this.zonePath, name);
+        this.capacityPath = ZKPaths.makePath(Config.ZK_CAPACITY_ROOT, zone, name);
+        this.mailboxPath = ZKPaths.makePath(Config.ZK_MAILBOX_ROOT, zone, name);
     }
 
     /**
@@ -76,7 +109,10 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
         // init zookeeper
         zkClient.start();
 
+        initMailbox();
         registerZkNodeAndWatch();
+        capacityReporter.scheduleWithFixedDelay(
+            this::reportCapacity, CAPACITY_REPORT_PERIOD, CAPACITY_REPORT_PERIOD, TimeUnit.SECONDS);
 
         synchronized (STATUS_LOCKER) {
             try {
@@ -94,16 +130,11 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
 
     @Override
     public void childEvent(CuratorFramework client, TreeCacheEvent event) {
-        ChildData eventData = event.getData();
         log.trace("========= Event: {} =========", event.getType());
 
         if (event.getType() == Type.CONNECTION_RECONNECTED) {
             registerZkNodeAndWatch();
-            return;
-        }
-
-        if (event.getType() == Type.NODE_UPDATED) {
-            onDataChanged(eventData.getPath());
+            consumeMailbox();
             return;
         }
 
@@ -114,6 +145,7 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
 
     @Override
     public void close() {
+        capacityReporter.shutdownNow();
         removeZkNode();
         stop();
     }
@@ -132,11 +164,54 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
         }
     }
 
-    private void onDataChanged(String path) {
+    /**
+     * Clean cmd left in mailbox from previous agent process, the sequence restarts from 0
+     */
+    private void initMailbox() {
+        synchronized (mailboxLock) {
+            zkClient.deleteWithoutGuaranteed(mailboxPath, true);
+            zkClient.create(mailboxPath, null);
+            lastCmdSequence = -1;
+        }
+    }
+
+    /**
+     * Consume cmd in mailbox by sequence order, the cmd node is deleted as ack after cmd handled
+     */
+    private void consumeMailbox() {
+        synchronized (mailboxLock) {
+            try {
+                List<String> cmdNodes = zkClient.getChildren(mailboxPath);
+                Collections.sort(cmdNodes);
+
+                for (String cmdNode : cmdNodes) {
+                    String path = ZKPaths.makePath(mailboxPath, cmdNode);
+                    long sequence = Long.parseLong(cmdNode.substring(cmdNode.length() - SEQUENCE_LENGTH));
+
+                    // consumed but ack not finished
+                    if (sequence <= lastCmdSequence) {
+                        continue;
+                    }
+
+                    onCmdReceived(zkClient.getData(path));
+                    lastCmdSequence = sequence;
+
+                    zkClient.deleteAsync(path).whenComplete((ignore, e) -> {
+                        if (e != null) {
+                            log.warn("Fail to ack cmd {}: {}", path, e.getMessage());
+                        }
+                    });
+                }
+            } catch (Throwable e) {
+                log.error("Fail to consume cmd from mailbox", e);
+            }
+        }
+    }
+
+    private void onCmdReceived(byte[] rawData) {
         final Cmd cmd;
 
         try {
-            final byte[] rawData = zkClient.getData(path);
             if (rawData == null) {
                 log.warn("Zookeeper node data is null");
                 return;
@@ -148,7 +223,7 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
                 return;
             }
 
-            cmdHistory.add(cmd);
+            addCmdHistory(cmd);
             log.trace("Received command: " + cmd.toString());
             CmdManager.getInstance().execute(cmd);
 
@@ -160,17 +235,79 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
 
     /**
      * Register agent node to server
-     * Monitor data changed event
+     * Monitor agent node removed event and cmd added to mailbox
      *
      * @return path of zookeeper or null if failure
      */
     private String registerZkNodeAndWatch() {
         String path = zkClient.createEphemeral(nodePath, null);
         zkClient.watchTree(path, this);
+        zkClient.watchChildren(mailboxPath, (client, event) -> {
+            if (event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED) {
+                consumeMailbox();
+            }
+        });
+        registerCapacityNode();
         return path;
     }
 
+    /**
+     * Advertise capacity to control center by ephemeral node
+     */
+    private synchronized void registerCapacityNode() {
+        try {
+            capacity = CmdManager.getInstance().capacity();
+            zkClient.create(ZKPaths.getPathAndNode(capacityPath).getPath(), null);
+            zkClient.createEphemeral(capacityPath, capacity.toBytes());
+        } catch (Throwable e) {
+            log.warn("Fail to register capacity node: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Update capacity node data only if capacity or num of running cmd changed
+     */
+    private synchronized void reportCapacity() {
+        try {
+            AgentCapacity current = CmdManager.getInstance().capacity();
+            if (capacity != null
+                && capacity.getCapacity() == current.getCapacity()
+                && capacity.getRunning() == current.getRunning()) {
+                return;
+            }
+
+            capacity = current;
+            zkClient.createEphemeralAsync(capacityPath, current.toBytes()).whenComplete((path, e) -> {
+                if (e != null) {
+                    log.warn("Fail to report capacity: {}", e.getMessage());
+
+                    // reset reported capacity to report again in next round
+                    synchronized (this) {
+                        capacity = null;
+                    }
+                    return;
+                }
+
+                log.trace("Capacity reported: {}", current);
+            });
+        } catch (Throwable e) {
+            log.warn("Fail to report capacity: {}", e.getMessage());
+        }
+    }
+
     private void removeZkNode() {
         zkClient.deleteWithoutGuaranteed(nodePath, false);
+        zkClient.deleteWithoutGuaranteed(capacityPath, false);
+        zkClient.deleteWithoutGuaranteed(mailboxPath, true);
+    }
+
+    private void addCmdHistory(Cmd cmd) {
+        synchronized (cmdHistory) {
+            cmdHistory.add(cmd);
+
+            while (cmdHistory.size() > maxCmdHistory) {
+                cmdHistory.remove(0);
+            }
+        }
     }
-}
\ No newline at end of file
+}
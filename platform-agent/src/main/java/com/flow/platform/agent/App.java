@@ -84,6 +84,8 @@ public class App {
                 agentManager.close();
             }
 
+            ReportManager.getInstance().close();
+
             log.trace("========= Agent end =========");
             log.trace("========= JVM EXIT =========");
         }
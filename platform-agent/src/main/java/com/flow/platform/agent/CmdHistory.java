@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent;
+
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdResult;
+import com.google.common.cache.CacheBuilder;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Bounded history of finished and rejected cmd, the oldest records are evicted by max size or max age
+ *
+ * Process handle of cmd result is released when cmd recorded to history
+ *
+ * @author yang
+ */
+public class CmdHistory {
+
+    /**
+     * Summary stats of cmd history, the duration percentiles are from recent finished cmd
+     */
+    @Getter
+    @ToString
+    public static class Summary {
+
+        private final long numOfFinished;
+
+        private final long numOfFailed;
+
+        private final long numOfRejected;
+
+        private final long p50Duration; // in millis
+
+        private final long p99Duration; // in millis
+
+        Summary(long numOfFinished, long numOfFailed, long numOfRejected, long p50Duration, long p99Duration) {
+            this.numOfFinished = numOfFinished;
+            this.numOfFailed = numOfFailed;
+            this.numOfRejected = numOfRejected;
+            this.p50Duration = p50Duration;
+            this.p99Duration = p99Duration;
+        }
+    }
+
+    private final Map<Cmd, CmdResult> finished;
+
+    private final Map<Cmd, CmdResult> rejected;
+
+    private final AtomicLong numOfFinished = new AtomicLong(0);
+
+    private final AtomicLong numOfFailed = new AtomicLong(0);
+
+    private final AtomicLong numOfRejected = new AtomicLong(0);
+
+    // ring buffer of recent finished cmd duration in millis
+    private final long[] durations;
+
+    private int numOfDurations = 0;
+
+    private int durationIndex = 0;
+
+    /**
+     * @param maxSize max num of records for finished and rejected cmd
+     * @param maxAge max age of record in seconds
+     */
+    public CmdHistory(int maxSize, long maxAge) {
+        this.finished = buildStore(maxSize, maxAge);
+        this.rejected = buildStore(maxSize, maxAge);
+        this.durations = new long[maxSize];
+    }
+
+    /**
+     * @return finished cmd and result
+     */
+    public Map<Cmd, CmdResult> getFinished() {
+        return finished;
+    }
+
+    /**
+     * @return rejected cmd and result
+     */
+    public Map<Cmd, CmdResult> getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Record finished cmd and release process of result
+     */
+    public void finish(Cmd cmd, CmdResult result) {
+        result.setProcess(null);
+        finished.put(cmd, result);
+
+        numOfFinished.incrementAndGet();
+        if (!result.getExceptions().isEmpty() || !isSuccess(result)) {
+            numOfFailed.incrementAndGet();
+        }
+
+        if (result.getStartTime() != null && result.getFinishTime() != null) {
+            recordDuration(Duration.between(result.getStartTime(), result.getFinishTime()).toMillis());
+        }
+    }
+
+    public void reject(Cmd cmd, CmdResult result) {
+        result.setProcess(null);
+        rejected.put(cmd, result);
+        numOfRejected.incrementAndGet();
+    }
+
+    public Summary summary() {
+        long[] sorted;
+        synchronized (durations) {
+            sorted = Arrays.copyOf(durations, numOfDurations);
+        }
+
+        Arrays.sort(sorted);
+        return new Summary(numOfFinished.get(), numOfFailed.get(), numOfRejected.get(),
+            percentile(sorted, 50), percentile(sorted, 99));
+    }
+
+    public void clear() {
+        finished.clear();
+        rejected.clear();
+
+        synchronized (durations) {
+            numOfDurations = 0;
+            durationIndex = 0;
+        }
+    }
+
+    private void recordDuration(long duration) {
+        synchronized (durations) {
+            durations[durationIndex] = duration;
+            durationIndex = (durationIndex + 1) % durations.length;
+            numOfDurations = Math.min(numOfDurations + 1, durations.length);
+        }
+    }
+
+    private static boolean isSuccess(CmdResult result) {
+        return result.getExitValue() != null && result.getExitValue() == 0;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    private static Map<Cmd, CmdResult> buildStore(int maxSize, long maxAge) {
+        return CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(maxAge, TimeUnit.SECONDS)
+            .<Cmd, CmdResult>build()
+            .asMap();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent;
+
+import com.flow.platform.util.ExceptionUtil;
+import com.flow.platform.util.http.HttpClient;
+import com.flow.platform.util.http.HttpResponse;
+import com.flow.platform.util.http.HttpURL;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.log4j.Log4j2;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Upload zipped cmd log in chunks while cmd is running
+ *
+ * The zipped log file is append only while writing, so the bytes already on disk are shipped to control
+ * center periodically from the acknowledged offset. Control center returns the acknowledged offset for
+ * each chunk, the upload resumes from it after any failure
+ *
+ * @author yang
+ */
+@Log4j2
+public class CmdLogUploader {
+
+    private final static long UPLOAD_INTERVAL = 5; // in seconds
+
+    private final static int CHUNK_SIZE = 1024 * 1024;
+
+    private final static int MAX_RETRY = 5;
+
+    private final static int MAX_FINISH_RETRY = 2;
+
+    private final static ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(2,
+        new ThreadFactoryBuilder().setNameFormat("cmd-log-uploader-%d").setDaemon(true).build());
+
+    private final String cmdId;
+
+    private final ScheduledFuture<?> task;
+
+    private Path path;
+
+    private long offset = 0;
+
+    public CmdLogUploader(String cmdId, Path path) {
+        this.cmdId = cmdId;
+        this.path = path;
+        this.task = SCHEDULER.scheduleWithFixedDelay(this::upload, UPLOAD_INTERVAL, UPLOAD_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Get acknowledged offset of zipped log
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Stop periodic upload
+     */
+    public void cancel() {
+        task.cancel(false);
+    }
+
+    /**
+     * Stop periodic upload, then upload rest of chunks and complete upload
+     *
+     * @param path zipped log path which may be renamed after log finished
+     * @return true if all chunks uploaded and completed
+     */
+    public boolean finish(Path path) {
+        cancel();
+
+        synchronized (this) {
+            this.path = path;
+
+            for (int i = 0; i <= MAX_FINISH_RETRY; i++) {
+                if (upload() && complete()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Upload chunks from acknowledged offset to current end of file
+     *
+     * @return true if no chunk left
+     */
+    private synchronized boolean upload() {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (offset < channel.size()) {
+                Long acked = sendChunk(channel);
+
+                // stop if failure or control center not accept the chunk
+                if (acked == null || acked == offset) {
+                    return false;
+                }
+
+                offset = acked;
+            }
+
+            return true;
+        } catch (Throwable e) {
+            log.warn("Fail to upload cmd {} log chunk: {}", cmdId, ExceptionUtil.findRootCause(e).getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Read chunk from acknowledged offset and send to control center
+     *
+     * @return acknowledged offset from control center or null if failure
+     */
+    private Long sendChunk(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, channel.size() - offset));
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+            // read until buffer filled
+        }
+
+        String url = HttpURL.build(Config.agentSettings().getCmdLogUrl())
+            .append("chunk")
+            .withParam("cmdId", cmdId)
+            .withParam("offset", Long.toString(offset))
+            .toString();
+
+        HttpResponse<String> response = HttpClient.build(url)
+            .post(new ByteArrayEntity(buffer.array(), 0, buffer.position(), ContentType.APPLICATION_OCTET_STREAM))
+            .retry(MAX_RETRY)
+            .bodyAsString();
+
+        if (!response.hasSuccess()) {
+            log.warn("Fail to upload cmd {} log chunk to {} with status {}", cmdId, url, response.getStatusCode());
+            return null;
+        }
+
+        return Long.parseLong(response.getBody().trim());
+    }
+
+    private boolean complete() {
+        String url = HttpURL.build(Config.agentSettings().getCmdLogUrl())
+            .append("complete")
+            .withParam("cmdId", cmdId)
+            .withParam("size", Long.toString(offset))
+            .toString();
+
+        HttpResponse<String> response = HttpClient.build(url).post().retry(MAX_RETRY).bodyAsString();
+
+        if (!response.hasSuccess()) {
+            log.warn("Fail to complete cmd {} log upload with status {}", cmdId, response.getStatusCode());
+            return false;
+        }
+
+        log.trace("Zipped cmd log uploaded in chunks with {} bytes", offset);
+        return true;
+    }
+}
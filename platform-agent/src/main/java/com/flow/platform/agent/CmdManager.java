@@ -20,6 +20,7 @@ import com.flow.platform.cmd.CmdExecutor;
 import com.flow.platform.cmd.Log;
 import com.flow.platform.cmd.Log.Type;
 import com.flow.platform.cmd.ProcListener;
+import com.flow.platform.domain.AgentCapacity;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
@@ -38,6 +39,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -58,11 +60,8 @@ public class CmdManager {
     // current running cmd data
     private final Map<Cmd, CmdResult> running = Maps.newConcurrentMap();
 
-    // finished cmd data
-    private final Map<Cmd, CmdResult> finished = Maps.newConcurrentMap();
-
-    // rejected cmd data
-    private final Map<Cmd, CmdResult> rejected = Maps.newConcurrentMap();
+    // bounded finished and rejected cmd data
+    private final CmdHistory history = new CmdHistory(Config.cmdHistorySize(), Config.cmdHistoryAge());
 
     // Make thread to Daemon thread, those threads exit while JVM exist
     private final ThreadFactory defaultFactory = r -> {
@@ -71,6 +70,15 @@ public class CmdManager {
         return t;
     };
 
+    // Calculate num of concurrent cmd from host load in adaptive mode
+    private final AdaptiveCapacity adaptiveCapacity =
+        new AdaptiveCapacity(1, Config.maxConcurrentThreadNum(), Config.cmdMemory() * 1024 * 1024);
+
+    private final HostLoad.Sampler hostLoadSampler = new HostLoad.Sampler();
+
+    // Current num of concurrent cmd
+    private volatile int poolSize = initPoolSize();
+
     // Executor to execute command and shell
     private ThreadPoolExecutor cmdExecutor = createExecutor();
 
@@ -94,14 +102,18 @@ public class CmdManager {
      * @return finished cmd and result
      */
     public Map<Cmd, CmdResult> getFinished() {
-        return finished;
+        return history.getFinished();
     }
 
     /**
      * @return rejected cmd and result
      */
     public Map<Cmd, CmdResult> getRejected() {
-        return rejected;
+        return history.getRejected();
+    }
+
+    public CmdHistory getHistory() {
+        return history;
     }
 
     public ThreadPoolExecutor getCmdExecutor() {
@@ -112,6 +124,46 @@ public class CmdManager {
         return extraProcEventListeners;
     }
 
+    /**
+     * Sample host load and get current capacity, the cmd executor is resized by host load in adaptive mode
+     */
+    public AgentCapacity capacity() {
+        HostLoad load = hostLoadSampler.sample();
+        int numOfRunning = cmdExecutor.getActiveCount();
+
+        if (Config.isAdaptiveThread()) {
+            resize(adaptiveCapacity.calculate(load, numOfRunning));
+        }
+
+        AgentCapacity capacity = new AgentCapacity(poolSize, numOfRunning);
+        capacity.setCpuLoad(load.getCpuLoad());
+        capacity.setFreeMemory(load.getFreeMemory());
+        capacity.setIoWait(load.getIoWait());
+        return capacity;
+    }
+
+    /**
+     * Resize cmd executor, the running cmd are not affected when shrink
+     */
+    public synchronized void resize(int size) {
+        if (size < 1 || size == poolSize) {
+            return;
+        }
+
+        log.trace("Resize cmd executor from {} to {}", poolSize, size);
+
+        // max pool size cannot be less than core pool size
+        if (size > poolSize) {
+            cmdExecutor.setMaximumPoolSize(size);
+            cmdExecutor.setCorePoolSize(size);
+        } else {
+            cmdExecutor.setCorePoolSize(size);
+            cmdExecutor.setMaximumPoolSize(size);
+        }
+
+        poolSize = size;
+    }
+
     /**
      * Stop all executing processes and exit agent
      */
@@ -156,8 +208,8 @@ public class CmdManager {
             int cur = cmdExecutor.getActiveCount();
             log.trace(" ===== CmdExecutor: max={}, current={} =====", max, cur);
 
-            // reach max proc number, reject this execute
-            if (max == cur) {
+            // reach max proc number, reject this execute, current may over max after executor shrink
+            if (cur >= max) {
                 onReject(cmd);
                 return;
             }
@@ -170,7 +222,7 @@ public class CmdManager {
                     LogEventHandler logListener = new LogEventHandler(getCmd());
 
                     ProcEventHandler procEventHandler =
-                        new ProcEventHandler(getCmd(), extraProcEventListeners, running, finished);
+                        new ProcEventHandler(getCmd(), extraProcEventListeners, running, history);
 
                     try {
                         CmdExecutor executor = new CmdExecutor(
@@ -206,7 +258,7 @@ public class CmdManager {
 
         // kill current running proc
         if (cmd.getType() == CmdType.KILL) {
-            defaultExecutor.execute(this::kill);
+            defaultExecutor.execute(() -> kill(cmd));
             return;
         }
 
@@ -248,36 +300,72 @@ public class CmdManager {
         return Jsonable.GSON_CONFIG.toJson(dic);
     }
 
+    /**
+     * Kill running process by KILL cmd, since the agent may run cmd of multiple sessions
+     * - kill process of session if KILL cmd has session id
+     * - kill process of cmd which id is the content of KILL cmd
+     * - otherwise kill all current running process
+     */
+    public void kill(Cmd killCmd) {
+        if (killCmd.getSessionId() != null) {
+            kill(cmd -> killCmd.getSessionId().equals(cmd.getSessionId()));
+            return;
+        }
+
+        if (killCmd.getCmd() != null) {
+            kill(cmd -> killCmd.getCmd().equals(cmd.getId()));
+            return;
+        }
+
+        kill();
+    }
+
     /**
      * Kill all current running process
      */
     public synchronized void kill() {
         cmdExecutor.shutdown();
+        kill(cmd -> true);
+
+        try {
+            cmdExecutor.shutdownNow();
+        } catch (Throwable ignore) {
+
+        } finally {
+            cmdExecutor = createExecutor(); // reset cmd executor
+            log.trace("Cmd thread terminated");
+        }
+    }
+
+    private synchronized void kill(Predicate<Cmd> filter) {
         ZonedDateTime now = ZonedDateTime.now();
 
         for (Map.Entry<Cmd, CmdResult> entry : running.entrySet()) {
+            Cmd cmd = entry.getKey();
+            if (!filter.test(cmd)) {
+                continue;
+            }
+
             CmdResult r = entry.getValue();
+
+            // cmd already finished, or killed by other thread
+            if (!running.remove(cmd, r)) {
+                continue;
+            }
+
             r.setExecutedTime(now);
             r.setFinishTime(now);
             r.setExitValue(CmdResult.EXIT_VALUE_FOR_KILL);
 
-            Cmd cmd = entry.getKey();
-            finished.put(cmd, r);
-
-            r.getProcess().destroy();
+            // process is released when cmd recorded to history
+            if (r.getProcess() != null) {
+                r.getProcess().destroy();
+            }
+            history.finish(cmd, r);
 
-            ReportManager.getInstance().cmdReportSync(cmd.getId(), CmdStatus.KILLED, r);
+            ReportManager.getInstance().cmdReport(cmd.getId(), CmdStatus.KILLED, r);
             log.trace("Kill process : {}", r.toString());
         }
-
-        try {
-            cmdExecutor.shutdownNow();
-        } catch (Throwable ignore) {
-
-        } finally {
-            cmdExecutor = createExecutor(); // reset cmd executor
-            log.trace("Cmd thread terminated");
-        }
     }
 
     private void onReject(final Cmd cmd) {
@@ -289,15 +377,25 @@ public class CmdManager {
         rejectResult.setExecutedTime(now);
         rejectResult.setFinishTime(now);
 
-        rejected.put(cmd, rejectResult);
-        ReportManager.getInstance().cmdReportSync(cmd.getId(), CmdStatus.REJECTED, null);
+        history.reject(cmd, rejectResult);
+        ReportManager.getInstance().cmdReport(cmd.getId(), CmdStatus.REJECTED, null);
         log.warn("Reject cmd '{}' since over the limit proc of agent", cmd.getId());
     }
 
+    private int initPoolSize() {
+        int size = Config.concurrentThreadNum();
+
+        if (Config.isAdaptiveThread()) {
+            return Math.min(Math.max(size, adaptiveCapacity.getMin()), adaptiveCapacity.getMax());
+        }
+
+        return size;
+    }
+
     private ThreadPoolExecutor createExecutor() {
         return new ThreadPoolExecutor(
-            Config.concurrentThreadNum(),
-            Config.concurrentThreadNum(),
+            poolSize,
+            poolSize,
             0L,
             TimeUnit.SECONDS,
             new LinkedBlockingQueue<>(),
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent;
+
+import com.flow.platform.domain.CmdReport;
+import com.flow.platform.domain.Jsonable;
+import com.flow.platform.util.ExceptionUtil;
+import com.flow.platform.util.http.HttpClient;
+import com.flow.platform.util.http.HttpResponse;
+import com.flow.platform.util.http.HttpURL;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.log4j.Log4j2;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Accumulate cmd reports for a short interval and send them to control center in one request
+ *
+ * The reports of the same cmd are collapsed to the one with highest status level, the reports
+ * which cannot be sent are kept in spill file and resent later, even after agent restarted
+ *
+ * @author yang
+ */
+@Log4j2
+public class CmdReportBatcher {
+
+    private final static long BATCH_INTERVAL = 50; // in millis
+
+    private final static long SPILL_RETRY_INTERVAL = 10 * 1000; // in millis
+
+    private final static int MAX_BATCH_SIZE = 100;
+
+    private final static int MAX_RETRY = 2;
+
+    private final static long CLOSE_TIMEOUT = 10; // in seconds
+
+    private final Path spillFile;
+
+    private final Map<String, CmdReport> pending = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("cmd-report-batcher").setDaemon(true).build());
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    public CmdReportBatcher(Path spillFile) {
+        this.spillFile = spillFile;
+
+        // resend reports spilled before agent restarted
+        if (Files.exists(spillFile)) {
+            scheduleFlush(BATCH_INTERVAL);
+        }
+    }
+
+    /**
+     * Add report to batch, it replaces the pending report of the same cmd with lower status level
+     */
+    public synchronized void add(CmdReport report) {
+        collapse(pending, report);
+        scheduleFlush(BATCH_INTERVAL);
+    }
+
+    /**
+     * Send pending reports and stop batcher, the reports which cannot be sent are kept in spill file
+     */
+    public void close() {
+        // cancel scheduled flush since it may be interrupted by shutdown while writing spill file
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+            }
+        }
+
+        try {
+            scheduler.submit(this::flush).get(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (Throwable e) {
+            log.warn("Unable to flush cmd reports on close: {}", ExceptionUtil.findRootCause(e).getMessage());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Send spilled and pending reports in batches, only run on scheduler thread
+     *
+     * The pending reports are removed only after they are sent or written to spill file,
+     * otherwise they are kept and flush is rescheduled
+     */
+    private void flush() {
+        Map<String, CmdReport> flushing;
+
+        synchronized (this) {
+            flushing = new LinkedHashMap<>(pending);
+            scheduledFlush = null;
+        }
+
+        try {
+            Map<String, CmdReport> reports = new LinkedHashMap<>();
+
+            for (CmdReport report : readSpill()) {
+                collapse(reports, report);
+            }
+
+            for (CmdReport report : flushing.values()) {
+                collapse(reports, report);
+            }
+
+            if (reports.isEmpty()) {
+                return;
+            }
+
+            if (sendOrSpill(new ArrayList<>(reports.values()))) {
+                removePending(flushing);
+                return;
+            }
+        } catch (Throwable e) {
+            log.warn("Unable to flush cmd reports: {}", ExceptionUtil.findRootCause(e).getMessage());
+        }
+
+        scheduleFlush(SPILL_RETRY_INTERVAL);
+    }
+
+    /**
+     * Send reports in batches, write the reports not been sent to spill file and schedule resend
+     *
+     * @return false if reports neither sent nor spilled
+     */
+    private boolean sendOrSpill(List<CmdReport> all) {
+        for (int i = 0; i < all.size(); i += MAX_BATCH_SIZE) {
+            List<CmdReport> batch = all.subList(i, Math.min(i + MAX_BATCH_SIZE, all.size()));
+
+            if (!send(batch)) {
+                if (!writeSpill(all.subList(i, all.size()))) {
+                    return false;
+                }
+
+                scheduleFlush(SPILL_RETRY_INTERVAL);
+                return true;
+            }
+        }
+
+        deleteSpill();
+        return true;
+    }
+
+    /**
+     * Remove flushed reports from pending, the report replaced by new one while flushing is kept
+     */
+    private synchronized void removePending(Map<String, CmdReport> flushed) {
+        for (CmdReport report : flushed.values()) {
+            if (pending.get(report.getId()) == report) {
+                pending.remove(report.getId());
+            }
+        }
+    }
+
+    private boolean send(Collection<CmdReport> batch) {
+        String url = HttpURL.build(Config.agentSettings().getCmdStatusUrl()).append("batch").toString();
+
+        try {
+            HttpResponse<String> response = HttpClient.build(url)
+                .post(Jsonable.GSON_CONFIG.toJson(batch))
+                .retry(MAX_RETRY)
+                .withContentType(ContentType.APPLICATION_JSON)
+                .bodyAsString();
+
+            if (!response.hasSuccess()) {
+                log.warn("Fail to report {} cmd status to {} with status {}",
+                    batch.size(), url, response.getStatusCode());
+                return false;
+            }
+
+            log.trace("{} cmd status been reported", batch.size());
+            return true;
+        } catch (Throwable e) {
+            log.warn("Fail to report cmd status since {}", ExceptionUtil.findRootCause(e).getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void scheduleFlush(long delay) {
+        if (scheduledFlush != null || scheduler.isShutdown()) {
+            return;
+        }
+
+        scheduledFlush = scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private List<CmdReport> readSpill() {
+        List<CmdReport> reports = new ArrayList<>();
+
+        if (!Files.exists(spillFile)) {
+            return reports;
+        }
+
+        try {
+            byte[] bytes = Files.readAllBytes(spillFile);
+            CmdReport[] spilled = Jsonable.parseArray(bytes, CmdReport[].class);
+
+            if (spilled != null) {
+                for (CmdReport report : spilled) {
+                    reports.add(report);
+                }
+            }
+        } catch (Throwable e) {
+            log.warn("Unable to read cmd report spill file {}: {}", spillFile, e.getMessage());
+        }
+
+        return reports;
+    }
+
+    /**
+     * Write reports to temp file and move to spill file, to avoid partial written spill file
+     *
+     * @return false if unable to write spill file
+     */
+    private boolean writeSpill(Collection<CmdReport> reports) {
+        try {
+            Files.createDirectories(spillFile.toAbsolutePath().getParent());
+
+            Path temp = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+            Files.write(temp, Jsonable.GSON_CONFIG.toJson(reports).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            log.trace("{} cmd reports been written to spill file {}", reports.size(), spillFile);
+            return true;
+        } catch (Throwable e) {
+            log.error("Unable to write cmd report spill file {}: {}", spillFile,
+                ExceptionUtil.findRootCause(e).getMessage());
+            return false;
+        }
+    }
+
+    private void deleteSpill() {
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            log.warn("Unable to delete cmd report spill file {}: {}", spillFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Put report to map if no report for the cmd or its status level is not lower than existing one
+     */
+    private static void collapse(Map<String, CmdReport> reports, CmdReport report) {
+        CmdReport existing = reports.get(report.getId());
+
+        if (existing == null || report.getStatus().getLevel() >= existing.getStatus().getLevel()) {
+            reports.put(report.getId(), report);
+        }
+    }
+}
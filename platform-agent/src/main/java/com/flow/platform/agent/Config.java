@@ -37,10 +37,20 @@ public class Config {
 
     public final static String ZK_ROOT = "flow-agents";
 
+    public final static String ZK_CAPACITY_ROOT = "flow-agents-capacity";
+
+    public final static String ZK_MAILBOX_ROOT = "flow-agents-mailbox";
+
     /* Config properties by using -Dxxx.xxx = xxx as JVM parameter */
     public final static String PROP_IS_DEBUG = "flow.agent.debug";
     public final static String PROP_CONCURRENT_THREAD = "flow.agent.cmd.thread";
+    public final static String PROP_ADAPTIVE_THREAD = "flow.agent.cmd.thread.adaptive";
+    public final static String PROP_MAX_CONCURRENT_THREAD = "flow.agent.cmd.thread.max";
+    public final static String PROP_CMD_MEMORY = "flow.agent.cmd.memory";
     public final static String PROP_REPORT_STATUS = "flow.agent.cmd.report";
+    public final static String PROP_REPORT_SPILL_FILE = "flow.agent.cmd.report.spill";
+    public final static String PROP_CMD_HISTORY_SIZE = "flow.agent.cmd.history.size";
+    public final static String PROP_CMD_HISTORY_AGE = "flow.agent.cmd.history.age";
 
     public final static String PROP_UPLOAD_AGENT_LOG = "flow.agent.log.upload";
     public final static String PROP_ENABLE_REALTIME_AGENT_LOG = "flow.agent.log.realtime";
@@ -132,11 +142,68 @@ public class Config {
         }
     }
 
+    /**
+     * File to keep cmd reports which cannot be sent to control center
+     */
+    public static Path reportSpillFile() {
+        Path defaultPath = Paths.get(System.getProperty("user.home"), ".flow-agent", "cmd-report.spill");
+        String pathStr = System.getProperty(PROP_REPORT_SPILL_FILE, defaultPath.toString());
+
+        try {
+            return Paths.get(pathStr);
+        } catch (Throwable e) {
+            return defaultPath;
+        }
+    }
+
+    /**
+     * Max num of finished and rejected cmd kept in memory
+     */
+    public static int cmdHistorySize() {
+        String intStr = System.getProperty(PROP_CMD_HISTORY_SIZE, "1000");
+        return Integer.parseInt(intStr);
+    }
+
+    /**
+     * Max age in seconds of finished and rejected cmd kept in memory
+     */
+    public static long cmdHistoryAge() {
+        String longStr = System.getProperty(PROP_CMD_HISTORY_AGE, "86400");
+        return Long.parseLong(longStr);
+    }
+
     public static int concurrentThreadNum() {
         String intStr = System.getProperty(PROP_CONCURRENT_THREAD, "2");
         return Integer.parseInt(intStr);
     }
 
+    /**
+     * Is resize cmd executor by host load, the concurrent thread num is used as initial size
+     */
+    public static boolean isAdaptiveThread() {
+        String boolStr = System.getProperty(PROP_ADAPTIVE_THREAD, "false");
+        return Boolean.parseBoolean(boolStr);
+    }
+
+    /**
+     * Max concurrent thread num in adaptive mode, default is num of cpu
+     */
+    public static int maxConcurrentThreadNum() {
+        String intStr = System.getProperty(PROP_MAX_CONCURRENT_THREAD);
+        if (intStr == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return Integer.parseInt(intStr);
+    }
+
+    /**
+     * Estimated memory in MB used by each cmd in adaptive mode
+     */
+    public static long cmdMemory() {
+        String longStr = System.getProperty(PROP_CMD_MEMORY, "512");
+        return Long.parseLong(longStr);
+    }
+
     public static String sudoPassword() {
         return System.getProperty(PROP_SUDO_PASSWORD, StringUtil.EMPTY);
     }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Snapshot of host load, the metric is negative if not available on the host
+ *
+ * @author yang
+ */
+@Getter
+@ToString
+public class HostLoad {
+
+    private final int numOfCpu;
+
+    /**
+     * System load average per cpu
+     */
+    private final double cpuLoad;
+
+    /**
+     * Free physical memory in bytes
+     */
+    private final long freeMemory;
+
+    /**
+     * Ratio of cpu time waiting for disk io since last sample
+     */
+    private final double ioWait;
+
+    public HostLoad(int numOfCpu, double cpuLoad, long freeMemory, double ioWait) {
+        this.numOfCpu = numOfCpu;
+        this.cpuLoad = cpuLoad;
+        this.freeMemory = freeMemory;
+        this.ioWait = ioWait;
+    }
+
+    /**
+     * Sample host load from os mx bean, the io wait is calculated from /proc/stat on linux
+     */
+    @Log4j2
+    public static class Sampler {
+
+        private final static Path PROC_STAT = Paths.get("/proc/stat");
+
+        private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+        private long lastIoWait = -1;
+
+        private long lastTotal = -1;
+
+        public synchronized HostLoad sample() {
+            int numOfCpu = os.getAvailableProcessors();
+
+            double loadAverage = os.getSystemLoadAverage();
+            double cpuLoad = loadAverage < 0 ? -1 : loadAverage / numOfCpu;
+
+            long freeMemory = -1;
+            if (os instanceof com.sun.management.OperatingSystemMXBean) {
+                freeMemory = ((com.sun.management.OperatingSystemMXBean) os).getFreePhysicalMemorySize();
+            }
+
+            return new HostLoad(numOfCpu, cpuLoad, freeMemory, sampleIoWait());
+        }
+
+        private double sampleIoWait() {
+            if (!Files.isReadable(PROC_STAT)) {
+                return -1;
+            }
+
+            try {
+                List<String> lines = Files.readAllLines(PROC_STAT);
+
+                // cpu user nice system idle iowait irq softirq steal, guest time is included in user time
+                String[] fields = lines.get(0).trim().split("\\s+");
+                if (fields.length < 6) {
+                    return -1;
+                }
+
+                long total = 0;
+                for (int i = 1; i < Math.min(fields.length, 9); i++) {
+                    total += Long.parseLong(fields[i]);
+                }
+                long ioWait = Long.parseLong(fields[5]);
+
+                double ratio = -1;
+                if (lastTotal >= 0 && total > lastTotal) {
+                    ratio = (double) (ioWait - lastIoWait) / (total - lastTotal);
+                }
+
+                lastIoWait = ioWait;
+                lastTotal = total;
+                return ratio;
+
+            } catch (IOException | RuntimeException e) {
+                log.warn("Fail to sample io wait from {}: {}", PROC_STAT, e.getMessage());
+                return -1;
+            }
+        }
+    }
+}
@@ -20,16 +20,27 @@ import com.flow.platform.cmd.Log;
 import com.flow.platform.cmd.LogListener;
 import com.flow.platform.domain.AgentSettings;
 import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdLogFrame;
+import com.flow.platform.domain.CmdLogFrame.Header;
+import com.flow.platform.domain.CmdLogFrame.LinesWriter;
 import com.flow.platform.util.CommandUtil.Unix;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.zip.ZipEntry;
@@ -53,6 +64,22 @@ public class LogEventHandler implements LogListener {
 
     private final static Path DEFAULT_LOG_PATH = Config.logDir();
 
+    private final static byte[] LINE_SEPARATOR = Unix.LINE_SEPARATOR.getBytes();
+
+    // max time of real time log lines kept in batch
+    private final static long REALTIME_LOG_FLUSH_INTERVAL = 100; // in millis
+
+    // max size of real time log batch in bytes
+    private final static int REALTIME_LOG_BATCH_SIZE = 32 * 1024;
+
+    // max size of line in real time log, the full line is kept in zipped log
+    private final static int REALTIME_LOG_MAX_LINE_SIZE = 64 * 1024;
+
+    private final static boolean IS_UTF8_DEFAULT = Charset.defaultCharset().equals(StandardCharsets.UTF_8);
+
+    private final static ScheduledExecutorService REALTIME_LOG_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("realtime-log-flusher").setDaemon(true).build());
+
     private final Cmd cmd;
 
     private Path stdoutLogPath;
@@ -61,6 +88,12 @@ public class LogEventHandler implements LogListener {
 
     private Session wsSession;
 
+    private final LinesWriter realtimeLogWriter = new LinesWriter(REALTIME_LOG_BATCH_SIZE);
+
+    private ScheduledFuture<?> realtimeLogFlushTask;
+
+    private CmdLogUploader logUploader;
+
     public LogEventHandler(Cmd cmd) {
         this.cmd = cmd;
 
@@ -77,9 +110,13 @@ public class LogEventHandler implements LogListener {
             return;
         }
 
-        // init rabbit queue
+        // init web socket session and send header once
         try {
             initWebSocketSession(config.getWebSocketUrl(), 10);
+            wsSession.getBasicRemote().sendBinary(CmdLogFrame.header(websocketLogHeader()));
+
+            realtimeLogFlushTask = REALTIME_LOG_SCHEDULER.scheduleWithFixedDelay(this::flushRealTimeLog,
+                REALTIME_LOG_FLUSH_INTERVAL, REALTIME_LOG_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
         } catch (Throwable warn) {
             wsSession = null;
             log.warn("Fail to web socket: " + config.getWebSocketUrl() + ": " + warn.getMessage());
@@ -88,43 +125,78 @@ public class LogEventHandler implements LogListener {
 
     @Override
     public void onLog(Log log) {
-        LogEventHandler.log.debug(log.toString());
+        LogEventHandler.log.debug("{}", log);
 
         sendRealTimeLog(log);
 
-        // write stdout & stderr
-        writeZipStream(stdoutLogZipStream, log.getContent());
+        // write stdout & stderr with raw bytes
+        writeZipStream(stdoutLogZipStream, log.getBytes());
     }
 
+    /**
+     * Add log to real time log batch, the batch is sent when it's full or by flush task
+     */
     private void sendRealTimeLog(Log log) {
         if (wsSession == null) {
             return;
         }
 
-        try {
-            String format = websocketLogFormat(log);
-            wsSession.getBasicRemote().sendText(format);
-            LogEventHandler.log.debug("Log sent: {}", format);
-        } catch (Throwable e) {
-            LogEventHandler.log.warn("Fail to send real time log to queue");
+        byte[] content = IS_UTF8_DEFAULT ? log.getBytes() : log.getContent().getBytes(StandardCharsets.UTF_8);
+        if (content.length > REALTIME_LOG_MAX_LINE_SIZE) {
+            content = Arrays.copyOf(content, REALTIME_LOG_MAX_LINE_SIZE);
+        }
+
+        int number = log.getNumber() == null ? 0 : log.getNumber();
+
+        synchronized (realtimeLogWriter) {
+            realtimeLogWriter.add(number, content);
+
+            if (realtimeLogWriter.size() >= REALTIME_LOG_BATCH_SIZE) {
+                flushRealTimeLog();
+            }
+        }
+    }
+
+    private void flushRealTimeLog() {
+        synchronized (realtimeLogWriter) {
+            if (realtimeLogWriter.numOfLines() == 0) {
+                return;
+            }
+
+            int numOfLines = realtimeLogWriter.numOfLines();
+            ByteBuffer frame = realtimeLogWriter.flush();
+
+            try {
+                wsSession.getBasicRemote().sendBinary(frame);
+                log.debug("{} real time log lines sent", numOfLines);
+            } catch (Throwable e) {
+                log.warn("Fail to send real time log: {}", e.getMessage());
+            }
         }
     }
 
     @Override
     public void onFinish() {
-        // close socket io
+        // send rest of real time log and close socket io
+        if (realtimeLogFlushTask != null) {
+            realtimeLogFlushTask.cancel(false);
+            flushRealTimeLog();
+        }
+
         closeWebSocket();
 
         if (closeZipAndFileStream(stdoutLogZipStream, stdoutLogStream)) {
             renameAndUpload(stdoutLogPath, Log.Type.STDOUT);
+            return;
+        }
+
+        if (logUploader != null) {
+            logUploader.cancel();
         }
     }
 
-    public String websocketLogFormat(Log log) {
-        return String
-            .format("%s#%s#%s#%s#%s#%s", cmd.getType(), log.getNumber(), cmd.getZoneName(), cmd.getAgentName(),
-                cmd.getId(),
-                log.getContent());
+    public Header websocketLogHeader() {
+        return new Header(cmd.getType().toString(), cmd.getZoneName(), cmd.getAgentName(), cmd.getId());
     }
 
     private void initWebSocketSession(String url, int wsConnectionTimeout) throws Exception {
@@ -154,9 +226,15 @@ public class LogEventHandler implements LogListener {
                     .get(DEFAULT_LOG_PATH.toString(), getLogFileName(cmd, logType, false));
                 Files.move(logPath, target);
 
-                // delete if uploaded
+                // delete if uploaded, fallback to upload whole zipped log if chunked upload failed
                 ReportManager reportManager = ReportManager.getInstance();
-                if (reportManager.cmdLogUploadSync(cmd.getId(), target) && Config.isDeleteLog()) {
+                boolean isUploaded = logUploader != null && logUploader.finish(target);
+
+                if (!isUploaded) {
+                    isUploaded = reportManager.cmdLogUploadSync(cmd.getId(), target);
+                }
+
+                if (isUploaded && Config.isDeleteLog()) {
                     Files.deleteIfExists(target);
                 }
             } catch (IOException warn) {
@@ -197,17 +275,17 @@ public class LogEventHandler implements LogListener {
         }
     }
 
-    private void writeZipStream(final ZipOutputStream stream, final String log) {
+    private void writeZipStream(final ZipOutputStream stream, final byte[] log) {
         if (stream == null) {
             return;
         }
 
         // write to zip output stream
         try {
-            stream.write(log.getBytes());
-            stream.write(Unix.LINE_SEPARATOR.getBytes());
+            stream.write(log);
+            stream.write(LINE_SEPARATOR);
         } catch (IOException e) {
-            LogEventHandler.log.warn("Log cannot write: " + log);
+            LogEventHandler.log.warn("Log cannot write: " + e.getMessage());
         }
     }
 
@@ -230,6 +308,11 @@ public class LogEventHandler implements LogListener {
         stdoutLogZipStream = new ZipOutputStream(stdoutLogStream);
         ZipEntry outEntry = new ZipEntry(cmd.getId() + ".out");
         stdoutLogZipStream.putNextEntry(outEntry);
+
+        // ship zipped log in chunks while cmd running
+        if (Config.isUploadLog() && Config.agentSettings() != null) {
+            logUploader = new CmdLogUploader(cmd.getId(), stdoutLogPath);
+        }
     }
 
     private String getLogFileName(Cmd cmd, Log.Type logType, boolean isTemp) {
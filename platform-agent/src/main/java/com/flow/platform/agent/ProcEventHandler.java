@@ -32,22 +32,25 @@ public class ProcEventHandler implements ProcListener {
 
     private final Cmd cmd;
     private final Map<Cmd, CmdResult> running;
-    private final Map<Cmd, CmdResult> finished;
+    private final CmdHistory history;
     private final List<ProcListener> extraProcEventListeners;
     private final ReportManager reportManager = ReportManager.getInstance();
 
+    private volatile boolean started = false;
+
     public ProcEventHandler(Cmd cmd,
                             List<ProcListener> extraProcEventListeners,
                             Map<Cmd, CmdResult> running,
-                            Map<Cmd, CmdResult> finished) {
+                            CmdHistory history) {
         this.cmd = cmd;
         this.extraProcEventListeners = extraProcEventListeners;
         this.running = running;
-        this.finished = finished;
+        this.history = history;
     }
 
     @Override
     public void onStarted(CmdResult result) {
+        started = true;
         running.put(cmd, result);
 
         // report cmd async
@@ -60,8 +63,8 @@ public class ProcEventHandler implements ProcListener {
 
     @Override
     public void onExecuted(CmdResult result) {
-        // report cmd sync since block current thread
-        reportManager.cmdReportSync(cmd.getId(), CmdStatus.EXECUTED, result);
+        // report cmd in batch, it will be kept in spill file if control center unavailable
+        reportManager.cmdReport(cmd.getId(), CmdStatus.EXECUTED, result);
 
         for (ProcListener listener : extraProcEventListeners) {
             listener.onExecuted(result);
@@ -72,11 +75,13 @@ public class ProcEventHandler implements ProcListener {
     public void onLogged(CmdResult result) {
         log.debug("got result...");
 
-        running.remove(cmd);
-        finished.put(cmd, result);
+        finish(result);
+        if (log.isTraceEnabled()) {
+            log.trace("Cmd history summary: {}", history.summary());
+        }
 
-        // report cmd sync since block current thread
-        reportManager.cmdReportSync(cmd.getId(), CmdStatus.LOGGED, result);
+        // report cmd in batch, it will be kept in spill file if control center unavailable
+        reportManager.cmdReport(cmd.getId(), CmdStatus.LOGGED, result);
 
         for (ProcListener listener : extraProcEventListeners) {
             listener.onLogged(result);
@@ -85,14 +90,24 @@ public class ProcEventHandler implements ProcListener {
 
     @Override
     public void onException(CmdResult result) {
-        running.remove(cmd);
-        finished.put(cmd, result);
+        finish(result);
 
-        // report cmd sync since block current thread
-        reportManager.cmdReportSync(cmd.getId(), CmdStatus.EXCEPTION, result);
+        // report cmd in batch, it will be kept in spill file if control center unavailable
+        reportManager.cmdReport(cmd.getId(), CmdStatus.EXCEPTION, result);
 
         for (ProcListener listener : extraProcEventListeners) {
             listener.onException(result);
         }
     }
+
+    /**
+     * Record cmd to history, the cmd which has been removed from running by kill is already recorded
+     */
+    private void finish(CmdResult result) {
+        if (started && running.remove(cmd) == null) {
+            return;
+        }
+
+        history.finish(cmd, result);
+    }
 }
@@ -24,8 +24,6 @@ import com.flow.platform.util.http.HttpClient;
 import com.flow.platform.util.http.HttpResponse;
 import com.google.common.base.Charsets;
 import java.nio.file.Path;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import lombok.extern.log4j.Log4j2;
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.ContentType;
@@ -48,20 +46,23 @@ public class ReportManager {
         return INSTANCE;
     }
 
-    // Executor to execute report thread
-    private final ExecutorService executor = Executors.newFixedThreadPool(100);
+    private final CmdReportBatcher batcher = new CmdReportBatcher(Config.reportSpillFile());
 
     private ReportManager() {
 
     }
 
     /**
-     * Report cmd status with result in async
+     * Report cmd status with result in async, reports are batched and collapsed by cmd
      */
     public void cmdReport(final String cmdId, final CmdStatus status, final CmdResult result) {
-        executor.execute(() -> {
-            cmdReportSync(cmdId, status, result);
-        });
+        if (!Config.isReportCmdStatus()) {
+            log.trace("Cmd report toggle is disabled");
+            return;
+        }
+
+        batcher.add(new CmdReport(cmdId, status, result));
+        log.trace("Cmd {} report status {} with result {}", cmdId, status, result);
     }
 
     /**
@@ -73,11 +74,11 @@ public class ReportManager {
             return true;
         }
 
-        // build post body
-        final CmdReport postCmd = new CmdReport(cmdId, status, result);
         final String url = Config.agentSettings().getCmdStatusUrl();
 
         try {
+            final CmdReport postCmd = new CmdReport(cmdId, status, result);
+
             HttpResponse<String> response = HttpClient.build(url)
                 .post(postCmd.toJson())
                 .retry(5)
@@ -97,6 +98,13 @@ public class ReportManager {
         }
     }
 
+    /**
+     * Send pending cmd reports before agent exit
+     */
+    public void close() {
+        batcher.close();
+    }
+
     public boolean cmdLogUploadSync(final String cmdId, final Path path) {
         if (!Config.isUploadLog()) {
             log.trace("Log upload toggle is disabled");
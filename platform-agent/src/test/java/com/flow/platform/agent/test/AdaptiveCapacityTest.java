@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent.test;
+
+import com.flow.platform.agent.AdaptiveCapacity;
+import com.flow.platform.agent.HostLoad;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class AdaptiveCapacityTest {
+
+    private final static long GB = 1024 * 1024 * 1024;
+
+    private final AdaptiveCapacity adaptiveCapacity = new AdaptiveCapacity(1, 8, GB);
+
+    @Test
+    public void should_use_max_capacity_when_host_is_idle() {
+        // when:
+        int capacity = adaptiveCapacity.calculate(new HostLoad(16, 0, 32 * GB, 0), 0);
+
+        // then:
+        Assert.assertEquals(8, capacity);
+    }
+
+    @Test
+    public void should_limit_capacity_by_idle_cpu_and_free_memory() {
+        // when: 2 cmd running with 3 idle cpu
+        int capacity = adaptiveCapacity.calculate(new HostLoad(4, 0.25, 32 * GB, 0), 2);
+
+        // then:
+        Assert.assertEquals(5, capacity);
+
+        // when: 2 cmd running with 1gb free memory
+        capacity = adaptiveCapacity.calculate(new HostLoad(16, 0, GB, 0), 2);
+
+        // then:
+        Assert.assertEquals(3, capacity);
+    }
+
+    @Test
+    public void should_not_accept_more_cmd_when_io_wait_is_high() {
+        // when:
+        int capacity = adaptiveCapacity.calculate(new HostLoad(16, 0, 32 * GB, 0.5), 3);
+
+        // then:
+        Assert.assertEquals(3, capacity);
+
+        // when: no cmd running on overloaded host
+        capacity = adaptiveCapacity.calculate(new HostLoad(4, 2, 0, 0.5), 0);
+
+        // then: min capacity is kept
+        Assert.assertEquals(1, capacity);
+    }
+
+    @Test
+    public void should_ignore_metric_not_available() {
+        // when:
+        int capacity = adaptiveCapacity.calculate(new HostLoad(2, -1, -1, -1), 0);
+
+        // then:
+        Assert.assertEquals(8, capacity);
+    }
+
+    @Test
+    public void should_sample_host_load() {
+        // when:
+        HostLoad.Sampler sampler = new HostLoad.Sampler();
+        sampler.sample();
+        HostLoad load = sampler.sample();
+
+        // then:
+        Assert.assertTrue(load.getNumOfCpu() > 0);
+        Assert.assertTrue(load.getIoWait() <= 1);
+    }
+}
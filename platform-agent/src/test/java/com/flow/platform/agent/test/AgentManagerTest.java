@@ -87,7 +87,7 @@ public class AgentManagerTest extends TestBase {
         // when: send command to agent
         Cmd cmd = new Cmd(ZONE, MACHINE, CmdType.RUN_SHELL, "echo hello");
         cmd.setId("mock-cmd-id");
-        zkClient.setData(agent.getNodePath(), cmd.toBytes());
+        sendCmd(agent, cmd);
         Thread.sleep(2000); // waiting for cmd received
 
         // then: check agent status when command received
@@ -96,9 +96,41 @@ public class AgentManagerTest extends TestBase {
         agent.stop();
     }
 
+    @Test
+    public void should_receive_commands_in_order_and_ack() throws Throwable {
+        AgentManager agent = new AgentManager(server.getConnectString(), 20000, ZONE, MACHINE);
+        new Thread(agent).start();
+        Thread.sleep(5000); // waiting for node created
+
+        // when: send run shell and kill command in quick succession
+        Cmd runShell = new Cmd(ZONE, MACHINE, CmdType.RUN_SHELL, "sleep 10");
+        runShell.setId("mock-run-shell-id");
+
+        Cmd kill = new Cmd(ZONE, MACHINE, CmdType.KILL, null);
+        kill.setId("mock-kill-id");
+
+        sendCmd(agent, runShell);
+        sendCmd(agent, kill);
+        Thread.sleep(2000); // waiting for cmd received
+
+        // then: both commands received in order
+        Assert.assertEquals(2, agent.getCmdHistory().size());
+        Assert.assertEquals(runShell, agent.getCmdHistory().get(0));
+        Assert.assertEquals(kill, agent.getCmdHistory().get(1));
+
+        // then: commands acked from mailbox
+        Assert.assertEquals(0, zkClient.getChildren(agent.getMailboxPath()).size());
+        agent.stop();
+    }
+
+    private void sendCmd(AgentManager agent, Cmd cmd) {
+        zkClient.createSequential(agent.getNodePath(), ZKPaths.makePath(agent.getMailboxPath(), "cmd-"), cmd.toBytes());
+    }
+
     @After
     public void after() throws Throwable {
         zkClient.delete(ZKPaths.makePath(ZK_ROOT, ZONE, MACHINE), true);
+        zkClient.delete(ZKPaths.makePath(Config.ZK_MAILBOX_ROOT, ZONE, MACHINE), true);
         zkClient.close();
     }
 
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent.test;
+
+import com.flow.platform.agent.CmdHistory;
+import com.flow.platform.agent.CmdHistory.Summary;
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdResult;
+import com.flow.platform.domain.CmdType;
+import java.time.ZonedDateTime;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class CmdHistoryTest {
+
+    @Test
+    public void should_evict_oldest_cmd_when_over_max_size() throws Throwable {
+        // given:
+        CmdHistory history = new CmdHistory(10, 3600);
+
+        // when:
+        for (int i = 0; i < 20; i++) {
+            history.finish(createCmd(), new CmdResult(0));
+        }
+
+        // then: num of records is bounded but counter still includes all finished cmd
+        Assert.assertTrue(history.getFinished().size() <= 10);
+        Assert.assertEquals(20, history.summary().getNumOfFinished());
+    }
+
+    @Test
+    public void should_release_process_when_cmd_finished() throws Throwable {
+        // given:
+        Process process = new ProcessBuilder("echo", "hello").start();
+        process.waitFor();
+
+        CmdResult result = new CmdResult();
+        result.setProcess(process);
+
+        // when:
+        history().finish(createCmd(), result);
+
+        // then:
+        Assert.assertNull(result.getProcess());
+    }
+
+    @Test
+    public void should_calculate_summary_of_finished_and_rejected_cmd() throws Throwable {
+        // given:
+        CmdHistory history = history();
+        ZonedDateTime start = ZonedDateTime.now();
+
+        // when: finish 100 cmd with duration 1 to 100 seconds, and the last one is failed
+        for (int i = 1; i <= 100; i++) {
+            CmdResult result = new CmdResult(i == 100 ? 1 : 0);
+            result.setStartTime(start);
+            result.setFinishTime(start.plusSeconds(i));
+            history.finish(createCmd(), result);
+        }
+
+        history.reject(createCmd(), new CmdResult());
+
+        // then:
+        Summary summary = history.summary();
+        Assert.assertEquals(100, summary.getNumOfFinished());
+        Assert.assertEquals(1, summary.getNumOfFailed());
+        Assert.assertEquals(1, summary.getNumOfRejected());
+        Assert.assertEquals(50 * 1000, summary.getP50Duration());
+        Assert.assertEquals(99 * 1000, summary.getP99Duration());
+    }
+
+    private CmdHistory history() {
+        return new CmdHistory(1000, 3600);
+    }
+
+    private Cmd createCmd() {
+        return new Cmd("zone", "agent", CmdType.RUN_SHELL, "echo hello");
+    }
+}
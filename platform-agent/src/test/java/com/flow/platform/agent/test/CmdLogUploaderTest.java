@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent.test;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import com.flow.platform.agent.CmdLogUploader;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class CmdLogUploaderTest extends TestBase {
+
+    private final static String CMD_ID = "test-cmd-id";
+
+    private final static int LOG_SIZE = 1024 * 1024 + 1000;
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(8080);
+
+    private Path logPath;
+
+    @Before
+    public void init() throws Throwable {
+        byte[] data = new byte[LOG_SIZE];
+        new Random().nextBytes(data);
+        logPath = Files.write(Files.createTempFile("flow-agent-log", ".zip"), data);
+
+        stubFor(post(urlEqualTo(completeUrl())).willReturn(aResponse().withStatus(200)));
+    }
+
+    @After
+    public void clean() throws Throwable {
+        Files.deleteIfExists(logPath);
+    }
+
+    @Test
+    public void should_upload_log_in_chunks() throws Throwable {
+        // given:
+        stubFor(post(urlEqualTo(chunkUrl(0))).willReturn(aResponse().withBody("1048576")));
+        stubFor(post(urlEqualTo(chunkUrl(1048576))).willReturn(aResponse().withBody(Integer.toString(LOG_SIZE))));
+
+        // when:
+        CmdLogUploader uploader = new CmdLogUploader(CMD_ID, logPath);
+        boolean result = uploader.finish(logPath);
+
+        // then:
+        Assert.assertTrue(result);
+        Assert.assertEquals(LOG_SIZE, uploader.getOffset());
+
+        verify(1, postRequestedFor(urlEqualTo(chunkUrl(0))));
+        verify(1, postRequestedFor(urlEqualTo(chunkUrl(1048576))));
+        verify(1, postRequestedFor(urlEqualTo(completeUrl())));
+    }
+
+    @Test
+    public void should_resume_from_acknowledged_offset() throws Throwable {
+        // given: control center only acknowledged part of first chunk
+        stubFor(post(urlEqualTo(chunkUrl(0))).willReturn(aResponse().withBody("1000")));
+        stubFor(post(urlEqualTo(chunkUrl(1000))).willReturn(aResponse().withBody(Integer.toString(LOG_SIZE))));
+
+        // when:
+        CmdLogUploader uploader = new CmdLogUploader(CMD_ID, logPath);
+        boolean result = uploader.finish(logPath);
+
+        // then:
+        Assert.assertTrue(result);
+        verify(1, postRequestedFor(urlEqualTo(chunkUrl(1000))));
+        verify(1, postRequestedFor(urlEqualTo(completeUrl())));
+    }
+
+    private static String chunkUrl(long offset) {
+        return "/cmd/log/upload/chunk?cmdId=" + CMD_ID + "&offset=" + offset;
+    }
+
+    private static String completeUrl() {
+        return "/cmd/log/upload/complete?cmdId=" + CMD_ID + "&size=" + LOG_SIZE;
+    }
+}
@@ -219,6 +219,102 @@ public class CmdManagerTest extends TestBase {
         Assert.assertEquals(CmdResult.EXIT_VALUE_FOR_KILL, result.getExitValue());
     }
 
+    @Test
+    public void should_record_killed_process_to_history_once() throws Throwable {
+        // given
+        String content = String.format("source %s", resourcePath);
+        Cmd cmd = new Cmd("zone1", "agent1", CmdType.RUN_SHELL, content);
+        cmd.setId(UUID.randomUUID().toString());
+
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        cmdManager.getExtraProcEventListeners().add(new ProcListener() {
+            @Override
+            public void onStarted(CmdResult result) {
+                startLatch.countDown();
+            }
+
+            @Override
+            public void onLogged(CmdResult result) {
+                finishLatch.countDown();
+            }
+
+            @Override
+            public void onExecuted(CmdResult result) {
+
+            }
+
+            @Override
+            public void onException(CmdResult result) {
+                finishLatch.countDown();
+            }
+        });
+
+        long numOfFinished = cmdManager.getHistory().summary().getNumOfFinished();
+
+        // when: kill task by cmd id and wait for proc finished
+        cmdManager.execute(cmd);
+        Assert.assertTrue(startLatch.await(30, TimeUnit.SECONDS));
+
+        cmdManager.kill(new Cmd("zone1", "agent1", CmdType.KILL, cmd.getId()));
+        Assert.assertTrue(finishLatch.await(30, TimeUnit.SECONDS));
+
+        // then: killed cmd only counted once
+        Assert.assertEquals(numOfFinished + 1, cmdManager.getHistory().summary().getNumOfFinished());
+        Assert.assertEquals(0, cmdManager.getRunning().size());
+    }
+
+
+    @Test
+    public void should_kill_process_of_session_only() throws Throwable {
+        // given: two cmd running in different sessions
+        String content = String.format("source %s", resourcePath);
+        Cmd cmdOfFirst = new Cmd("zone1", "agent1", CmdType.RUN_SHELL, content);
+        cmdOfFirst.setId(UUID.randomUUID().toString());
+        cmdOfFirst.setSessionId("first-session");
+
+        Cmd cmdOfSecond = new Cmd("zone1", "agent1", CmdType.RUN_SHELL, content);
+        cmdOfSecond.setId(UUID.randomUUID().toString());
+        cmdOfSecond.setSessionId("second-session");
+
+        CountDownLatch startLatch = new CountDownLatch(2);
+        cmdManager.getExtraProcEventListeners().add(new ProcListener() {
+            @Override
+            public void onStarted(CmdResult result) {
+                startLatch.countDown();
+            }
+
+            @Override
+            public void onLogged(CmdResult result) {
+
+            }
+
+            @Override
+            public void onExecuted(CmdResult result) {
+
+            }
+
+            @Override
+            public void onException(CmdResult result) {
+
+            }
+        });
+
+        cmdManager.execute(cmdOfFirst);
+        cmdManager.execute(cmdOfSecond);
+        Assert.assertTrue(startLatch.await(30, TimeUnit.SECONDS));
+
+        // when: kill first session
+        Cmd killCmd = new Cmd("zone1", "agent1", CmdType.KILL, null);
+        killCmd.setSessionId("first-session");
+        cmdManager.kill(killCmd);
+
+        // then: only cmd of first session been killed
+        Map<Cmd, CmdResult> finished = cmdManager.getFinished();
+        Assert.assertEquals(1, finished.size());
+        Assert.assertEquals(CmdResult.EXIT_VALUE_FOR_KILL, finished.get(cmdOfFirst).getExitValue());
+        Assert.assertFalse(finished.containsKey(cmdOfSecond));
+    }
 
     @Test
     public void should_success_run_sys_cmd() throws InterruptedException {
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent.test;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import com.flow.platform.agent.CmdReportBatcher;
+import com.flow.platform.domain.CmdReport;
+import com.flow.platform.domain.CmdResult;
+import com.flow.platform.domain.CmdStatus;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class CmdReportBatcherTest extends TestBase {
+
+    private final static String BATCH_URL = "/cmd/report/batch";
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(8080);
+
+    private Path spillFile;
+
+    @Before
+    public void init() throws Throwable {
+        spillFile = Files.createTempDirectory("flow-agent-report").resolve("cmd-report.spill");
+    }
+
+    @After
+    public void clean() throws Throwable {
+        Files.deleteIfExists(spillFile);
+        Files.deleteIfExists(spillFile.getParent());
+    }
+
+    @Test
+    public void should_collapse_reports_of_same_cmd_in_one_request() throws Throwable {
+        // given:
+        stubFor(post(urlEqualTo(BATCH_URL)).willReturn(aResponse().withStatus(200)));
+        CmdReportBatcher batcher = new CmdReportBatcher(spillFile);
+
+        // when: report status transitions of two cmd
+        batcher.add(new CmdReport("cmd-1", CmdStatus.RUNNING, new CmdResult()));
+        batcher.add(new CmdReport("cmd-2", CmdStatus.RUNNING, new CmdResult()));
+        batcher.add(new CmdReport("cmd-1", CmdStatus.EXECUTED, new CmdResult()));
+        batcher.add(new CmdReport("cmd-1", CmdStatus.LOGGED, new CmdResult()));
+        Thread.sleep(500);
+
+        // then: only latest status of each cmd been sent in one request
+        verify(1, postRequestedFor(urlEqualTo(BATCH_URL))
+            .withRequestBody(equalToJson(
+                "[{\"id\": \"cmd-1\", \"status\": \"LOGGED\"}, {\"id\": \"cmd-2\", \"status\": \"RUNNING\"}]",
+                true, true)));
+
+        batcher.close();
+    }
+
+    @Test
+    public void should_keep_reports_in_spill_file_when_control_center_unavailable() throws Throwable {
+        // given: control center not available
+        stubFor(post(urlEqualTo(BATCH_URL)).willReturn(aResponse().withStatus(500)));
+        CmdReportBatcher batcher = new CmdReportBatcher(spillFile);
+
+        // when:
+        batcher.add(new CmdReport("cmd-1", CmdStatus.RUNNING, new CmdResult()));
+        batcher.close();
+
+        // then: report been written to spill file
+        Assert.assertTrue(Files.exists(spillFile));
+
+        // when: control center is back and agent restarted
+        stubFor(post(urlEqualTo(BATCH_URL)).willReturn(aResponse().withStatus(200)));
+        batcher = new CmdReportBatcher(spillFile);
+        Thread.sleep(500);
+
+        // then: spilled report been sent and spill file deleted
+        verify(postRequestedFor(urlEqualTo(BATCH_URL))
+            .withRequestBody(equalToJson("[{\"id\": \"cmd-1\", \"status\": \"RUNNING\"}]", true, true)));
+        Assert.assertFalse(Files.exists(spillFile));
+
+        batcher.close();
+    }
+
+    @Test
+    public void should_keep_pending_reports_when_unable_to_send_or_spill() throws Throwable {
+        // given: report which cannot be serialized to json
+        stubFor(post(urlEqualTo(BATCH_URL)).willReturn(aResponse().withStatus(200)));
+        CmdReportBatcher batcher = new CmdReportBatcher(spillFile);
+
+        CmdResult broken = new CmdResult();
+        broken.getExceptions().add(new UnserializableException());
+
+        // when: flush failed since cannot serialize the batch
+        batcher.add(new CmdReport("cmd-1", CmdStatus.RUNNING, broken));
+        batcher.add(new CmdReport("cmd-2", CmdStatus.RUNNING, new CmdResult()));
+        Thread.sleep(500);
+
+        // then: nothing sent or spilled
+        verify(0, postRequestedFor(urlEqualTo(BATCH_URL)));
+        Assert.assertFalse(Files.exists(spillFile));
+
+        // when: broken report replaced by next status and flush on close
+        batcher.add(new CmdReport("cmd-1", CmdStatus.LOGGED, new CmdResult()));
+        batcher.close();
+
+        // then: the report of cmd-2 is not lost
+        verify(1, postRequestedFor(urlEqualTo(BATCH_URL))
+            .withRequestBody(equalToJson(
+                "[{\"id\": \"cmd-1\", \"status\": \"LOGGED\"}, {\"id\": \"cmd-2\", \"status\": \"RUNNING\"}]",
+                true, true)));
+    }
+
+    /**
+     * Exception declares field with the same name of Throwable, json serialization of it fails with runtime exception
+     */
+    private static class UnserializableException extends RuntimeException {
+
+        private final String detailMessage = "broken";
+    }
+}
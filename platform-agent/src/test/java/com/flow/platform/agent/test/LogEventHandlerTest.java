@@ -19,10 +19,12 @@ package com.flow.platform.agent.test;
 import com.flow.platform.agent.CmdManager;
 import com.flow.platform.agent.Config;
 import com.flow.platform.agent.LogEventHandler;
-import com.flow.platform.cmd.Log;
 import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdLogFrame;
+import com.flow.platform.domain.CmdLogFrame.Header;
 import com.flow.platform.domain.CmdType;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 import org.junit.Assert;
 import org.junit.Before;
@@ -46,20 +48,21 @@ public class LogEventHandlerTest extends TestBase {
     }
 
     @Test
-    public void should_get_correct_format_websocket() throws Throwable {
+    public void should_get_correct_websocket_header() throws Throwable {
         // given:
         Cmd cmd = new Cmd("TestZone", "TestAgent", CmdType.RUN_SHELL, "hello");
         cmd.setId(UUID.randomUUID().toString());
         LogEventHandler logEventHandler = new LogEventHandler(cmd);
 
         // when:
-        String mockLogContent = "hello";
-        String socketIoData = logEventHandler.websocketLogFormat(new Log(Log.Type.STDOUT, mockLogContent));
+        ByteBuffer frame = CmdLogFrame.header(logEventHandler.websocketLogHeader());
 
         // then:
-        String expect = String
-            .format("%s#%s#%s#%s#%s#%s", CmdType.RUN_SHELL, null, cmd.getZoneName(), cmd.getAgentName(), cmd.getId(),
-                mockLogContent);
-        Assert.assertEquals(expect, socketIoData);
+        Assert.assertEquals(CmdLogFrame.TYPE_HEADER, CmdLogFrame.readType(frame));
+        Header header = CmdLogFrame.readHeader(frame);
+        Assert.assertEquals(CmdType.RUN_SHELL.toString(), header.getCmdType());
+        Assert.assertEquals(cmd.getZoneName(), header.getZone());
+        Assert.assertEquals(cmd.getAgentName(), header.getAgent());
+        Assert.assertEquals(cmd.getId(), header.getCmdId());
     }
 }
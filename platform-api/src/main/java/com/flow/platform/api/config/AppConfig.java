@@ -20,6 +20,7 @@ import com.flow.platform.api.domain.user.User;
 import com.flow.platform.api.util.PlatformURL;
 import com.flow.platform.core.config.AppConfigBase;
 import com.flow.platform.core.config.DatabaseConfig;
+import com.flow.platform.core.task.KeyedTaskExecutor;
 import com.flow.platform.core.util.ThreadUtil;
 import com.flow.platform.plugin.PluginConfig;
 import java.io.IOException;
@@ -66,6 +67,12 @@ public class AppConfig extends AppConfigBase {
 
     private final static int MULTICASTER_ASYNC_POOL_SIZE = 1;
 
+    private final static String YML_LOAD_EXECUTOR_NAME = "git-fetch-task";
+
+    private final static int YML_LOAD_CONCURRENCY = 10;
+
+    private final static int YML_LOAD_QUEUE_SIZE = 500;
+
     private final static ThreadPoolTaskExecutor executor =
         ThreadUtil.createTaskExecutor(ASYNC_POOL_SIZE, ASYNC_POOL_SIZE / 10, 100, THREAD_NAME_PREFIX);
 
@@ -121,6 +128,14 @@ public class AppConfig extends AppConfigBase {
         return eventMulticaster;
     }
 
+    /**
+     * Shared executor to load yml from git, the loading of the same flow runs one by one
+     */
+    @Bean(destroyMethod = "shutdown")
+    public KeyedTaskExecutor ymlLoadExecutor() {
+        return new KeyedTaskExecutor(YML_LOAD_EXECUTOR_NAME, YML_LOAD_CONCURRENCY, YML_LOAD_QUEUE_SIZE);
+    }
+
     @Bean
     public ThreadLocal<User> currentUser() {
         return new ThreadLocal<>();
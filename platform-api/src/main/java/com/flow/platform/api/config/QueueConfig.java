@@ -19,6 +19,7 @@ package com.flow.platform.api.config;
 import com.flow.platform.api.service.SyncService;
 import com.flow.platform.core.queue.MemoryQueue;
 import com.flow.platform.core.queue.PriorityMessage;
+import com.flow.platform.queue.OverflowPolicy;
 import com.flow.platform.queue.PlatformQueue;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
@@ -33,6 +34,16 @@ public class QueueConfig {
 
     public final static long DEFAULT_CMD_CALLBACK_QUEUE_PRIORITY = 1L;
 
+    /**
+     * Num of consumers for cmd callback queue, callbacks of same job always processed in order
+     */
+    public final static int CMD_CALLBACK_QUEUE_CONCURRENCY = 4;
+
+    /**
+     * Max length of cmd callback queue, webhook request will be blocked if queue is full
+     */
+    public final static int CMD_CALLBACK_QUEUE_MAX_LENGTH = 10000;
+
     @Autowired
     private ThreadPoolTaskExecutor taskExecutor;
 
@@ -41,7 +52,11 @@ public class QueueConfig {
      */
     @Bean
     public PlatformQueue<PriorityMessage> cmdCallbackQueue() {
-        return new MemoryQueue(taskExecutor, 50, "CmdCallbackQueue");
+        return new MemoryQueue(taskExecutor,
+            CMD_CALLBACK_QUEUE_MAX_LENGTH,
+            "CmdCallbackQueue",
+            CMD_CALLBACK_QUEUE_CONCURRENCY,
+            OverflowPolicy.BLOCK);
     }
 
     @Bean
@@ -21,9 +21,9 @@ import com.flow.platform.api.service.job.JobService;
 import com.flow.platform.core.exception.FlowException;
 import com.flow.platform.core.exception.NotFoundException;
 import com.flow.platform.core.queue.PriorityMessage;
-import com.flow.platform.core.util.ThreadUtil;
 import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.queue.QueueListener;
+import com.flow.platform.util.ExponentialBackoff;
 import java.util.Objects;
 import javax.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
@@ -37,8 +37,11 @@ import org.springframework.stereotype.Component;
 @Component
 public class CmdCallbackQueueConsumer implements QueueListener<PriorityMessage> {
 
-    // requeue 1 s
-    private final static int REQUEUE_DELAY_TIME = 1000;
+    private final static long REQUEUE_INITIAL_DELAY = 1000; // in millis
+
+    private final static long REQUEUE_MAX_DELAY = 16 * 1000; // in millis
+
+    private final ExponentialBackoff requeueBackoff = new ExponentialBackoff(REQUEUE_INITIAL_DELAY, REQUEUE_MAX_DELAY);
 
     @Autowired
     private PlatformQueue<PriorityMessage> cmdCallbackQueue;
@@ -67,7 +70,7 @@ public class CmdCallbackQueueConsumer implements QueueListener<PriorityMessage>
             detectRetryTimes(item);
 
             // re-enqueue cmd callback if job not found since transaction problem
-            reEnqueueJobCallback(item, REQUEUE_DELAY_TIME, message.getMessageProperties().getPriority());
+            reEnqueueJobCallback(item, message.getPriority());
 
         } catch (Throwable throwable) {
             log.trace("Exception on queue item: {}", throwable.getMessage());
@@ -81,14 +84,16 @@ public class CmdCallbackQueueConsumer implements QueueListener<PriorityMessage>
         }
     }
 
-    private void reEnqueueJobCallback(CmdCallbackQueueItem item, long wait, int priority) {
-        // sleep seconds
-        ThreadUtil.sleep(wait);
+    /**
+     * Re-enqueue with delay which doubled on each retry, the consumer thread is not blocked
+     */
+    private void reEnqueueJobCallback(CmdCallbackQueueItem item, long priority) {
+        long delay = requeueBackoff.delay(CmdCallbackQueueItem.DEFAULT_RETRY_TIMES - item.getRetryTimes());
 
         // set retry times
         item.setRetryTimes(item.getRetryTimes() - 1);
 
         //priority inc 1
-        jobService.enqueue(item, ++priority);
+        jobService.enqueue(item, ++priority, delay);
     }
 }
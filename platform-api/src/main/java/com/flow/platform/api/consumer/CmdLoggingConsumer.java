@@ -17,23 +17,36 @@
 package com.flow.platform.api.consumer;
 
 import com.flow.platform.core.http.converter.RawGsonMessageConverter;
+import com.flow.platform.domain.CmdLogFrame;
+import com.flow.platform.domain.CmdLogFrame.Header;
 import com.flow.platform.domain.CmdType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
 /**
  * To handle cmd real time logging from agent
  *
+ * - binary message: header frame once per session and batch of log lines, see CmdLogFrame
+ * - text message: single log item "category#index#zone#agent#cmdId#content"
+ *
  * @author yang
  */
-public class CmdLoggingConsumer extends TextWebSocketHandler {
+public class CmdLoggingConsumer extends AbstractWebSocketHandler {
 
     private final static int MIN_LENGTH_LOG = 6;
 
+    private final static String ATTR_LOG_HEADER = "cmdLogHeader";
+
+    // max binary message size for batch of real time log from agent
+    private final static int MAX_BINARY_MESSAGE_SIZE = 128 * 1024;
+
     @Autowired
     private SimpMessagingTemplate template;
 
@@ -76,6 +89,49 @@ public class CmdLoggingConsumer extends TextWebSocketHandler {
         }
     }
 
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        session.setBinaryMessageSizeLimit(MAX_BINARY_MESSAGE_SIZE);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        ByteBuffer frame = message.getPayload();
+        byte type = CmdLogFrame.readType(frame);
+
+        if (type == CmdLogFrame.TYPE_HEADER) {
+            session.getAttributes().put(ATTR_LOG_HEADER, CmdLogFrame.readHeader(frame));
+            return;
+        }
+
+        Header header = (Header) session.getAttributes().get(ATTR_LOG_HEADER);
+        if (type != CmdLogFrame.TYPE_LINES || header == null) {
+            return;
+        }
+
+        // send each system info line as agent sys info
+        if (header.getCmdType().equals(CmdType.SYSTEM_INFO.toString())) {
+            CmdLogFrame.readLines(frame, (number, buffer, offset, length) ->
+                sendAgentSysInfo(new String(buffer, offset, length, StandardCharsets.UTF_8)));
+            return;
+        }
+
+        if (!header.getCmdType().equals(CmdType.RUN_SHELL.toString())) {
+            return;
+        }
+
+        // send batch of log lines "index#content" separated by new line in one message
+        StringBuilder batch = new StringBuilder(frame.remaining());
+        CmdLogFrame.readLines(frame, (number, buffer, offset, length) -> {
+            if (batch.length() > 0) {
+                batch.append('\n');
+            }
+            batch.append(number).append('#').append(new String(buffer, offset, length, StandardCharsets.UTF_8));
+        });
+
+        template.convertAndSend(String.format("/topic/cmd/%s", header.getCmdId()), batch.toString());
+    }
+
     /**
      * send command log
      */
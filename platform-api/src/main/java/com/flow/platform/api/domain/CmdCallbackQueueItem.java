@@ -39,10 +39,11 @@ public class CmdCallbackQueueItem extends Jsonable {
     @Getter
     private final Cmd cmd;
 
-    // default retry times 5
+    public final static int DEFAULT_RETRY_TIMES = 5;
+
     @Getter
     @Setter
-    private Integer retryTimes = 5;
+    private Integer retryTimes = DEFAULT_RETRY_TIMES;
 
     public CmdCallbackQueueItem(BigInteger jobId, Cmd cmd) {
         this.jobId = jobId;
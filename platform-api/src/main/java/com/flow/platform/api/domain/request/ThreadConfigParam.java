@@ -19,6 +19,13 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 
 /**
+ * Config of shared yml loading executor
+ *
+ * - maxPoolSize: max num of yml loading running in parallel for all flows, must be greater than 0
+ * - queueSize: max num of unfinished yml loading tasks including running ones, must be greater than 0,
+ *   the new loading is rejected when it is full
+ * - corePoolSize and threadNamePrefix are ignored since the executor is shared by all flows
+ *
  * @author lhl
  */
 @Data
@@ -50,7 +50,7 @@ public interface GitService {
     }
 
     /**
-     * Fetch file content from git repo by git clone
+     * Fetch file content from git repo by incremental fetch to bare mirror in flow workspace
      *
      * @param node node instance which includes git repo info
      * @param filePath target file path in git repo
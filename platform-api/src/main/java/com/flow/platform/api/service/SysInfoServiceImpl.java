@@ -16,16 +16,21 @@
 
 package com.flow.platform.api.service;
 
+import com.flow.platform.api.util.NodeUtil;
 import com.flow.platform.api.util.PlatformURL;
+import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.core.service.SysInfoServiceImplBase;
 import com.flow.platform.core.sysinfo.AppServerLoader;
 import com.flow.platform.core.sysinfo.DBInfoLoader;
 import com.flow.platform.core.sysinfo.GroupSystemInfo;
 import com.flow.platform.core.sysinfo.JvmLoader;
+import com.flow.platform.core.sysinfo.QueueLoader;
 import com.flow.platform.core.sysinfo.SystemInfo;
 import com.flow.platform.core.sysinfo.SystemInfo.Category;
 import com.flow.platform.core.sysinfo.SystemInfo.Type;
 import com.flow.platform.core.sysinfo.SystemInfoLoader;
+import com.flow.platform.core.task.KeyedTaskExecutor;
+import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.util.http.HttpClient;
 import com.flow.platform.util.http.HttpResponse;
 import java.util.HashMap;
@@ -47,14 +52,22 @@ public class SysInfoServiceImpl extends SysInfoServiceImplBase {
     @Autowired
     private PlatformURL platformURL;
 
+    @Autowired
+    private PlatformQueue<PriorityMessage> cmdCallbackQueue;
+
+    @Autowired
+    private KeyedTaskExecutor ymlLoadExecutor;
+
     @PostConstruct
     public void init() {
         // init api system loader
-        infoLoaders.put(Category.API, new HashMap<>(3));
-        infoLoaders.get(Category.API).put(SystemInfo.Type.JVM, new JvmLoader());
+        infoLoaders.put(Category.API, new HashMap<>(4));
+        infoLoaders.get(Category.API).put(SystemInfo.Type.JVM, new JvmLoader().withCache("yml", NodeUtil.ymlCache()));
         infoLoaders.get(Category.API)
             .put(SystemInfo.Type.DB, new DBInfoLoader(defaultDriverName, dbUrl, dbUsername, dbPassword));
         infoLoaders.get(Category.API).put(SystemInfo.Type.SERVER, new AppServerLoader());
+        infoLoaders.get(Category.API)
+            .put(SystemInfo.Type.QUEUE, new QueueLoader(cmdCallbackQueue).withExecutors(ymlLoadExecutor));
 
         // init cc system loader
         infoLoaders.put(Category.CC, new HashMap<>(5));
@@ -63,6 +76,7 @@ public class SysInfoServiceImpl extends SysInfoServiceImplBase {
         infoLoaders.get(Category.CC).put(SystemInfo.Type.SERVER, new ControlCenterInfoLoader(SystemInfo.Type.SERVER));
         infoLoaders.get(Category.CC).put(SystemInfo.Type.ZK, new ControlCenterInfoLoader(SystemInfo.Type.ZK));
         infoLoaders.get(Category.CC).put(SystemInfo.Type.MQ, new ControlCenterInfoLoader(SystemInfo.Type.MQ));
+        infoLoaders.get(Category.CC).put(SystemInfo.Type.QUEUE, new ControlCenterInfoLoader(SystemInfo.Type.QUEUE));
     }
 
     @Override
@@ -116,6 +116,11 @@ public interface JobService {
      */
     void enqueue(CmdCallbackQueueItem cmdQueueItem, long priority);
 
+    /**
+     * Send cmd callback item to queue after delay in millis
+     */
+    void enqueue(CmdCallbackQueueItem cmdQueueItem, long priority, long delay);
+
     /**
      * stop job
      */
@@ -83,6 +83,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -578,7 +579,15 @@ public class JobServiceImpl extends ApplicationEventService implements JobServic
 
     @Override
     public void enqueue(CmdCallbackQueueItem cmdQueueItem, long priority) {
-        cmdCallbackQueue.enqueue(PriorityMessage.create(cmdQueueItem.toBytes(), priority));
+        String key = cmdQueueItem.getJobId().toString();
+        cmdCallbackQueue.enqueue(PriorityMessage.create(cmdQueueItem.toBytes(), priority, key));
+    }
+
+    @Override
+    public void enqueue(CmdCallbackQueueItem cmdQueueItem, long priority, long delay) {
+        String key = cmdQueueItem.getJobId().toString();
+        PriorityMessage message = PriorityMessage.create(cmdQueueItem.toBytes(), priority, key);
+        cmdCallbackQueue.enqueue(message, delay, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -89,9 +89,11 @@ public interface YmlService {
     void stopLoad(Node root);
 
     /**
-     * Config load yml thread pool
+     * Config shared yml loading executor, max pool size is the concurrency of all flows and
+     * queue size is the max num of pending loading tasks
      *
      * @param threadConfigParam
+     * @throws com.flow.platform.core.exception.IllegalParameterException if max pool size or queue size is null or not greater than 0
      */
     void threadConfig(ThreadConfigParam threadConfigParam);
 
@@ -23,6 +23,7 @@ import com.flow.platform.api.domain.node.Yml;
 import com.flow.platform.api.domain.request.ThreadConfigParam;
 import com.flow.platform.api.envs.EnvUtil;
 import com.flow.platform.api.envs.FlowEnvs;
+import com.flow.platform.api.envs.GitEnvs;
 import com.flow.platform.api.envs.FlowEnvs.YmlStatusValue;
 import com.flow.platform.api.service.GitService;
 import com.flow.platform.api.task.UpdateNodeYmlTask;
@@ -31,22 +32,17 @@ import com.flow.platform.core.context.ContextEvent;
 import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.core.exception.IllegalStatusException;
 import com.flow.platform.core.exception.NotFoundException;
-import com.flow.platform.core.util.ThreadUtil;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.flow.platform.core.task.KeyedTaskExecutor;
+import com.flow.platform.util.StringUtil;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.task.TaskRejectedException;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 /**
@@ -56,18 +52,8 @@ import org.springframework.stereotype.Service;
 @Log4j2
 public class YmlServiceImpl implements YmlService, ContextEvent {
 
-    private final static int NODE_THREAD_POOL_CACHE_EXPIRE = 3600 * 24;
-
-    private final static int NODE_THREAD_POOL_CACHE_SIZE = 100;
-
-    // To cache thread pool for node path
-    private Cache<String, ThreadPoolTaskExecutor> nodeThreadPool = CacheBuilder
-        .newBuilder()
-        .expireAfterAccess(NODE_THREAD_POOL_CACHE_EXPIRE, TimeUnit.SECONDS)
-        .maximumSize(NODE_THREAD_POOL_CACHE_SIZE)
-        .build();
-
-    private ThreadConfigParam threadConfigParam = new ThreadConfigParam(1, 1, 0, "git-fetch-task");
+    @Autowired
+    private KeyedTaskExecutor ymlLoadExecutor;
 
     @Autowired
     private GitService gitService;
@@ -84,14 +70,11 @@ public class YmlServiceImpl implements YmlService, ContextEvent {
     }
 
     /**
-     * Stop all thread from node thread pool
+     * Stop all yml loading tasks
      */
     @Override
     public void stop() {
-        for (Map.Entry<String, ThreadPoolTaskExecutor> entry : nodeThreadPool.asMap().entrySet()) {
-            entry.getValue().shutdown();
-        }
-        nodeThreadPool.invalidateAll();
+        ymlLoadExecutor.shutdown();
     }
 
     @Override
@@ -158,12 +141,12 @@ public class YmlServiceImpl implements YmlService, ContextEvent {
         nodeService.updateYmlState(root, YmlStatusValue.GIT_CONNECTING, null);
 
         try {
-            ThreadPoolTaskExecutor executor = findThreadPoolFromCache(root.getPath());
+            UpdateNodeYmlTask task = new UpdateNodeYmlTask(root, nodeService, gitService, onSuccess, onError);
 
-            // async to load yml file
-            executor.execute(new UpdateNodeYmlTask(root, nodeService, gitService, onSuccess, onError));
-        } catch (ExecutionException | TaskRejectedException e) {
-            log.warn("Fail to get task executor for node: " + root.getPath());
+            // async to load yml file, the loading of same flow, branch and commit is shared
+            ymlLoadExecutor.submit(root.getPath(), loadId(root), task).whenComplete(task::complete);
+        } catch (RejectedExecutionException e) {
+            log.warn("Fail to submit yml loading task for node: " + root.getPath());
             nodeService.updateYmlState(root, YmlStatusValue.ERROR, e.getMessage());
 
             if (onError != null) {
@@ -176,26 +159,32 @@ public class YmlServiceImpl implements YmlService, ContextEvent {
 
     @Override
     public void stopLoad(final Node root) {
-        ThreadPoolTaskExecutor executor = nodeThreadPool.getIfPresent(root.getPath());
-        if (executor == null || executor.getActiveCount() == 0) {
+        if (!isYmlLoading(root)) {
             return;
         }
 
-        if (!isYmlLoading(root)) {
+        if (ymlLoadExecutor.cancel(root.getPath()) == 0) {
             return;
         }
 
-        executor.shutdown();
-        nodeThreadPool.invalidate(root.getPath());
-
         log.trace("Yml loading task been stopped for path {}", root.getPath());
         nodeService.updateYmlState(root, YmlStatusValue.NOT_FOUND, null);
     }
 
     @Override
     public void threadConfig(ThreadConfigParam threadConfigParam) {
-        this.threadConfigParam = threadConfigParam;
-        nodeThreadPool.invalidateAll();
+        Integer maxPoolSize = threadConfigParam.getMaxPoolSize();
+        Integer queueSize = threadConfigParam.getQueueSize();
+
+        if (maxPoolSize == null || maxPoolSize <= 0) {
+            throw new IllegalParameterException("The maxPoolSize must be greater than 0");
+        }
+
+        if (queueSize == null || queueSize <= 0) {
+            throw new IllegalParameterException("The queueSize must be greater than 0");
+        }
+
+        ymlLoadExecutor.resize(maxPoolSize, queueSize);
     }
 
     private boolean isYmlLoading(final Node node) {
@@ -203,13 +192,12 @@ public class YmlServiceImpl implements YmlService, ContextEvent {
         return YmlStatusValue.isLoadingStatus(ymlStatus);
     }
 
-    private ThreadPoolTaskExecutor findThreadPoolFromCache(String path) throws ExecutionException {
-        return nodeThreadPool.get(path, () -> {
-            ThreadPoolTaskExecutor taskExecutor = ThreadUtil
-                .createTaskExecutor(threadConfigParam.getMaxPoolSize(), threadConfigParam.getCorePoolSize(),
-                    threadConfigParam.getQueueSize(), threadConfigParam.getThreadNamePrefix());
-            taskExecutor.initialize();
-            return taskExecutor;
-        });
+    /**
+     * Id of yml loading, {flow path}@{branch}@{commit id}
+     */
+    private static String loadId(final Node root) {
+        String branch = root.getEnv(GitEnvs.FLOW_GIT_BRANCH, "master");
+        String commit = root.getEnv(GitEnvs.FLOW_GIT_COMMIT_ID, StringUtil.EMPTY);
+        return root.getPath() + "@" + branch + "@" + commit;
     }
 }
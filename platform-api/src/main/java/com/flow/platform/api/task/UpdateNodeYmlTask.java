@@ -25,6 +25,8 @@ import com.flow.platform.api.service.node.NodeService;
 import com.flow.platform.util.ExceptionUtil;
 import com.flow.platform.util.StringUtil;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 import lombok.extern.log4j.Log4j2;
 
@@ -35,11 +37,14 @@ import lombok.extern.log4j.Log4j2;
  *   - FLOW_YML_STATUS
  *   - FLOW_YML_ERROR_MSG
  *
+ * The git fetch in "call" can be shared by tasks of the same flow, branch and commit,
+ * then each task create or update yml and invoke its own callback in "complete"
+ *
  * @author yang
  */
 
 @Log4j2
-public class UpdateNodeYmlTask implements Runnable {
+public class UpdateNodeYmlTask implements Callable<String> {
 
     private class EmptySuccessConsumer implements Consumer<Yml> {
 
@@ -77,24 +82,34 @@ public class UpdateNodeYmlTask implements Runnable {
         this.onError = onError == null ? new EmptyErrorConsumer() : onError;
     }
 
+    /**
+     * Fetch yml content from git
+     */
     @Override
-    public void run() {
-        String yml;
-        try {
-            // set file to empty since do not load yml from git
-            String ymlFileName = root.getEnv(FlowEnvs.FLOW_YML_FILE, StringUtil.EMPTY);
-            yml = gitService.fetch(root, ymlFileName, new GitProgressListener());
+    public String call() throws Exception {
+        // set file to empty since do not load yml from git
+        String ymlFileName = root.getEnv(FlowEnvs.FLOW_YML_FILE, StringUtil.EMPTY);
+        String yml = gitService.fetch(root, ymlFileName, new GitProgressListener());
+
+        nodeService.updateYmlState(root, YmlStatusValue.GIT_LOADED, null);
+        return yml;
+    }
+
+    /**
+     * Create or update yml in node by fetched yml content, or handle the error from fetching
+     */
+    public void complete(String yml, Throwable error) {
+        if (error != null) {
+            Throwable rootCause = ExceptionUtil.findRootCause(error);
 
-            nodeService.updateYmlState(root, YmlStatusValue.GIT_LOADED, null);
-        } catch (Throwable e) {
             // check yml status is running since exception will be throw if manual stop the git clone thread
-            if (YmlStatusValue.isLoadingStatus(root.getEnv(FlowEnvs.FLOW_YML_STATUS))) {
-                Throwable rootCause = ExceptionUtil.findRootCause(e);
+            boolean isStopped = rootCause instanceof CancellationException;
+            if (!isStopped && YmlStatusValue.isLoadingStatus(root.getEnv(FlowEnvs.FLOW_YML_STATUS))) {
                 log.error("Unable to fetch from git repo: {}", rootCause);
                 nodeService.updateYmlState(root, YmlStatusValue.ERROR, rootCause.getMessage());
             }
 
-            onError.accept(e);
+            onError.accept(rootCause);
             return;
         }
 
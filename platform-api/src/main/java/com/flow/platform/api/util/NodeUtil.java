@@ -19,14 +19,20 @@ import com.flow.platform.api.domain.node.Node;
 import com.flow.platform.api.exception.NodeFormatException;
 import com.flow.platform.api.exception.YmlException;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +60,18 @@ import org.yaml.snakeyaml.representer.Representer;
  */
 public class NodeUtil {
 
+    private static class ParsedYml {
+
+        private final Node root;
+
+        private final int weight;
+
+        ParsedYml(Node root, int weight) {
+            this.root = root;
+            this.weight = weight;
+        }
+    }
+
     private final static DumperOptions DUMPER_OPTIONS = new DumperOptions();
 
     private final static LineBreak LINE_BREAK = LineBreak.getPlatformLineBreak();
@@ -64,6 +82,17 @@ public class NodeUtil {
 
     private final static NodeValidator VALIDATOR = new NodeValidator();
 
+    private final static long YML_CACHE_MAX_WEIGHT = 16 * 1024 * 1024; // max num of chars of cached yml
+
+    private final static HashFunction YML_HASH = Hashing.sha256();
+
+    // parsed yml by hash of root name and yml content, bounded by total length of yml
+    private final static Cache<String, ParsedYml> YML_CACHE = CacheBuilder.newBuilder()
+        .maximumWeight(YML_CACHE_MAX_WEIGHT)
+        .weigher((String key, ParsedYml parsed) -> parsed.weight)
+        .recordStats()
+        .build();
+
     static {
         DUMPER_OPTIONS.setIndent(4);
         DUMPER_OPTIONS.setIndicatorIndent(2);
@@ -112,11 +141,47 @@ public class NodeUtil {
     /**
      * Verify and create node tree by yml
      *
+     * The parsed tree is cached by hash of root name and yml, so flows and jobs of the same yml share
+     * the step nodes which should not be modified. The returned root node is a copy for each call
+     *
      * @param yml raw yml string
      * @return root node of yml
      * @throws YmlException if yml format is illegal
      */
     public static Node buildFromYml(String yml, String rootName) {
+        String key = YML_HASH.newHasher()
+            .putString(rootName, StandardCharsets.UTF_8)
+            .putChar('\n')
+            .putString(yml, StandardCharsets.UTF_8)
+            .hash()
+            .toString();
+
+        ParsedYml parsed = YML_CACHE.getIfPresent(key);
+        if (parsed == null) {
+            parsed = new ParsedYml(parseFromYml(yml, rootName), yml.length());
+            YML_CACHE.put(key, parsed);
+        }
+
+        return copyRoot(parsed.root);
+    }
+
+    /**
+     * Get cache of parsed yml for hit and miss stats
+     */
+    public static Cache<String, ?> ymlCache() {
+        return YML_CACHE;
+    }
+
+    private static Node copyRoot(Node root) {
+        Node copy = new Node(root.getPath(), root.getName());
+        copy.setScript(root.getScript());
+        copy.setConditionScript(root.getConditionScript());
+        copy.setEnvs(new LinkedHashMap<>(root.getEnvs()));
+        copy.setChildren(new LinkedList<>(root.getChildren()));
+        return copy;
+    }
+
+    private static Node parseFromYml(String yml, String rootName) {
         try {
             Yaml yaml = new Yaml(ROOT_YML_CONSTRUCTOR);
             RootYmlWrapper node = yaml.load(yml);
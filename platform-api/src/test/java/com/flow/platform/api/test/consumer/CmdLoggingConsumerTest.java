@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flow.platform.api.test.consumer;
+
+import com.flow.platform.api.consumer.CmdLoggingConsumer;
+import com.flow.platform.core.http.converter.RawGsonMessageConverter;
+import com.flow.platform.domain.CmdLogFrame;
+import com.flow.platform.domain.CmdLogFrame.Header;
+import com.flow.platform.domain.CmdLogFrame.LinesWriter;
+import com.flow.platform.domain.CmdType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * @author yang
+ */
+public class CmdLoggingConsumerTest {
+
+    private final CmdLoggingConsumer consumer = new CmdLoggingConsumer();
+
+    private final SimpMessagingTemplate template = Mockito.mock(SimpMessagingTemplate.class);
+
+    private final WebSocketSession session = Mockito.mock(WebSocketSession.class);
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    @Before
+    public void init() {
+        ReflectionTestUtils.setField(consumer, "template", template);
+        ReflectionTestUtils.setField(consumer, "jsonConverter", new RawGsonMessageConverter());
+        Mockito.when(session.getAttributes()).thenReturn(attributes);
+    }
+
+    @Test
+    public void should_send_batch_of_cmd_log_lines() throws Throwable {
+        // given:
+        send(CmdLogFrame.header(new Header(CmdType.RUN_SHELL.toString(), "zone", "agent", "cmd-id")));
+
+        // when:
+        LinesWriter writer = new LinesWriter(64);
+        writer.add(1, "hello".getBytes(StandardCharsets.UTF_8));
+        writer.add(2, "world".getBytes(StandardCharsets.UTF_8));
+        send(writer.flush());
+
+        // then:
+        Mockito.verify(template).convertAndSend("/topic/cmd/cmd-id", "1#hello\n2#world");
+    }
+
+    @Test
+    public void should_send_agent_sys_info_from_system_info_lines() throws Throwable {
+        // given:
+        send(CmdLogFrame.header(new Header(CmdType.SYSTEM_INFO.toString(), "zone", "agent", null)));
+
+        // when:
+        String sysInfo = "{\"zone\":\"zone\",\"name\":\"agent\",\"cpu\":\"1\"}";
+        LinesWriter writer = new LinesWriter(64);
+        writer.add(1, sysInfo.getBytes(StandardCharsets.UTF_8));
+        send(writer.flush());
+
+        // then:
+        Mockito.verify(template).convertAndSend("/topic/agent/sysinfo/zone/agent", sysInfo);
+    }
+
+    private void send(ByteBuffer frame) throws Exception {
+        consumer.handleMessage(session, new BinaryMessage(frame));
+    }
+}
@@ -23,6 +23,7 @@ import com.flow.platform.api.domain.job.Job;
 import com.flow.platform.api.domain.job.NodeResult;
 import com.flow.platform.api.domain.node.Node;
 import com.flow.platform.api.domain.node.Yml;
+import com.flow.platform.api.domain.request.ThreadConfigParam;
 import com.flow.platform.api.domain.sync.SyncRepo;
 import com.flow.platform.api.envs.EnvUtil;
 import com.flow.platform.api.envs.FlowEnvs;
@@ -318,6 +319,16 @@ public class NodeServiceTest extends TestBase {
         Assert.assertNull(step2.getNext());
     }
 
+    @Test(expected = IllegalParameterException.class)
+    public void should_raise_exception_when_config_yml_thread_with_zero_queue_size() throws Throwable {
+        ymlService.threadConfig(new ThreadConfigParam(1, 1, 0, "yml-"));
+    }
+
+    @Test(expected = IllegalParameterException.class)
+    public void should_raise_exception_when_config_yml_thread_without_max_pool_size() throws Throwable {
+        ymlService.threadConfig(new ThreadConfigParam(null, 1, 2, "yml-"));
+    }
+
     @Test(expected = IllegalParameterException.class)
     public void should_raise_exception_when_save_flow_env_since_illegal_format() throws Throwable {
         // given:
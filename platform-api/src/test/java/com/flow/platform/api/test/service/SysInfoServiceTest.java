@@ -66,7 +66,7 @@ public class SysInfoServiceTest extends TestBase {
         Assert.assertNotNull(jvmInfo);
 
         // then:
-        Assert.assertEquals(3, jvmInfo.size());
+        Assert.assertEquals(JvmGroup.values().length, jvmInfo.size());
 
         Map<String, String> jvmOsInfo = jvmInfo.get(JvmGroup.OS);
         Assert.assertEquals(6, jvmOsInfo.size());
@@ -76,6 +76,10 @@ public class SysInfoServiceTest extends TestBase {
 
         Map<String, String> jvmMemInfo = jvmInfo.get(JvmGroup.MEMORY);
         Assert.assertEquals(3, jvmMemInfo.size());
+
+        Map<String, String> jvmCacheInfo = jvmInfo.get(JvmGroup.CACHE);
+        Assert.assertNotNull(jvmCacheInfo.get("cache.yml.hit"));
+        Assert.assertNotNull(jvmCacheInfo.get("cache.yml.miss"));
     }
 
     @Test
@@ -105,7 +109,7 @@ public class SysInfoServiceTest extends TestBase {
         GroupSystemInfo jvmInfo = (GroupSystemInfo) sysInfoService.components(Category.CC, Type.JVM).get(0);
         Assert.assertNotNull(jvmInfo);
 
-        Assert.assertEquals(3, jvmInfo.size());
+        Assert.assertEquals(JvmGroup.values().length, jvmInfo.size());
 
         Map<String, String> jvmOsInfo = jvmInfo.get(JvmGroup.OS);
         Assert.assertEquals(6, jvmOsInfo.size());
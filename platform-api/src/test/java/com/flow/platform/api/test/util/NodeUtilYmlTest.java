@@ -51,6 +51,29 @@ public class NodeUtilYmlTest {
         NodeUtil.buildFromYml("hello test", "flow");
     }
 
+    @Test
+    public void should_share_parsed_steps_for_same_yml_and_copy_root() {
+        // given:
+        long numOfHit = NodeUtil.ymlCache().stats().hitCount();
+        Node first = NodeUtil.buildFromYml(ymlContent, "flow-cached");
+
+        // when:
+        Node second = NodeUtil.buildFromYml(ymlContent, "flow-cached");
+        Node other = NodeUtil.buildFromYml(ymlContent, "flow-other");
+
+        // then: steps are shared for same yml and root name
+        Assert.assertEquals(numOfHit + 1, NodeUtil.ymlCache().stats().hitCount());
+        Assert.assertSame(first.getChildren().get(0), second.getChildren().get(0));
+        Assert.assertEquals("flow-other/step1", other.getChildren().get(0).getPath());
+
+        // then: root is not shared
+        Assert.assertNotSame(first, second);
+        first.getEnvs().put("FLOW_VERSION", "changed");
+        first.getChildren().clear();
+        Assert.assertEquals("echo version", second.getEnvs().get("FLOW_VERSION"));
+        Assert.assertEquals(2, second.getChildren().size());
+    }
+
     @Test
     public void should_create_node_by_file() throws IOException {
         Node node = NodeUtil.buildFromYml(ymlContent, "flow1");
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cmd;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of byte buffers grouped by size, buffer size is power of two between min and max size
+ *
+ * @author yang
+ */
+public final class BufferPool {
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final int maxPooledPerSize;
+
+    private final Map<Integer, Queue<byte[]>> buffers = new ConcurrentHashMap<>();
+
+    private final Map<Integer, AtomicInteger> numOfPooled = new ConcurrentHashMap<>();
+
+    /**
+     * @param minSize min buffer size, should be power of two
+     * @param maxSize max buffer size, should be power of two
+     * @param maxPooledPerSize max num of idle buffers kept for each size
+     */
+    public BufferPool(int minSize, int maxSize, int maxPooledPerSize) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxPooledPerSize = maxPooledPerSize;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get buffer which length is not less than size from pool, or create new one if no idle buffer
+     */
+    public byte[] acquire(int size) {
+        int bufferSize = sizeOf(size);
+        byte[] buffer = queueOf(bufferSize).poll();
+
+        if (buffer == null) {
+            return new byte[bufferSize];
+        }
+
+        counterOf(bufferSize).decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Return buffer to pool, it's dropped if pool for the size is full or size not from this pool
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length != sizeOf(buffer.length)) {
+            return;
+        }
+
+        AtomicInteger counter = counterOf(buffer.length);
+        if (counter.incrementAndGet() > maxPooledPerSize) {
+            counter.decrementAndGet();
+            return;
+        }
+
+        queueOf(buffer.length).offer(buffer);
+    }
+
+    private int sizeOf(int size) {
+        if (size <= minSize) {
+            return minSize;
+        }
+
+        if (size >= maxSize) {
+            return maxSize;
+        }
+
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private Queue<byte[]> queueOf(int size) {
+        return buffers.computeIfAbsent(size, key -> new ConcurrentLinkedQueue<>());
+    }
+
+    private AtomicInteger counterOf(int size) {
+        return numOfPooled.computeIfAbsent(size, key -> new AtomicInteger(0));
+    }
+}
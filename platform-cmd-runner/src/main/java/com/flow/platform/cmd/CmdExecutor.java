@@ -23,29 +23,27 @@ import com.flow.platform.util.DateUtil;
 import com.flow.platform.util.SystemUtil;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
-import java.io.BufferedReader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.lang.reflect.Field;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.log4j.Log4j2;
 
@@ -102,29 +100,38 @@ public final class CmdExecutor {
     // process timeout in seconds, default is 2 hour
     private final static Integer DEFAULT_TIMEOUT = 3600 * 2;
 
-    // 1 mb buffer for std reader
-    private final static int DEFAULT_BUFFER_SIZE = 1024 * 1024 * 1;
+    // std reader buffer from 4 kb and grows up to 1 mb for heavy output
+    private final static int MIN_BUFFER_SIZE = 1024 * 4;
 
-    private final static int DEFAULT_LOGGING_WAITING_SECONDS = 30;
+    private final static int MAX_BUFFER_SIZE = 1024 * 1024;
 
-    private final static int DEFAULT_SHUTDOWN_WAITING_SECONDS = 30;
+    private final static BufferPool BUFFER_POOL = new BufferPool(MIN_BUFFER_SIZE, MAX_BUFFER_SIZE, 16);
 
-    private final static String CYGWIN_HOME = "CYGWIN_HOME";
+    private final static int NUM_OF_IO_THREADS = 4;
 
-    private final ConcurrentLinkedQueue<Log> loggingQueue = new ConcurrentLinkedQueue<>();
+    /**
+     * Fixed pool shared by all cmd executors to poll std streams and dispatch logs, the streams are
+     * read only by available bytes so a thread is never blocked by a quiet process. The log listener
+     * is called on these threads, it should not block
+     */
+    private final static ScheduledExecutorService IO_POLLER = Executors.newScheduledThreadPool(NUM_OF_IO_THREADS,
+        new ThreadFactoryBuilder().setNameFormat("cmd-io-%d").setDaemon(true).build());
 
-    private final String endTerm = String.format("=====EOF-%s=====", UUID.randomUUID());
+    // delay of next poll when std streams are idle, in millis
+    private final static long MIN_POLL_DELAY = 5;
 
-    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.SECONDS,
-        new LinkedBlockingQueue<>(),
-        r -> {
-            Thread t = Executors.defaultThreadFactory().newThread(r);
-            t.setDaemon(true);
-            return t;
-        }
-    );
+    private final static long MAX_POLL_DELAY = 100;
 
-    private final CountDownLatch stdThreadCountDown = new CountDownLatch(2);
+    // max num of lines for each poll, so a heavy output cmd will not hold the thread from others
+    private final static int MAX_LINES_PER_POLL = 1000;
+
+    private final static int DEFAULT_LOGGING_WAITING_SECONDS = 30;
+
+    private final static String CYGWIN_HOME = "CYGWIN_HOME";
+
+    private final String endTerm = String.format("=====EOF-%s=====", UUID.randomUUID());
+
+    private final byte[] endTermBytes = endTerm.getBytes(Charset.defaultCharset());
 
     private final CountDownLatch logThreadCountDown = new CountDownLatch(1);
 
@@ -142,6 +149,8 @@ public final class CmdExecutor {
 
     private Integer timeout;
 
+    private StdStreamPoller poller;
+
     /**
      * @param procListener nullable
      * @param logListener nullable
@@ -227,15 +236,12 @@ public final class CmdExecutor {
 
             procListener.onStarted(outputResult);
 
-            // thread to send cmd list to bash
-            executor.execute(createCmdListExec(p.getOutputStream(), cmdList));
+            // poll stdout and stderr on shared io threads, started before writing cmd to avoid blocked by output
+            poller = new StdStreamPoller(p);
+            IO_POLLER.execute(poller);
 
-            // thread to read stdout and stderr stream and put log to logging queue
-            executor.execute(createStdStreamReader(Log.Type.STDOUT, p.getInputStream()));
-            executor.execute(createStdStreamReader(Log.Type.STDERR, p.getErrorStream()));
-
-            // thread to make consume logging queue
-            executor.execute(createCmdLoggingReader());
+            // send cmd list to bash, it only blocks if cmd list larger than pipe buffer
+            writeCmdList(p.getOutputStream(), cmdList);
 
             // wait for max process timeout
             if (p.waitFor(timeout.longValue(), TimeUnit.SECONDS)) {
@@ -248,13 +254,9 @@ public final class CmdExecutor {
             procListener.onExecuted(outputResult);
             log.trace("====== 1. Process executed : {} ======", outputResult.getExitValue());
 
-            // wait for log thread with max 30 seconds to continue upload log
-            logThreadCountDown.await(DEFAULT_LOGGING_WAITING_SECONDS, TimeUnit.SECONDS);
-            executor.shutdown();
-
-            // try to shutdown all threads with max 30 seconds waiting time
-            if (!executor.awaitTermination(DEFAULT_SHUTDOWN_WAITING_SECONDS, TimeUnit.SECONDS)) {
-                executor.shutdownNow();
+            // wait for logging with max 30 seconds to continue upload log, otherwise stop polling
+            if (!logThreadCountDown.await(DEFAULT_LOGGING_WAITING_SECONDS, TimeUnit.SECONDS)) {
+                poller.cancel();
             }
 
             outputResult.setFinishTime(DateUtil.now());
@@ -306,92 +308,190 @@ public final class CmdExecutor {
     }
 
     /**
-     * Make runnable to exec each cmd
+     * Write each cmd to bash
      */
-    private Runnable createCmdListExec(final OutputStream outputStream, final List<String> cmdList) {
-
-        return () -> {
-            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream))) {
-                for (String cmd : cmdList) {
-                    writer.write(cmd + Unix.LINE_SEPARATOR);
-                    writer.flush();
-                }
-
-                // find env and set to result output if output filter is not null or empty
-                if (!outputEnvFilters.isEmpty()) {
-                    writer.write(String.format("echo %s" + Unix.LINE_SEPARATOR, endTerm));
-                    writer.write("env" + Unix.LINE_SEPARATOR);
-                    writer.flush();
-                }
+    private void writeCmdList(final OutputStream outputStream, final List<String> cmdList) {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream))) {
+            for (String cmd : cmdList) {
+                writer.write(cmd + Unix.LINE_SEPARATOR);
+                writer.flush();
+            }
 
-            } catch (IOException e) {
-                log.warn("Exception on write cmd: " + e.getMessage());
+            // find env and set to result output if output filter is not null or empty
+            if (!outputEnvFilters.isEmpty()) {
+                writer.write(String.format("echo %s" + Unix.LINE_SEPARATOR, endTerm));
+                writer.write("env" + Unix.LINE_SEPARATOR);
+                writer.flush();
             }
-        };
+
+        } catch (IOException e) {
+            log.warn("Exception on write cmd: " + e.getMessage());
+        }
     }
 
-    private Runnable createCmdLoggingReader() {
-        return () -> {
+    /**
+     * Poll stdout and stderr of a process and dispatch logs, it runs on shared io threads and reschedules
+     * itself until both streams ended, so the log listener of a cmd is called one by one in read order
+     */
+    private final class StdStreamPoller implements Runnable {
+
+        private final Process process;
+
+        private final StdStream[] streams;
+
+        private volatile boolean cancelled = false;
+
+        private long delay = MIN_POLL_DELAY;
+
+        StdStreamPoller(Process process) {
+            this.process = process;
+            this.streams = new StdStream[]{
+                new StdStream(Log.Type.STDOUT, process.getInputStream()),
+                new StdStream(Log.Type.STDERR, process.getErrorStream())
+            };
+        }
+
+        /**
+         * Stop polling, the remaining logs are dropped
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public void run() {
             try {
-                while (true) {
-                    if (stdThreadCountDown.getCount() == 0 && loggingQueue.size() == 0) {
-                        break;
-                    }
+                if (cancelled) {
+                    finish();
+                    return;
+                }
 
-                    Log log = loggingQueue.poll();
-                    if (log == null) {
-                        try {
-                            Thread.sleep(100);
-                        } catch (InterruptedException ignored) {
-                        }
-                    } else {
-                        logListener.onLog(log);
+                // check before read, since all output has been written to stream once process exited
+                boolean alive = process.isAlive();
+                int numOfLines = 0;
+                boolean drained = true;
+
+                for (StdStream stream : streams) {
+                    numOfLines += stream.poll();
+                    drained = drained && stream.reader.isDrained();
+                }
+
+                if (!alive && drained) {
+                    for (StdStream stream : streams) {
+                        stream.onLine(stream.reader.remaining());
                     }
+                    finish();
+                    return;
                 }
-            } finally {
+
+                delay = numOfLines > 0 ? 0 : Math.min(Math.max(delay * 2, MIN_POLL_DELAY), MAX_POLL_DELAY);
+                IO_POLLER.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (Throwable e) {
+                log.warn("Exception on poll std stream: {}", e.getMessage());
+                finish();
+            }
+        }
+
+        private void finish() {
+            for (StdStream stream : streams) {
+                stream.close();
+            }
+
+            try {
                 logListener.onFinish();
+            } finally {
                 logThreadCountDown.countDown();
-                log.trace(" ===== Logging Reader Thread Finish =====");
+                log.trace(" ===== Std Stream Poller Finish =====");
             }
-        };
+        }
     }
 
-    private Runnable createStdStreamReader(final Log.Type type, final InputStream is) {
-        return () -> {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(is), DEFAULT_BUFFER_SIZE)) {
-                String line;
-                Integer count = 0;
-                while ((line = reader.readLine()) != null) {
-                    if (Objects.equals(line, endTerm)) {
-                        if (outputResult != null) {
-                            readEnv(reader, outputResult.getOutput(), outputEnvFilters);
-                        }
-                        break;
-                    }
-                    count += 1;
-                    loggingQueue.add(new Log(type, line, count));
+    private final class StdStream {
+
+        private final Log.Type type;
+
+        private final LineReader reader;
+
+        private int count = 0;
+
+        // not null after end term found, the following lines are env output
+        private EnvReader envReader;
+
+        StdStream(Log.Type type, InputStream is) {
+            this.type = type;
+            this.reader = new LineReader(is, BUFFER_POOL);
+        }
+
+        /**
+         * Read available lines
+         *
+         * @return num of lines been read
+         */
+        int poll() throws IOException {
+            int numOfLines = 0;
+            byte[] line;
+
+            while (numOfLines < MAX_LINES_PER_POLL && (line = reader.pollLine()) != null) {
+                onLine(line);
+                numOfLines++;
+            }
+
+            return numOfLines;
+        }
+
+        void onLine(byte[] line) {
+            if (line == null) {
+                return;
+            }
+
+            if (envReader != null) {
+                envReader.onLine(new String(line, Charset.defaultCharset()));
+                return;
+            }
+
+            if (Arrays.equals(line, endTermBytes)) {
+                if (outputResult != null) {
+                    envReader = new EnvReader(outputResult.getOutput(), outputEnvFilters);
                 }
-            } catch (IOException ignore) {
+                return;
+            }
 
-            } finally {
-                stdThreadCountDown.countDown();
-                log.trace(" ===== {} Stream Reader Thread Finish =====", type);
+            count += 1;
+
+            try {
+                logListener.onLog(new Log(type, line, count));
+            } catch (Throwable e) {
+                CmdExecutor.log.warn("Exception on log listener: {}", e.getMessage());
             }
-        };
+        }
+
+        void close() {
+            try {
+                reader.close();
+            } catch (IOException ignore) {
+            }
+        }
     }
 
     /**
-     * Start when find log match 'endTerm', and load all env,
-     * put env item which match 'start with filter' to CmdResult.output map
+     * Load env lines after 'endTerm', put env item which match 'start with filter' to CmdResult.output map
      */
-    private void readEnv(final BufferedReader reader,
-                         final Map<String, String> output,
-                         final Set<String> filters) throws IOException {
-        String line;
-        String currentKey = null;
-        StringBuilder value = null;
-
-        while ((line = reader.readLine()) != null) {
+    private final class EnvReader {
+
+        private final Map<String, String> output;
+
+        private final Set<String> filters;
+
+        private String currentKey = null;
+
+        private StringBuilder value = null;
+
+        EnvReader(Map<String, String> output, Set<String> filters) {
+            this.output = output;
+            this.filters = filters;
+        }
+
+        void onLine(String line) {
             int index = line.indexOf('=');
 
             // reset value builder and current key
@@ -402,7 +502,7 @@ public final class CmdExecutor {
 
                 currentKey = null;
                 value = null;
-                continue;
+                return;
             }
 
             if (isMatchEnvFilter(line, filters)) {
@@ -417,7 +517,7 @@ public final class CmdExecutor {
                 value = new StringBuilder();
                 currentKey = line.substring(0, index);
                 value.append(line.substring(index + 1));
-                continue;
+                return;
             }
 
             if (index == -1 && value != null) {
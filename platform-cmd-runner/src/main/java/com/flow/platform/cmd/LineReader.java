@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cmd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Read lines as raw bytes from input stream without blocking, the line is not decoded to string
+ *
+ * Only the available bytes of stream are read, the incomplete line is kept until its terminator arrived.
+ * Line terminator '\n' or '\r\n' is not included in the returned line
+ *
+ * The read buffer is taken from buffer pool with min size, and grows when the stream fills the whole buffer,
+ * so idle or quiet streams hold small buffer only. The buffer is returned to the pool on close
+ *
+ * @author yang
+ */
+final class LineReader implements Closeable {
+
+    private final InputStream is;
+
+    private final BufferPool pool;
+
+    private byte[] buffer;
+
+    private int pos = 0;
+
+    private int limit = 0;
+
+    // incomplete line read from previous calls
+    private byte[] line;
+
+    private int length = 0;
+
+    LineReader(InputStream is, BufferPool pool) {
+        this.is = is;
+        this.pool = pool;
+        this.buffer = pool.acquire(pool.getMinSize());
+    }
+
+    /**
+     * Read next line from available bytes, it never blocks on stream
+     *
+     * @return line bytes or null if no complete line available
+     */
+    byte[] pollLine() throws IOException {
+        while (true) {
+            if (pos >= limit) {
+                int available = is.available();
+                if (available <= 0) {
+                    return null;
+                }
+
+                // all data consumed, buffer can be replaced with larger one
+                if (limit == buffer.length && buffer.length < pool.getMaxSize()) {
+                    pool.release(buffer);
+                    buffer = pool.acquire(buffer.length * 2);
+                }
+
+                pos = 0;
+                limit = Math.max(is.read(buffer, 0, Math.min(available, buffer.length)), 0);
+
+                if (limit == 0) {
+                    return null;
+                }
+            }
+
+            int start = pos;
+            while (pos < limit && buffer[pos] != '\n') {
+                pos++;
+            }
+
+            int size = pos - start;
+
+            if (line == null) {
+                line = Arrays.copyOfRange(buffer, start, pos);
+            } else {
+                if (length + size > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, length + size));
+                }
+                System.arraycopy(buffer, start, line, length, size);
+            }
+
+            length += size;
+
+            // found line terminator
+            if (pos < limit) {
+                pos++;
+                return remaining();
+            }
+        }
+    }
+
+    /**
+     * Whether all available bytes of stream are consumed
+     */
+    boolean isDrained() throws IOException {
+        return pos >= limit && is.available() <= 0;
+    }
+
+    /**
+     * Take the incomplete line, it's the last line when stream ended without line terminator
+     *
+     * @return line bytes or null if nothing left
+     */
+    byte[] remaining() {
+        if (line == null) {
+            return null;
+        }
+
+        byte[] result = trim(line, length);
+        line = null;
+        length = 0;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            is.close();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private static byte[] trim(byte[] line, int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+
+        return length == line.length ? line : Arrays.copyOf(line, length);
+    }
+}
@@ -16,6 +16,8 @@
 
 package com.flow.platform.cmd;
 
+import java.nio.charset.Charset;
+
 /**
  * @author gy@fir.im
  */
@@ -37,10 +39,21 @@ public final class Log {
         this.number = count;
     }
 
+    /**
+     * Create log from raw bytes of line, the content is decoded on demand
+     */
+    public Log(Type type, byte[] bytes, Integer count) {
+        this.type = type;
+        this.bytes = bytes;
+        this.number = count;
+    }
+
     private Type type;
 
     private String content;
 
+    private byte[] bytes;
+
     private Integer number;
 
     public Type getType() {
@@ -48,9 +61,22 @@ public final class Log {
     }
 
     public String getContent() {
+        if (content == null && bytes != null) {
+            content = new String(bytes, Charset.defaultCharset());
+        }
         return content;
     }
 
+    /**
+     * Get raw bytes of log line, it's encoded by default charset if log created from string
+     */
+    public byte[] getBytes() {
+        if (bytes == null && content != null) {
+            bytes = content.getBytes(Charset.defaultCharset());
+        }
+        return bytes;
+    }
+
     public Integer getNumber() {
         return number;
     }
@@ -59,7 +85,7 @@ public final class Log {
     public String toString() {
         return "Log{" +
             "type=" + type +
-            ", content='" + content + '\'' +
+            ", content='" + getContent() + '\'' +
             '}';
     }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cmd.test;
+
+import com.flow.platform.cmd.BufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class BufferPoolTest {
+
+    private final BufferPool pool = new BufferPool(1024, 8192, 1);
+
+    @Test
+    public void should_acquire_buffer_with_size_in_power_of_two() {
+        Assert.assertEquals(1024, pool.acquire(10).length);
+        Assert.assertEquals(2048, pool.acquire(1025).length);
+        Assert.assertEquals(4096, pool.acquire(4096).length);
+        Assert.assertEquals(8192, pool.acquire(100000).length);
+    }
+
+    @Test
+    public void should_reuse_released_buffer_within_limit() {
+        // given:
+        byte[] first = pool.acquire(2048);
+        byte[] second = pool.acquire(2048);
+
+        // when: release two buffers but only one can be kept
+        pool.release(first);
+        pool.release(second);
+
+        // then:
+        Assert.assertSame(first, pool.acquire(2048));
+        Assert.assertNotSame(second, pool.acquire(2048));
+
+        // then: buffer not from pool is dropped
+        pool.release(new byte[3000]);
+        Assert.assertEquals(4096, pool.acquire(3000).length);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cmd.test;
+
+import com.flow.platform.cmd.CmdExecutor;
+import com.flow.platform.cmd.Log;
+import com.flow.platform.cmd.LogListener;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to push 1 GB output of process through log listener, with 100 bytes per line
+ *
+ * Run by main method from IDE or 'java -cp <test classpath> ...CmdExecutorBenchmark'
+ *
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class CmdExecutorBenchmark {
+
+    private final static int LINE_SIZE = 100; // include line separator
+
+    private final static long NUM_OF_LINES = 1024L * 1024 * 1024 / LINE_SIZE;
+
+    private final static String OUTPUT_CMD =
+        String.format("yes %s | head -n %s", Strings.repeat("x", LINE_SIZE - 1), NUM_OF_LINES);
+
+    private static class CountingLogListener implements LogListener {
+
+        private long numOfLines = 0;
+
+        @Override
+        public void onLog(Log log) {
+            if (log.getBytes().length == LINE_SIZE - 1) {
+                numOfLines++;
+            }
+        }
+
+        @Override
+        public void onFinish() {
+
+        }
+    }
+
+    @Benchmark
+    public long output() {
+        CountingLogListener listener = new CountingLogListener();
+        new CmdExecutor(null, listener, null, null, null, null, Lists.newArrayList(OUTPUT_CMD)).run();
+
+        if (listener.numOfLines != NUM_OF_LINES) {
+            throw new IllegalStateException("Missing output, received " + listener.numOfLines + " lines");
+        }
+
+        return listener.numOfLines;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CmdExecutorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -5,6 +5,12 @@ import com.flow.platform.cmd.Log;
 import com.flow.platform.cmd.LogListener;
 import com.flow.platform.domain.CmdResult;
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -78,4 +84,69 @@ public class CmdExecutorTest {
         Assert.assertEquals(0, result.getOutput().size());
         Assert.assertNotEquals(0, result.getExitValue().intValue());
     }
+
+    @Test
+    public void should_deliver_all_logs_in_order() throws Throwable {
+        // given:
+        final int numOfLines = 100000;
+        List<Log> logs = new ArrayList<>(numOfLines);
+
+        LogListener listener = new LogListener() {
+            @Override
+            public void onLog(Log log) {
+                logs.add(log);
+            }
+
+            @Override
+            public void onFinish() {
+
+            }
+        };
+
+        // when:
+        CmdExecutor executor = new CmdExecutor(null, listener, null, null, null, null,
+            Lists.newArrayList("printf 'first\\r\\n'", "seq 2 " + numOfLines, "printf 'no-new-line'"));
+        CmdResult result = executor.run();
+
+        // then:
+        Assert.assertEquals(0, result.getExitValue().intValue());
+        Assert.assertEquals(numOfLines + 1, logs.size());
+        Assert.assertEquals("first", logs.get(0).getContent());
+        Assert.assertEquals(Log.Type.STDOUT, logs.get(0).getType());
+
+        for (int i = 1; i < numOfLines; i++) {
+            Assert.assertEquals(i + 1, logs.get(i).getNumber().intValue());
+            Assert.assertEquals(Integer.toString(i + 1), logs.get(i).getContent());
+        }
+
+        Assert.assertEquals("no-new-line", logs.get(numOfLines).getContent());
+    }
+
+    @Test
+    public void should_run_cmd_in_parallel_with_bounded_io_threads() throws Throwable {
+        // given:
+        final int numOfCmd = 20;
+        ExecutorService cmdRunners = Executors.newFixedThreadPool(numOfCmd);
+        List<Future<CmdResult>> results = new ArrayList<>(numOfCmd);
+
+        // when: run cmd which outputs to both std streams in parallel
+        for (int i = 0; i < numOfCmd; i++) {
+            results.add(cmdRunners.submit(() -> new CmdExecutor(null, logListener, null, null, null, null,
+                Lists.newArrayList("echo out", "sleep 1", "echo err 1>&2")).run()));
+        }
+
+        Thread.sleep(500);
+        long numOfIoThreads = Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> thread.getName().startsWith("cmd-io-"))
+            .count();
+
+        // then: io threads are not grow with num of cmd
+        Assert.assertTrue(numOfIoThreads <= 4);
+
+        for (Future<CmdResult> result : results) {
+            Assert.assertEquals(0, result.get(30, TimeUnit.SECONDS).getExitValue().intValue());
+        }
+
+        cmdRunners.shutdown();
+    }
 }
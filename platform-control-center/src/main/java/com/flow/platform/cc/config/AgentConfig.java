@@ -16,6 +16,11 @@
 
 package com.flow.platform.cc.config;
 
+import com.flow.platform.cc.domain.IdleAgentPool;
+import com.flow.platform.cc.selector.AffinityAgentSelector;
+import com.flow.platform.cc.selector.AgentSelector;
+import com.flow.platform.cc.selector.LeastLoadedAgentSelector;
+import com.flow.platform.cc.selector.LruAgentSelector;
 import com.flow.platform.domain.AgentSettings;
 import com.flow.platform.util.http.HttpURL;
 import javax.annotation.PostConstruct;
@@ -40,6 +45,12 @@ public class AgentConfig {
     @Value("${zk.host}")
     private String zookeeperUrl;
 
+    /**
+     * Strategy to auto select agent from zone: lru, least_loaded or affinity
+     */
+    @Value("${agent.selector}")
+    private String selector;
+
     private final AgentSettings settings = new AgentSettings();
 
     @PostConstruct
@@ -55,10 +66,32 @@ public class AgentConfig {
 
         settings.setZookeeperUrl(zookeeperUrl);
         log.trace(settings.toString());
+        log.trace("Agent selector: {}", selector);
     }
 
     @Bean
     public AgentSettings agentSettings() {
         return settings;
     }
+
+    @Bean
+    public IdleAgentPool idleAgentPool() {
+        return new IdleAgentPool(agentSelector(selector));
+    }
+
+    private static AgentSelector agentSelector(String name) {
+        switch (name) {
+            case "lru":
+                return new LruAgentSelector();
+
+            case "least_loaded":
+                return new LeastLoadedAgentSelector();
+
+            case "affinity":
+                return new AffinityAgentSelector(new LruAgentSelector());
+
+            default:
+                throw new IllegalArgumentException("Unsupported agent selector: " + name);
+        }
+    }
 }
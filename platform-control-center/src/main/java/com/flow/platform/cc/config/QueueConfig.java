@@ -16,11 +16,17 @@
 
 package com.flow.platform.cc.config;
 
+import com.flow.platform.core.queue.DiskQueue;
 import com.flow.platform.core.queue.MemoryQueue;
+import com.flow.platform.core.queue.PartitionedMessageQueue;
 import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.core.queue.RabbitQueue;
+import com.flow.platform.queue.OverflowPolicy;
+import com.flow.platform.queue.PartitionedQueue;
 import com.flow.platform.queue.PlatformQueue;
 import com.google.common.collect.Range;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import javax.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,11 +51,6 @@ public class QueueConfig {
      */
     public final static int DEFAULT_PRIORITY = 1;
 
-    /**
-     * The max queue priority for special case like retry
-     */
-    public final static int MAX_PRIORITY = 100;
-
     /**
      * The priority range for queue
      */
@@ -77,6 +78,18 @@ public class QueueConfig {
     @Value("${queue.cmd.rabbit.name}")
     private String cmdQueueName;
 
+    /**
+     * Num of RabbitMQ consumers for each zone
+     */
+    @Value("${queue.cmd.rabbit.concurrency}")
+    private Integer cmdQueueRabbitConcurrency;
+
+    /**
+     * Num of unacknowledged messages for each RabbitMQ consumer, the larger prefetch makes priority less effective
+     */
+    @Value("${queue.cmd.rabbit.prefetch}")
+    private Integer cmdQueueRabbitPrefetch;
+
     /**
      * Enable RabbitMQ or using embedded queue
      */
@@ -89,6 +102,36 @@ public class QueueConfig {
     @Value("${queue.cmd.retry.enable}")
     private Boolean cmdQueueRetryEnable;
 
+    /**
+     * Num of cmd can be dispatched at the same time across zones
+     */
+    @Value("${queue.cmd.concurrency}")
+    private Integer cmdQueueConcurrency;
+
+    /**
+     * Num of consumers for cmd status queue, status of same cmd always processed in order
+     */
+    @Value("${queue.cmd.status.concurrency}")
+    private Integer cmdStatusQueueConcurrency;
+
+    /**
+     * Max length of cmd status queue, report request will be blocked if queue is full
+     */
+    @Value("${queue.cmd.status.max_length}")
+    private Integer cmdStatusQueueMaxLength;
+
+    /**
+     * Enable local disk journal for embedded queues, pending items will be recovered after restart
+     */
+    @Value("${queue.journal.enable}")
+    private Boolean queueJournalEnable;
+
+    /**
+     * Control center working dir
+     */
+    @Autowired
+    private Path workspace;
+
     /**
      * AppConfig task executor
      */
@@ -102,18 +145,22 @@ public class QueueConfig {
 
         log.trace("Cmd queue name: {}", cmdQueueName);
         log.trace("Cmd RabbitMQ enabled: {}", cmdQueueRabbitEnable);
+        log.trace("Cmd RabbitMQ concurrency: {}", cmdQueueRabbitConcurrency);
+        log.trace("Cmd RabbitMQ prefetch: {}", cmdQueueRabbitPrefetch);
         log.trace("Cmd queue retry enabled: {}", cmdQueueRetryEnable);
+        log.trace("Cmd queue concurrency: {}", cmdQueueConcurrency);
+        log.trace("Cmd status queue concurrency: {}", cmdStatusQueueConcurrency);
+        log.trace("Cmd status queue max length: {}", cmdStatusQueueMaxLength);
+        log.trace("Queue journal enabled: {}", queueJournalEnable);
     }
 
+    /**
+     * Cmd queue partitioned by zone, the message key is zone name
+     */
     @Bean
-    public PlatformQueue<PriorityMessage> cmdQueue() {
-        if (cmdQueueRabbitEnable) {
-            log.trace("Apply RabbitMQ for cmd queue");
-            return new RabbitQueue(taskExecutor, host, QUEUE_MAX_LENGTH, DEFAULT_PRIORITY, cmdQueueName);
-        }
-
-        log.trace("Apply in memory queue for cmd queue");
-        return new MemoryQueue(taskExecutor, QUEUE_MAX_LENGTH, "CmdQueue");
+    public PartitionedQueue<PriorityMessage> cmdQueue() {
+        return new PartitionedMessageQueue(taskExecutor, QUEUE_MAX_LENGTH, "CmdQueue", cmdQueueConcurrency,
+            this::cmdZoneQueue);
     }
 
     /**
@@ -121,6 +168,49 @@ public class QueueConfig {
      */
     @Bean
     public PlatformQueue<PriorityMessage> cmdStatusQueue() {
-        return new MemoryQueue(taskExecutor, QUEUE_MAX_LENGTH, "CmdStatusQueue");
+        if (queueJournalEnable) {
+            return new DiskQueue(taskExecutor,
+                cmdStatusQueueMaxLength,
+                "CmdStatusQueue",
+                cmdStatusQueueConcurrency,
+                journalDir("cmd-status"),
+                OverflowPolicy.BLOCK);
+        }
+
+        return new MemoryQueue(taskExecutor,
+            cmdStatusQueueMaxLength,
+            "CmdStatusQueue",
+            cmdStatusQueueConcurrency,
+            OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Create cmd queue for zone, the rabbit queue name is suffixed by zone, so the messages in the
+     * unpartitioned queue named by 'queue.cmd.rabbit.name' are not consumed and need to be drained before upgrade
+     */
+    private PlatformQueue<PriorityMessage> cmdZoneQueue(String zone) {
+        if (cmdQueueRabbitEnable) {
+            log.trace("Apply RabbitMQ for cmd queue of zone {}", zone);
+            String queueName = cmdQueueName + "-" + zone;
+            int maxPriority = (Integer) PRIORITY_RANGE.upperEndpoint();
+            return new RabbitQueue(taskExecutor, host, QUEUE_MAX_LENGTH, maxPriority, queueName,
+                cmdQueueRabbitConcurrency, cmdQueueRabbitPrefetch);
+        }
+
+        if (queueJournalEnable) {
+            log.trace("Apply disk queue for cmd queue of zone {}", zone);
+            return new DiskQueue(taskExecutor, QUEUE_MAX_LENGTH, "CmdQueue-" + zone, 1, journalDir("cmd", zone));
+        }
+
+        log.trace("Apply in memory queue for cmd queue of zone {}", zone);
+        return new MemoryQueue(taskExecutor, QUEUE_MAX_LENGTH, "CmdQueue-" + zone);
+    }
+
+    private Path journalDir(String queue, String partition) {
+        return Paths.get(workspace.toString(), "queue", queue, partition);
+    }
+
+    private Path journalDir(String queue) {
+        return Paths.get(workspace.toString(), "queue", queue);
     }
 }
\ No newline at end of file
@@ -21,7 +21,7 @@ import com.flow.platform.cc.event.AgentResourceEvent;
 import com.flow.platform.cc.event.AgentResourceEvent.Category;
 import com.flow.platform.cc.service.ZoneService;
 import com.flow.platform.core.queue.PriorityMessage;
-import com.flow.platform.queue.PlatformQueue;
+import com.flow.platform.queue.PartitionedQueue;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -39,7 +39,7 @@ public class AgentResourceEventHandler implements ApplicationListener<AgentResou
     private ZoneService zoneService;
 
     @Autowired
-    private PlatformQueue<PriorityMessage> cmdQueue;
+    private PartitionedQueue<PriorityMessage> cmdQueue;
 
     @Value("${queue.cmd.retry.enable}")
     private Boolean cmdQueueRetryEnable;
@@ -58,15 +58,16 @@ public class AgentResourceEventHandler implements ApplicationListener<AgentResou
             return;
         }
 
+        // only pause or resume cmd queue of the zone, cmd to other zones are not blocked
         if (event.getCategory() == Category.FULL) {
-            cmdQueue.pause();
-            log.trace("Pause cmd queue since no agent resources");
+            cmdQueue.pause(zone);
+            log.trace("Pause cmd queue of zone '{}' since no agent resources", zone);
             return;
         }
 
         if (event.getCategory() == Category.RELEASED) {
-            cmdQueue.resume();
-            log.trace("Resume cmd queue since has agent resource released");
+            cmdQueue.resume(zone);
+            log.trace("Resume cmd queue of zone '{}' since has agent resource released", zone);
         }
     }
 }
@@ -23,12 +23,13 @@ import com.flow.platform.cc.service.CmdService;
 import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.core.exception.IllegalStatusException;
 import com.flow.platform.core.queue.PriorityMessage;
-import com.flow.platform.core.util.ThreadUtil;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.queue.QueueListener;
+import com.flow.platform.util.ExponentialBackoff;
 import com.flow.platform.util.zk.ZkException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,7 +45,11 @@ import org.springframework.stereotype.Component;
 @Component
 public class CmdQueueConsumer implements QueueListener<PriorityMessage> {
 
-    private final static long RETRY_WAIT_TIME = 1000; // in millis
+    private final static long RETRY_INITIAL_DELAY = 1000; // in millis
+
+    private final static long RETRY_MAX_DELAY = 30 * 1000; // in millis
+
+    private final ExponentialBackoff retryBackoff = new ExponentialBackoff(RETRY_INITIAL_DELAY, RETRY_MAX_DELAY, 0.2);
 
     @Value("${queue.cmd.idle_agent.period}")
     private Integer idleAgentPeriod; // period for check idle agent in seconds
@@ -110,9 +115,16 @@ public class CmdQueueConsumer implements QueueListener<PriorityMessage> {
         }
     }
 
+    /**
+     * Re-enqueue message with delay by num of retry, the consumer thread is not blocked
+     */
     private void retry(final PriorityMessage message) {
-        message.setPriority(QueueConfig.MAX_PRIORITY);
-        cmdQueue.enqueue(message);
-        ThreadUtil.sleep(RETRY_WAIT_TIME);
+        long delay = retryBackoff.delay(message.getRetry());
+
+        // retry with the highest priority which is in range of x-max-priority of rabbit queue
+        message.setPriority((Integer) QueueConfig.PRIORITY_RANGE.upperEndpoint());
+        message.setRetry(message.getRetry() + 1);
+        cmdQueue.enqueue(message, delay, TimeUnit.MILLISECONDS);
+        log.trace("Retry cmd queue item after {} ms", delay);
     }
 }
\ No newline at end of file
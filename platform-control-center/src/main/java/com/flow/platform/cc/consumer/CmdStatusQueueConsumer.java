@@ -19,21 +19,31 @@ package com.flow.platform.cc.consumer;
 import com.flow.platform.cc.domain.CmdStatusItem;
 import com.flow.platform.cc.service.CmdService;
 import com.flow.platform.core.queue.PriorityMessage;
+import com.flow.platform.queue.DeferredAckListener;
 import com.flow.platform.queue.PlatformQueue;
-import com.flow.platform.queue.QueueListener;
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
  * To update cmd status and agent status
  *
+ * Status items are buffered and written in one transaction when 'batch size' items collected
+ * or every 'batch interval' millis, set batch size to 1 to update status item by item.
+ * The items are acked to queue after the batch written, so that buffered items are kept
+ * in queue journal and recovered if control center crashed before flush
+ *
  * @author yang
  */
 @Log4j2
 @Component
-public class CmdStatusQueueConsumer implements QueueListener<PriorityMessage> {
+public class CmdStatusQueueConsumer implements DeferredAckListener<PriorityMessage> {
 
     @Autowired
     private PlatformQueue<PriorityMessage> cmdStatusQueue;
@@ -41,24 +51,116 @@ public class CmdStatusQueueConsumer implements QueueListener<PriorityMessage> {
     @Autowired
     private CmdService cmdService;
 
+    @Value("${queue.cmd.status.batch.size}")
+    private Integer batchSize;
+
+    private final List<BufferedItem> buffer = new ArrayList<>();
+
+    /**
+     * Flush is serialized to keep status of same cmd written in report order
+     */
+    private final Object flushLock = new Object();
+
     @PostConstruct
     public void init() {
         // register to cmd status queue
         cmdStatusQueue.register(this);
     }
 
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
     @Override
-    public void onQueueItem(PriorityMessage item) {
+    public void onQueueItem(PriorityMessage item, Runnable ack) {
         if (item == null) {
+            ack.run();
             return;
         }
 
+        CmdStatusItem statusItem;
         try {
-            CmdStatusItem statusItem = CmdStatusItem.parse(item.getBody(), CmdStatusItem.class);
+            statusItem = CmdStatusItem.parse(item.getBody(), CmdStatusItem.class);
             log.debug(Thread.currentThread().getName() + " : " + item.toString());
+        } catch (Throwable e) {
+            log.error("Update cmd error:", e);
+            ack.run();
+            return;
+        }
+
+        if (batchSize <= 1) {
+            updateStatus(statusItem);
+            ack.run();
+            return;
+        }
+
+        synchronized (buffer) {
+            buffer.add(new BufferedItem(statusItem, ack));
+            if (buffer.size() < batchSize) {
+                return;
+            }
+        }
+
+        flush();
+    }
+
+    /**
+     * Write buffered status items in batch
+     */
+    @Scheduled(fixedDelayString = "${queue.cmd.status.batch.interval}")
+    public void flush() {
+        synchronized (flushLock) {
+            List<BufferedItem> buffered;
+            synchronized (buffer) {
+                if (buffer.isEmpty()) {
+                    return;
+                }
+
+                buffered = new ArrayList<>(buffer);
+                buffer.clear();
+            }
+
+            List<CmdStatusItem> items = new ArrayList<>(buffered.size());
+            for (BufferedItem item : buffered) {
+                items.add(item.statusItem);
+            }
+
+            try {
+                cmdService.updateStatus(items);
+                log.trace("Update {} cmd status items in batch", items.size());
+            } catch (Throwable e) {
+                // fallback to update item by item, so that only the invalid items are skipped
+                log.warn("Update cmd status in batch error, retry item by item: {}", e.getMessage());
+                for (CmdStatusItem statusItem : items) {
+                    updateStatus(statusItem);
+                }
+            }
+
+            // ack after batch committed
+            for (BufferedItem item : buffered) {
+                item.ack.run();
+            }
+        }
+    }
+
+    private void updateStatus(CmdStatusItem statusItem) {
+        try {
             cmdService.updateStatus(statusItem, false);
         } catch (Throwable e) {
             log.error("Update cmd error:", e);
         }
     }
+
+    private static class BufferedItem {
+
+        private final CmdStatusItem statusItem;
+
+        private final Runnable ack;
+
+        BufferedItem(CmdStatusItem statusItem, Runnable ack) {
+            this.statusItem = statusItem;
+            this.ack = ack;
+        }
+    }
 }
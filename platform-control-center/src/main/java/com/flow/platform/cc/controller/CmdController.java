@@ -29,15 +29,19 @@ import com.flow.platform.domain.CmdReport;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
 import com.google.common.collect.Range;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -117,6 +121,24 @@ public class CmdController {
         cmdService.updateStatus(statusItem, true);
     }
 
+    /**
+     * For agent report batch of cmd status collapsed by cmd id
+     *
+     * @param reports cmd id and status are required, result is optional
+     */
+    @PostMapping(path = "/report/batch")
+    public void reportBatch(@RequestBody List<CmdReport> reports) {
+        for (CmdReport report : reports) {
+            if (report.getId() == null || report.getStatus() == null) {
+                throw new IllegalParameterException("Cmd id and status are required");
+            }
+        }
+
+        for (CmdReport report : reports) {
+            cmdService.updateStatus(new CmdStatusItem(report, true, true), true);
+        }
+    }
+
     /**
      * List commands by agent path
      */
@@ -139,6 +161,34 @@ public class CmdController {
         cmdService.saveLog(cmdId, file);
     }
 
+    /**
+     * Append chunk of zipped cmd log, the chunk is skipped if offset not equal to acknowledged offset
+     *
+     * @param cmdId cmd id
+     * @param offset position of chunk in zipped log
+     * @return acknowledged offset, agent should send next chunk from it
+     */
+    @PostMapping(path = "/log/upload/chunk", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Long uploadLogChunk(@RequestParam String cmdId,
+                               @RequestParam Long offset,
+                               HttpServletRequest request) throws IOException {
+        if (offset < 0) {
+            throw new IllegalParameterException("Illegal offset of log chunk");
+        }
+        return cmdService.appendLog(cmdId, offset, request.getInputStream());
+    }
+
+    /**
+     * Finish chunked upload of zipped cmd log
+     *
+     * @param cmdId cmd id
+     * @param size total size of zipped log
+     */
+    @PostMapping(path = "/log/upload/complete")
+    public void completeLogUpload(@RequestParam String cmdId, @RequestParam Long size) {
+        cmdService.completeLog(cmdId, size);
+    }
+
     /**
      * Get zipped log file by cmd id
      */
@@ -40,7 +40,7 @@ public interface AgentDao extends BaseDao<AgentPath, Agent> {
     List<Agent> list(String zone, String orderByField, AgentStatus... status);
 
     /**
-     * Find agent by session id
+     * Find agent by one of its session id
      *
      * @param sessionId session id
      * @return Agent instance
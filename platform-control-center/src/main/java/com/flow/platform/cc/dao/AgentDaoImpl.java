@@ -32,12 +32,15 @@ import org.springframework.stereotype.Repository;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.util.List;
 import java.util.Set;
 
 /**
+ * Sessions of agent are lazy mapped, the queries of agent fetch sessions by join in the same select
+ *
  * @author Will
  */
 @Repository(value = "agentDao")
@@ -59,7 +62,8 @@ public class AgentDaoImpl extends AbstractBaseDao<AgentPath, Agent> implements A
     @Override
     public Agent get(final AgentPath agentPath) {
         return execute(session -> session
-            .createQuery("from Agent where AGENT_ZONE = :zone and AGENT_NAME = :name", Agent.class)
+            .createQuery("select distinct a from Agent a left join fetch a.sessions "
+                + "where a.path.zone = :zone and a.path.name = :name", Agent.class)
             .setParameter("zone", agentPath.getZone())
             .setParameter("name", agentPath.getName())
             .uniqueResult());
@@ -67,18 +71,29 @@ public class AgentDaoImpl extends AbstractBaseDao<AgentPath, Agent> implements A
 
     @Override
     public Agent get(final String sessionId) {
-        return execute(session -> session.createQuery("from Agent where sessionId = :sessionId", Agent.class)
+        return execute(session -> session
+            .createQuery("select distinct a from Agent a join a.sessions s left join fetch a.sessions "
+                + "where key(s) = :sessionId", Agent.class)
             .setParameter("sessionId", sessionId)
             .uniqueResult());
     }
 
     @Override
     public Agent getByToken(String token) {
-        return execute(session -> session.createQuery("from Agent where token = :token", Agent.class)
+        return execute(session -> session
+            .createQuery("select distinct a from Agent a left join fetch a.sessions where a.token = :token",
+                Agent.class)
             .setParameter("token", token)
             .uniqueResult());
     }
 
+    @Override
+    public List<Agent> list() {
+        return execute(session -> session
+            .createQuery("select distinct a from Agent a left join fetch a.sessions", Agent.class)
+            .list());
+    }
+
     @Override
     public List<Agent> list(Collection<AgentPath> keys) {
         return execute(session -> {
@@ -86,6 +101,8 @@ public class AgentDaoImpl extends AbstractBaseDao<AgentPath, Agent> implements A
 
             CriteriaQuery<Agent> select = builder.createQuery(Agent.class);
             Root<Agent> from = select.from(Agent.class);
+            from.fetch("sessions", JoinType.LEFT);
+            select.distinct(true);
 
             Set<String> zones = new HashSet<>(keys.size());
             Set<String> agents = new HashSet<>(keys.size());
@@ -124,7 +141,8 @@ public class AgentDaoImpl extends AbstractBaseDao<AgentPath, Agent> implements A
             CriteriaQuery<Agent> criteria = builder.createQuery(Agent.class);
 
             Root<Agent> root = criteria.from(Agent.class);
-            criteria.select(root);
+            root.fetch("sessions", JoinType.LEFT);
+            criteria.select(root).distinct(true);
 
             Predicate whereCriteria = builder.equal(root.get("path").get("zone"), zone);
 
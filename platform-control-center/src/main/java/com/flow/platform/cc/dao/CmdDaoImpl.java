@@ -66,18 +66,11 @@ public class CmdDaoImpl extends AbstractBaseDao<String, Cmd> implements CmdDao {
             // select from
             Root<Cmd> root = select.from(getEntityClass());
 
-            // where
-            Predicate where = buildAgentPathPredicate(builder, root.get("agentPath"), agentPath);
-
-            Predicate typesPredicate = buildInPredicate(builder, root.get("type"), types);
-            if (where != null && typesPredicate != null) {
-                where = builder.and(where, typesPredicate);
-            }
-
-            Predicate statusPredicate = buildInPredicate(builder, root.get("status"), status);
-            if (where != null && statusPredicate != null) {
-                where = builder.and(where, statusPredicate);
-            }
+            // where, each predicate is optional
+            Predicate where = and(builder,
+                buildAgentPathPredicate(builder, root.get("agentPath"), agentPath),
+                buildInPredicate(builder, root.get("type"), types),
+                buildInPredicate(builder, root.get("status"), status));
 
             if (where != null) {
                 select.where(where);
@@ -111,6 +104,17 @@ public class CmdDaoImpl extends AbstractBaseDao<String, Cmd> implements CmdDao {
         return predicate;
     }
 
+    private static Predicate and(CriteriaBuilder builder, Predicate... predicates) {
+        Predicate where = null;
+        for (Predicate predicate : predicates) {
+            if (predicate == null) {
+                continue;
+            }
+            where = where == null ? predicate : builder.and(where, predicate);
+        }
+        return where;
+    }
+
     private <T> Predicate buildInPredicate(CriteriaBuilder builder, Path<?> path, Set<T> sets) {
         Predicate predicate = null;
         if (sets != null && sets.size() > 0) {
@@ -32,6 +32,12 @@ public interface CmdResultDao extends BaseDao<String, CmdResult> {
      */
     List<CmdResult> list(Collection<String> cmdIds);
 
+    /**
+     * Save or update cmd results in one round trip for existing check,
+     * the statements are sent by jdbc batch when session flushed
+     */
+    void saveOrUpdate(Collection<CmdResult> results);
+
     /**
      * Only update not null fields or empty collection
      */
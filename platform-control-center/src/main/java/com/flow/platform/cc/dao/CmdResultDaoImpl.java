@@ -23,8 +23,10 @@ import com.google.common.collect.Sets;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.CriteriaUpdate;
@@ -65,6 +67,35 @@ public class CmdResultDaoImpl extends AbstractBaseDao<String, CmdResult> impleme
         });
     }
 
+    @Override
+    public void saveOrUpdate(Collection<CmdResult> results) {
+        if (results == null || results.isEmpty()) {
+            return;
+        }
+
+        Set<String> cmdIds = new HashSet<>(results.size());
+        for (CmdResult result : results) {
+            cmdIds.add(result.getCmdId());
+        }
+
+        // load existing results to session, so merge will not select them again
+        Set<String> existing = new HashSet<>(cmdIds.size());
+        for (CmdResult result : list(cmdIds)) {
+            existing.add(result.getCmdId());
+        }
+
+        execute(session -> {
+            for (CmdResult result : results) {
+                if (existing.contains(result.getCmdId())) {
+                    session.merge(result);
+                } else {
+                    session.save(result);
+                }
+            }
+            return null;
+        });
+    }
+
     @Override
     public int updateNotNullOrEmpty(final CmdResult obj) {
         final Map<Field, Object> notNullFields =
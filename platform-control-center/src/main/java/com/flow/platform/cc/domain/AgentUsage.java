@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flow.platform.cc.domain;
+
+import com.flow.platform.domain.AgentCapacity;
+import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.Cmd;
+
+/**
+ * Agent usage info in idle agent pool, for agent selector
+ *
+ * @author yang
+ */
+public class AgentUsage {
+
+    private final AgentPath path;
+
+    /**
+     * Timestamp in millis when agent become idle
+     */
+    private long idleSince;
+
+    /**
+     * Num of cmd dispatched to agent since it's online
+     */
+    private long numOfDispatched;
+
+    /**
+     * Affinity key of last cmd dispatched to agent, which is cmd extra
+     */
+    private String lastAffinity;
+
+    /**
+     * Capacity advertised by agent, null if agent not advertise
+     */
+    private AgentCapacity capacity;
+
+    public AgentUsage(AgentPath path) {
+        this.path = path;
+    }
+
+    public AgentPath getPath() {
+        return path;
+    }
+
+    public long getIdleSince() {
+        return idleSince;
+    }
+
+    public void setIdleSince(long idleSince) {
+        this.idleSince = idleSince;
+    }
+
+    public long getNumOfDispatched() {
+        return numOfDispatched;
+    }
+
+    public String getLastAffinity() {
+        return lastAffinity;
+    }
+
+    public AgentCapacity getCapacity() {
+        return capacity;
+    }
+
+    void setCapacity(AgentCapacity capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Agent can accept cmd if it not advertise capacity or has free capacity
+     */
+    public boolean hasHeadroom() {
+        return capacity == null || capacity.getFree() > 0;
+    }
+
+    void onDispatched(Cmd cmd) {
+        numOfDispatched++;
+
+        if (cmd != null && cmd.getExtra() != null) {
+            lastAffinity = cmd.getExtra();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AgentUsage{" +
+            "path=" + path +
+            ", idleSince=" + idleSince +
+            ", numOfDispatched=" + numOfDispatched +
+            ", lastAffinity='" + lastAffinity + '\'' +
+            ", capacity=" + capacity +
+            '}';
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flow.platform.cc.domain;
+
+import com.flow.platform.cc.selector.AgentSelector;
+import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.AgentCapacity;
+import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.Cmd;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In memory idle agents by zone, the agent is removed from pool when it's claimed,
+ * so an idle agent cannot be dispatched to two cmd
+ *
+ * The pool is updated when agent status saved, and reconciled with idle agents from db periodically
+ *
+ * The idle agent which advertised no free capacity is not selected
+ *
+ * @author yang
+ */
+public class IdleAgentPool {
+
+    private final AgentSelector selector;
+
+    /**
+     * Idle agents by zone in idle order
+     */
+    private final Map<String, LinkedHashMap<AgentPath, AgentUsage>> idle = new HashMap<>();
+
+    /**
+     * Usage of online agents
+     */
+    private final Map<AgentPath, AgentUsage> usages = new HashMap<>();
+
+    /**
+     * Pool version when agent changed, to avoid reconcile overwrite the changes after idle agents loaded
+     */
+    private final Map<AgentPath, Long> changed = new HashMap<>();
+
+    private long version = 0;
+
+    public IdleAgentPool(AgentSelector selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Get current version, should be called before load idle agents for reconcile
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Put agent to pool as the latest idle agent
+     */
+    public synchronized void release(AgentPath path) {
+        markChanged(path);
+
+        AgentUsage usage = usages.computeIfAbsent(path, AgentUsage::new);
+        usage.setIdleSince(System.currentTimeMillis());
+
+        LinkedHashMap<AgentPath, AgentUsage> zoneIdle = idle.computeIfAbsent(path.getZone(), k -> new LinkedHashMap<>());
+        zoneIdle.remove(path);
+        zoneIdle.put(path, usage);
+    }
+
+    /**
+     * Remove agent from pool since it's busy
+     */
+    public synchronized void remove(AgentPath path) {
+        markChanged(path);
+        removeIdle(path);
+    }
+
+    /**
+     * Remove agent from pool and its usage since it's offline
+     */
+    public synchronized void offline(AgentPath path) {
+        remove(path);
+        usages.remove(path);
+    }
+
+    /**
+     * Update capacity advertised by agent
+     *
+     * @param capacity agent capacity or null if agent not advertise
+     */
+    public synchronized void capacity(AgentPath path, AgentCapacity capacity) {
+        if (capacity == null) {
+            AgentUsage usage = usages.get(path);
+            if (usage != null) {
+                usage.setCapacity(null);
+            }
+            return;
+        }
+
+        usages.computeIfAbsent(path, AgentUsage::new).setCapacity(capacity);
+    }
+
+    /**
+     * Select and remove idle agent from zone for cmd
+     *
+     * @return agent path or null if no idle agent in zone
+     */
+    public synchronized AgentPath claim(String zone, Cmd cmd) {
+        LinkedHashMap<AgentPath, AgentUsage> zoneIdle = idle.get(zone);
+        if (zoneIdle == null || zoneIdle.isEmpty()) {
+            return null;
+        }
+
+        List<AgentUsage> candidates = new ArrayList<>(zoneIdle.size());
+        for (AgentUsage usage : zoneIdle.values()) {
+            if (usage.hasHeadroom()) {
+                candidates.add(usage);
+            }
+        }
+
+        AgentUsage selected = selector.select(Collections.unmodifiableCollection(candidates), cmd);
+        if (selected == null) {
+            return null;
+        }
+
+        remove(selected.getPath());
+        selected.onDispatched(cmd);
+        return selected.getPath();
+    }
+
+    public synchronized int size(String zone) {
+        LinkedHashMap<AgentPath, AgentUsage> zoneIdle = idle.get(zone);
+        return zoneIdle == null ? 0 : zoneIdle.size();
+    }
+
+    /**
+     * Reconcile idle agents of zone from db, the changes after 'since' version are kept
+     *
+     * @param zone zone name
+     * @param idleAgents idle agents from db in idle order
+     * @param since the version before idle agents loaded
+     */
+    public synchronized void reconcile(String zone, Collection<Agent> idleAgents, long since) {
+        LinkedHashMap<AgentPath, AgentUsage> zoneIdle = idle.computeIfAbsent(zone, k -> new LinkedHashMap<>());
+        Set<AgentPath> idlePaths = new HashSet<>(idleAgents.size());
+
+        for (Agent agent : idleAgents) {
+            AgentPath path = agent.getPath();
+            idlePaths.add(path);
+
+            if (isChangedAfter(path, since) || zoneIdle.containsKey(path)) {
+                continue;
+            }
+
+            AgentUsage usage = usages.computeIfAbsent(path, AgentUsage::new);
+            if (agent.getUpdatedDate() != null) {
+                usage.setIdleSince(agent.getUpdatedDate().toInstant().toEpochMilli());
+            }
+            zoneIdle.put(path, usage);
+        }
+
+        zoneIdle.keySet().removeIf(path -> !idlePaths.contains(path) && !isChangedAfter(path, since));
+        changed.entrySet().removeIf(entry -> entry.getKey().getZone().equals(zone) && entry.getValue() <= since);
+    }
+
+    private void markChanged(AgentPath path) {
+        changed.put(path, ++version);
+    }
+
+    private boolean isChangedAfter(AgentPath path, long since) {
+        Long changedAt = changed.get(path);
+        return changedAt != null && changedAt > since;
+    }
+
+    private void removeIdle(AgentPath path) {
+        LinkedHashMap<AgentPath, AgentUsage> zoneIdle = idle.get(path.getZone());
+        if (zoneIdle != null) {
+            zoneIdle.remove(path);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cc.domain;
+
+import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdType;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In memory index of working RUN_SHELL cmd without session by agent path, to get num of agent slots used by
+ * cmd without db query, the slots used by session are counted by sessions of agent
+ *
+ * The index is updated when cmd saved, and reconciled with working cmd from db periodically
+ * since the update may not be committed
+ *
+ * @author yang
+ */
+public class RunningCmdIndex {
+
+    /**
+     * Working cmd id to index version when it's added
+     */
+    private final Map<AgentPath, Map<String, Long>> running = new HashMap<>();
+
+    /**
+     * Finished cmd id to index version when it's removed, to avoid reconcile add back finished cmd
+     */
+    private final Map<String, Long> finished = new HashMap<>();
+
+    private long version = 0;
+
+    /**
+     * Get current version, should be called before load working cmd for reconcile
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Add or remove cmd by its status
+     */
+    public synchronized void update(Cmd cmd) {
+        if (!isIndexed(cmd)) {
+            return;
+        }
+
+        version++;
+
+        if (cmd.isCurrent()) {
+            running.computeIfAbsent(cmd.getAgentPath(), key -> new HashMap<>()).put(cmd.getId(), version);
+            return;
+        }
+
+        Map<String, Long> cmds = running.get(cmd.getAgentPath());
+        if (cmds != null && cmds.remove(cmd.getId()) != null && cmds.isEmpty()) {
+            running.remove(cmd.getAgentPath());
+        }
+
+        finished.put(cmd.getId(), version);
+    }
+
+    public synchronized int numOfRunning(AgentPath agentPath) {
+        Map<String, Long> cmds = running.get(agentPath);
+        return cmds == null ? 0 : cmds.size();
+    }
+
+    /**
+     * Reconcile index by working cmd loaded from db, the changes after 'since' version are kept
+     *
+     * @param workingCmds working RUN_SHELL cmd from db
+     * @param since the version before working cmd loaded
+     */
+    public synchronized void reconcile(Iterable<Cmd> workingCmds, long since) {
+        Set<String> workingIds = new HashSet<>();
+
+        // add working cmd which is not finished after since version
+        for (Cmd cmd : workingCmds) {
+            if (!isIndexed(cmd) || !cmd.isCurrent()) {
+                continue;
+            }
+
+            workingIds.add(cmd.getId());
+
+            Long finishedAt = finished.get(cmd.getId());
+            if (finishedAt != null && finishedAt > since) {
+                continue;
+            }
+
+            running.computeIfAbsent(cmd.getAgentPath(), key -> new HashMap<>()).putIfAbsent(cmd.getId(), since);
+        }
+
+        // remove cmd which is not working in db and added before since version
+        Iterator<Map<String, Long>> agentIterator = running.values().iterator();
+        while (agentIterator.hasNext()) {
+            Map<String, Long> cmds = agentIterator.next();
+            cmds.entrySet().removeIf(entry -> !workingIds.contains(entry.getKey()) && entry.getValue() <= since);
+
+            if (cmds.isEmpty()) {
+                agentIterator.remove();
+            }
+        }
+
+        finished.values().removeIf(finishedAt -> finishedAt <= since);
+    }
+
+    private static boolean isIndexed(Cmd cmd) {
+        return cmd.getType() == CmdType.RUN_SHELL && !cmd.hasSession() && cmd.getAgentPath() != null;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flow.platform.cc.selector;
+
+import com.flow.platform.cc.domain.AgentUsage;
+import com.flow.platform.domain.Cmd;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Select agent which ran the cmd with same affinity key (cmd extra, the node path from api) last time,
+ * so the workspace of the flow on agent can be reused, otherwise select by fallback selector
+ *
+ * @author yang
+ */
+public class AffinityAgentSelector implements AgentSelector {
+
+    private final AgentSelector fallback;
+
+    public AffinityAgentSelector(AgentSelector fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public AgentUsage select(Collection<AgentUsage> candidates, Cmd cmd) {
+        if (cmd != null && cmd.getExtra() != null) {
+            for (AgentUsage candidate : candidates) {
+                if (Objects.equals(candidate.getLastAffinity(), cmd.getExtra())) {
+                    return candidate;
+                }
+            }
+        }
+
+        return fallback.select(candidates, cmd);
+    }
+}
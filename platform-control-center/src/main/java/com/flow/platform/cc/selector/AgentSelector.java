@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flow.platform.cc.selector;
+
+import com.flow.platform.cc.domain.AgentUsage;
+import com.flow.platform.domain.Cmd;
+import java.util.Collection;
+
+/**
+ * Strategy to select agent from idle agents of zone
+ *
+ * @author yang
+ */
+public interface AgentSelector {
+
+    /**
+     * Select agent for cmd
+     *
+     * @param candidates idle agents of zone, in idle order which the longest idle agent is first
+     * @param cmd the cmd to dispatch
+     * @return selected agent or null if no agent can be selected
+     */
+    AgentUsage select(Collection<AgentUsage> candidates, Cmd cmd);
+}
@@ -75,9 +75,14 @@ public interface AgentService extends WebhookService {
     void saveWithStatus(Agent agent, AgentStatus status);
 
     /**
-     * Is agent session timeout
+     * Update num of slots from capacity advertised by agent, and update agent busy or idle status by used slots
      */
-    boolean isSessionTimeout(Agent agent, ZonedDateTime compareDate, long timeoutInSeconds);
+    void updateSlots(AgentPath path, int numOfSlots);
+
+    /**
+     * Is session of agent timeout
+     */
+    boolean isSessionTimeout(Agent agent, String sessionId, ZonedDateTime compareDate, long timeoutInSeconds);
 
     /**
      * Create agent and return token
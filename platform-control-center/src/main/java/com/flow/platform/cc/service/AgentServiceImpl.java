@@ -18,6 +18,7 @@ package com.flow.platform.cc.service;
 
 import com.flow.platform.cc.config.TaskConfig;
 import com.flow.platform.cc.dao.AgentDao;
+import com.flow.platform.cc.domain.IdleAgentPool;
 import com.flow.platform.cc.event.AgentResourceEvent;
 import com.flow.platform.cc.event.AgentResourceEvent.Category;
 import com.flow.platform.cc.exception.AgentErr;
@@ -27,7 +28,6 @@ import com.flow.platform.domain.Agent;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.AgentSettings;
 import com.flow.platform.domain.AgentStatus;
-import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Zone;
@@ -37,6 +37,7 @@ import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -72,6 +73,9 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
     @Autowired
     private AgentSettings agentSettings;
 
+    @Autowired
+    private IdleAgentPool idleAgentPool;
+
     @Override
     public void report(AgentPath path, AgentStatus status) {
         Agent exist = find(path);
@@ -95,7 +99,7 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
 
         // update exist offline agent to idle status
         if (exist.getStatus() == AgentStatus.OFFLINE) {
-            exist.setSessionId(null);
+            exist.clearSessions();
             saveWithStatus(exist, AgentStatus.IDLE);
         }
 
@@ -138,6 +142,25 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
         return agentDao.list(zone, "createdDate");
     }
 
+    @Override
+    public void updateSlots(AgentPath path, int numOfSlots) {
+        Agent agent = find(path);
+        if (agent == null || numOfSlots < 1 || Objects.equals(agent.getConcurrentProc(), numOfSlots)) {
+            return;
+        }
+
+        agent.setConcurrentProc(numOfSlots);
+        log.trace("Agent {} slots been updated to {}", path, numOfSlots);
+
+        if (agent.getStatus() == AgentStatus.OFFLINE) {
+            agentDao.update(agent);
+            return;
+        }
+
+        // save slots with busy or idle status by used slots
+        cmdService.updateAgentStatus(agent);
+    }
+
     @Override
     public void saveWithStatus(Agent agent, AgentStatus status) {
         if (agent == null || status == null) {
@@ -154,6 +177,15 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
         agentDao.update(agent);
         log.trace("Agent status been updated to '{}'", status);
 
+        // update idle agent pool for agent selection
+        if (status == AgentStatus.IDLE) {
+            idleAgentPool.release(agent.getPath());
+        } else if (status == AgentStatus.OFFLINE) {
+            idleAgentPool.offline(agent.getPath());
+        } else {
+            idleAgentPool.remove(agent.getPath());
+        }
+
         // send webhook if status changed
         if (statusIsChanged) {
             this.webhookCallback(agent);
@@ -166,12 +198,13 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
     }
 
     @Override
-    public boolean isSessionTimeout(Agent agent, ZonedDateTime compareDate, long timeoutInSeconds) {
-        if (agent.getSessionId() == null) {
-            throw new UnsupportedOperationException("Target agent is not enable session");
+    public boolean isSessionTimeout(Agent agent, String sessionId, ZonedDateTime compareDate, long timeoutInSeconds) {
+        ZonedDateTime sessionDate = agent.getSessions().get(sessionId);
+        if (sessionDate == null) {
+            throw new UnsupportedOperationException("Target agent is not enable session " + sessionId);
         }
 
-        long sessionAlive = ChronoUnit.SECONDS.between(agent.getSessionDate(), compareDate);
+        long sessionAlive = ChronoUnit.SECONDS.between(sessionDate, compareDate);
         return sessionAlive >= timeoutInSeconds;
     }
 
@@ -244,10 +277,15 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
         for (Zone zone : zoneService.getZones()) {
             Collection<Agent> agents = listForOnline(zone.getName());
             for (Agent agent : agents) {
-                if (agent.getSessionId() != null && isSessionTimeout(agent, now, zone.getAgentSessionTimeout())) {
-                    Cmd delSessionCmd = cmdService.create(new CmdInfo(agent.getPath(), CmdType.DELETE_SESSION, null));
-                    cmdDispatchService.dispatch(delSessionCmd);
-                    log.trace("Send DELETE_SESSION to agent {} by sessionTimeoutTask", agent);
+                for (String sessionId : agent.getSessions().keySet()) {
+                    if (!isSessionTimeout(agent, sessionId, now, zone.getAgentSessionTimeout())) {
+                        continue;
+                    }
+
+                    CmdInfo param = new CmdInfo(agent.getPath(), CmdType.DELETE_SESSION, null);
+                    param.setSessionId(sessionId);
+                    cmdDispatchService.dispatch(cmdService.create(param));
+                    log.trace("Send DELETE_SESSION {} to agent {} by sessionTimeoutTask", sessionId, agent);
                 }
             }
         }
@@ -258,7 +296,10 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
     @Scheduled(initialDelay = 10 * 1000, fixedDelay = IDLE_AGENT_TASK_HEARTBEAT)
     public void idleAgentTask() {
         for (Zone zone : zoneService.getZones()) {
+            long version = idleAgentPool.version();
             List<Agent> availableList = findAvailable(zone.getName());
+            idleAgentPool.reconcile(zone.getName(), availableList, version);
+
             if (availableList.size() > 0) {
                 this.dispatchEvent(new AgentResourceEvent(this, zone.getName(), Category.RELEASED));
             }
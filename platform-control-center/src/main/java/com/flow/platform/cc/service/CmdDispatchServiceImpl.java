@@ -18,6 +18,7 @@ package com.flow.platform.cc.service;
 
 import com.flow.platform.cc.config.TaskConfig;
 import com.flow.platform.cc.domain.CmdStatusItem;
+import com.flow.platform.cc.domain.IdleAgentPool;
 import com.flow.platform.cc.event.AgentResourceEvent;
 import com.flow.platform.cc.event.AgentResourceEvent.Category;
 import com.flow.platform.cc.exception.AgentErr;
@@ -37,8 +38,10 @@ import com.flow.platform.domain.CmdType;
 import com.flow.platform.util.DateUtil;
 import com.flow.platform.util.zk.ZKClient;
 import com.flow.platform.util.zk.ZkException;
+import com.flow.platform.util.zk.ZkException.NotExitException;
 import com.google.common.base.Strings;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -46,6 +49,7 @@ import java.util.Map;
 import java.util.UUID;
 import javax.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
+import org.apache.curator.utils.ZKPaths;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -69,6 +73,9 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
     @Autowired
     private AgentService agentService;
 
+    @Autowired
+    private IdleAgentPool idleAgentPool;
+
     @Autowired
     protected ZKClient zkClient;
 
@@ -161,7 +168,7 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
 
             if (DateUtil.isTimeOut(cmd.getCreatedDate(), ZonedDateTime.now(), cmd.getTimeout())) {
                 try {
-                    Cmd killCmd = cmdService.create(new CmdInfo(cmd.getAgentPath(), CmdType.KILL, null));
+                    Cmd killCmd = createKillCmd(cmd);
                     dispatch(killCmd);
                     log.trace("Send KILL cmd {} by checkTimeoutTask", cmd);
 
@@ -175,47 +182,89 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
     }
 
     /**
-     * Send cmd to agent via zookeeper
+     * Deliver cmd to agent mailbox as sequential node, so cmd sent in quick succession will not be
+     * overwritten and consumed by agent in order
      */
     private void sendCmdToAgent(Agent target, Cmd cmd) {
         String agentNodePath = ZKHelper.buildPath(target.getPath());
-        if (!zkClient.exist(agentNodePath)) {
-            throw new AgentErr.NotFoundException("Node path in zookeeper not found " + target.getPath());
-        }
+        String cmdNodePath = ZKHelper.buildMailboxCmdPath(target.getPath());
 
-        zkClient.setData(agentNodePath, cmd.toBytes());
+        try {
+            zkClient.createSequential(agentNodePath, cmdNodePath, cmd.toBytes());
+        } catch (NotExitException e) {
+            if (!zkClient.exist(agentNodePath)) {
+                throw new AgentErr.NotFoundException("Node path in zookeeper not found " + target.getPath());
+            }
+
+            // mailbox not created by agent
+            zkClient.create(ZKPaths.getPathAndNode(cmdNodePath).getPath(), null);
+            zkClient.createSequential(agentNodePath, cmdNodePath, cmd.toBytes());
+        }
     }
 
-    private Cmd createDeleteSessionCmd(Agent target) {
+    private Cmd createDeleteSessionCmd(Agent target, String sessionId) {
         CmdInfo param = new CmdInfo(target.getPath(), CmdType.DELETE_SESSION, null);
-        param.setSessionId(target.getSessionId());
+        param.setSessionId(sessionId);
         return cmdService.create(param);
     }
 
+    /**
+     * Create KILL cmd for the target cmd only, since other slots of agent may running other cmd
+     * - kill all cmd of session if target cmd has session
+     * - kill target cmd by id which is the content of KILL cmd
+     */
+    private Cmd createKillCmd(Cmd target) {
+        if (target.hasSession()) {
+            CmdInfo param = new CmdInfo(target.getAgentPath(), CmdType.KILL, null);
+            param.setSessionId(target.getSessionId());
+            return cmdService.create(param);
+        }
+
+        return cmdService.create(new CmdInfo(target.getAgentPath(), CmdType.KILL, target.getId()));
+    }
+
+    /**
+     * Delete all sessions of agent
+     */
+    private void deleteSessions(Agent target) {
+        for (String sessionId : new ArrayList<>(target.getSessions().keySet())) {
+            handler.get(CmdType.DELETE_SESSION).exec(createDeleteSessionCmd(target, sessionId));
+            log.trace("Delete session of agent: {} {}", target.getPath(), sessionId);
+        }
+    }
+
     /**
      * Kill agent current running cmd or delete current session
      */
     private void cleanCurrentCmd(Cmd current) {
         if (Strings.isNullOrEmpty(current.getSessionId())) {
-            Cmd cmdToKill = cmdService.create(new CmdInfo(current.getAgentPath(), CmdType.KILL, null));
+            Cmd cmdToKill = createKillCmd(current);
             dispatch(cmdToKill);
         } else {
             Agent agent = agentService.find(current.getAgentPath());
-            Cmd cmdToDelSession = createDeleteSessionCmd(agent);
+            Cmd cmdToDelSession = createDeleteSessionCmd(agent, current.getSessionId());
             dispatch(cmdToDelSession);
         }
     }
 
     /**
-     * Auto select agent from zone
+     * Auto select agent from zone by claiming idle agent from pool
      *
      * @throws AgentErr.NotAvailableException if no available agent
      */
-    private Agent selectAgentFromZone(String zone) {
-        List<Agent> availableList = agentService.findAvailable(zone);
+    private Agent selectAgentFromZone(String zone, Cmd cmd) {
+        AgentPath path;
+
+        while ((path = idleAgentPool.claim(zone, cmd)) != null) {
+            Agent agent = agentService.find(path);
 
-        if (availableList.size() > 0) {
-            return availableList.get(0);
+            // agent status changed but pool not updated yet, it will be recovered by reconcile
+            if (agent == null || !agent.isAvailable()) {
+                log.debug("Claimed agent {} is not available", path);
+                continue;
+            }
+
+            return agent;
         }
 
         throw new AgentErr.NotAvailableException(zone);
@@ -264,7 +313,7 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
             AgentPath path = cmd.getAgentPath();
 
             if (!path.hasName()) {
-                return selectAgentFromZone(path.getZone());
+                return selectAgentFromZone(path.getZone(), cmd);
             }
 
             return agentService.find(path);
@@ -287,10 +336,10 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 existSessionId = UUID.randomUUID().toString();
             }
 
-            target.setSessionId(existSessionId);
-            target.setSessionDate(ZonedDateTime.now());
-            agentService.saveWithStatus(target, AgentStatus.BUSY);
-            log.debug("Agent session been created: {} {}", target.getPath(), target.getSessionId());
+            // session takes one slot of agent, agent is busy if all slots are used
+            target.addSession(existSessionId, ZonedDateTime.now());
+            cmdService.updateAgentStatus(target);
+            log.debug("Agent session been created: {} {}", target.getPath(), existSessionId);
         }
     }
 
@@ -317,14 +366,14 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 return;
             }
 
-            // kill current running cmd and update agent status from cmd callback
-            for (Cmd runningCmd : getRunningCmd(target.getSessionId())) {
-                Cmd killCmd = cmdService.create(new CmdInfo(runningCmd.getAgentPath(), CmdType.KILL, null));
-                handler.get(CmdType.KILL).exec(killCmd);
+            // kill current running cmd of session only, other sessions of agent are not affected
+            for (Cmd runningCmd : getRunningCmd(cmd.getSessionId())) {
+                handler.get(CmdType.KILL).exec(createKillCmd(runningCmd));
             }
 
-            target.setSessionId(null);
-            agentService.saveWithStatus(target, AgentStatus.IDLE);
+            // release the slot of session
+            target.removeSession(cmd.getSessionId());
+            cmdService.updateAgentStatus(target);
         }
 
         private List<Cmd> getRunningCmd(String sessionId) {
@@ -369,7 +418,7 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
             AgentPath path = cmd.getAgentPath();
 
             if (!path.hasName()) {
-                return selectAgentFromZone(path.getZone());
+                return selectAgentFromZone(path.getZone(), cmd);
             }
 
             return agentService.find(path);
@@ -386,7 +435,9 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 if (!target.isAvailable()) {
                     throw new AgentErr.NotAvailableException(target.getName());
                 }
-                agentService.saveWithStatus(target, AgentStatus.BUSY);
+
+                // the cmd has been indexed as running cmd of agent, agent is busy if all slots are used
+                cmdService.updateAgentStatus(target);
             }
 
             sendCmdToAgent(target, cmd);
@@ -462,9 +513,7 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 throw new AgentErr.NotFoundException(cmd.getAgentPath().toString());
             }
 
-            if (target.getSessionId() != null) {
-                handler.get(CmdType.DELETE_SESSION).exec(createDeleteSessionCmd(target));
-            }
+            deleteSessions(target);
 
             // send stop cmd to agent
             sendCmdToAgent(target, cmd);
@@ -500,10 +549,9 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 throw new IllegalParameterException("For SHUTDOWN action, password of 'sudo' must be provided");
             }
 
-            // delete session if session existed
-            if (target.getSessionId() != null) {
-                handler.get(CmdType.DELETE_SESSION).exec(createDeleteSessionCmd(target));
-                log.trace("Delete session before shutdown: {} {}", target.getPath(), target.getSessionId());
+            // delete sessions if session existed
+            if (target.numOfSessions() > 0) {
+                deleteSessions(target);
             }
 
             // otherwise kill cmd before shutdown
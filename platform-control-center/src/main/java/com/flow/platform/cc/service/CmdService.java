@@ -18,10 +18,12 @@ package com.flow.platform.cc.service;
 
 import com.flow.platform.cc.domain.CmdStatusItem;
 import com.flow.platform.core.service.WebhookService;
+import com.flow.platform.domain.Agent;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdResult;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Set;
 import org.springframework.web.multipart.MultipartFile;
@@ -33,6 +35,8 @@ public interface CmdService extends WebhookService {
 
     Integer DEFAULT_CMD_TIMEOUT = 3600; // in seconds, default 1 hour
 
+    int RUNNING_CMD_INDEX_TASK_PERIOD = 60 * 1000; // millisecond
+
     /**
      * Create command from CmdInfo
      *
@@ -89,8 +93,43 @@ public interface CmdService extends WebhookService {
      */
     void updateStatus(CmdStatusItem statusItem, boolean inQueue);
 
+    /**
+     * Update cmd status and result for batch of items in one transaction,
+     * items of the same cmd are coalesced to the final valid status
+     *
+     * The running cmd index, agent status and webhook are applied after the transaction committed
+     */
+    void updateStatus(List<CmdStatusItem> statusItems);
+
     /**
      * Record full zipped log to store
      */
     void saveLog(String cmdId, MultipartFile file);
+
+    /**
+     * Append chunk of zipped log to part file of cmd log, chunk is ignored if offset not match the part file size
+     *
+     * @param offset position of chunk in zipped log
+     * @param chunk input stream of chunk
+     * @return acknowledged offset which is size of part file
+     */
+    long appendLog(String cmdId, long offset, InputStream chunk);
+
+    /**
+     * Finish chunked log upload, the part file is moved to zipped log when its size matches
+     *
+     * @param size total size of zipped log
+     */
+    void completeLog(String cmdId, long size);
+
+    /**
+     * Save agent status by its slots, agent is busy if num of sessions and running cmd without session
+     * reach num of slots, otherwise idle
+     */
+    void updateAgentStatus(Agent agent);
+
+    /**
+     * Task to reconcile in memory running cmd index which used for agent busy or idle with db
+     */
+    void runningCmdIndexTask();
 }
@@ -22,12 +22,15 @@ import static com.flow.platform.domain.CmdType.KILL;
 import static com.flow.platform.domain.CmdType.RUN_SHELL;
 import static com.flow.platform.domain.CmdType.SHUTDOWN;
 import static com.flow.platform.domain.CmdType.STOP;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 import com.flow.platform.cc.config.QueueConfig;
 import com.flow.platform.cc.dao.CmdDao;
 import com.flow.platform.cc.dao.CmdLogDao;
 import com.flow.platform.cc.dao.CmdResultDao;
 import com.flow.platform.cc.domain.CmdStatusItem;
+import com.flow.platform.cc.domain.RunningCmdIndex;
 import com.flow.platform.cc.exception.AgentErr;
 import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.core.exception.IllegalStatusException;
@@ -46,23 +49,38 @@ import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.util.zk.ZKClient;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.ZonedDateTime;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
@@ -103,8 +121,18 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
     @Autowired
     protected ZKClient zkClient;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     private final Map<EnumSet<CmdType>, CmdValidator> cmdValidators = new HashMap<>();
 
+    private final RunningCmdIndex runningCmdIndex = new RunningCmdIndex();
+
+    /**
+     * Locks for chunked log upload by cmd id
+     */
+    private final Striped<Lock> logUploadLocks = Striped.lock(64);
+
     @PostConstruct
     public void init() {
         CmdValidatorForZoneRequired zoneRequired = new CmdValidatorForZoneRequired();
@@ -163,12 +191,15 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
             cmd.setRetry(retry);
         }
 
-        return cmdDao.save(cmd);
+        cmdDao.save(cmd);
+        runningCmdIndex.update(cmd);
+        return cmd;
     }
 
     @Override
     public void save(Cmd cmd) {
         cmdDao.update(cmd);
+        runningCmdIndex.update(cmd);
     }
 
     @Override
@@ -200,7 +231,7 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
     @Transactional(propagation = Propagation.NEVER)
     public Cmd enqueue(CmdInfo cmdInfo, int priority, int retry) {
         Cmd cmd = create(cmdInfo, retry);
-        PriorityMessage message = PriorityMessage.create(cmd.getId().getBytes(), priority);
+        PriorityMessage message = PriorityMessage.create(cmd.getId().getBytes(), priority, cmd.getZoneName());
         cmdQueue.enqueue(message);
 
         return cmd;
@@ -210,7 +241,9 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
     public void updateStatus(CmdStatusItem statusItem, boolean inQueue) {
         if (inQueue) {
             log.trace("Report cmd status from queue: {}", statusItem.getCmdId());
-            cmdStatusQueue.enqueue(PriorityMessage.create(statusItem.toBytes(), QueueConfig.DEFAULT_PRIORITY));
+            PriorityMessage message = PriorityMessage.create(
+                statusItem.toBytes(), QueueConfig.DEFAULT_PRIORITY, statusItem.getCmdId());
+            cmdStatusQueue.enqueue(message);
             return;
         }
 
@@ -251,6 +284,113 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
         }
     }
 
+    @Override
+    public void updateStatus(List<CmdStatusItem> statusItems) {
+        // group status items by cmd id and keep the report order
+        Map<String, List<CmdStatusItem>> itemsByCmd = new LinkedHashMap<>();
+        for (CmdStatusItem item : statusItems) {
+            itemsByCmd.computeIfAbsent(item.getCmdId(), key -> new LinkedList<>()).add(item);
+        }
+
+        List<Cmd> cmds = cmdDao.list(itemsByCmd.keySet());
+        if (cmds.size() < itemsByCmd.size()) {
+            log.warn("{} cmd of status report does not exist", itemsByCmd.size() - cmds.size());
+        }
+
+        List<CmdResult> results = new LinkedList<>();
+        List<Cmd> updatedCmds = new LinkedList<>();
+        Set<AgentPath> agentsToUpdate = new HashSet<>();
+        List<Cmd> cmdsToCallWebhook = new LinkedList<>();
+
+        for (Cmd cmd : cmds) {
+            boolean isUpdated = false;
+            boolean isUpdateAgentStatus = false;
+            boolean isCallWebhook = false;
+            CmdResult latestResult = null;
+
+            // apply status in sequence, only the valid transitions take effect
+            for (CmdStatusItem item : itemsByCmd.get(cmd.getId())) {
+                if (!cmd.addStatus(item.getStatus())) {
+                    log.warn("Cannot add cmd '{}' from '{}' status to '{}'",
+                        cmd.getId(), cmd.getStatus(), item.getStatus());
+                    continue;
+                }
+
+                isUpdated = true;
+                isUpdateAgentStatus |= item.isUpdateAgentStatus();
+                isCallWebhook |= item.isCallWebhook();
+
+                if (item.getCmdResult() != null) {
+                    latestResult = item.getCmdResult();
+                }
+            }
+
+            if (!isUpdated) {
+                continue;
+            }
+
+            // update cmd status, statements are sent by jdbc batch on flush
+            cmdDao.update(cmd);
+            updatedCmds.add(cmd);
+
+            if (latestResult != null) {
+                latestResult.setCmdId(cmd.getId());
+                results.add(latestResult);
+                cmd.setCmdResult(latestResult);
+            }
+
+            if (isUpdateAgentStatus && !cmd.hasSession()) {
+                agentsToUpdate.add(cmd.getAgentPath());
+            }
+
+            if (isCallWebhook) {
+                cmdsToCallWebhook.add(cmd);
+            }
+        }
+
+        cmdResultDao.saveOrUpdate(results);
+
+        // the batch may fail on flush or commit and be retried item by item,
+        // so running cmd index, agent status and webhook are applied only if committed
+        afterCommit(() -> {
+            for (Cmd cmd : updatedCmds) {
+                runningCmdIndex.update(cmd);
+            }
+
+            TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+            newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+            for (AgentPath agentPath : agentsToUpdate) {
+                try {
+                    newTransaction.execute(status -> {
+                        updateAgentStatus(agentPath);
+                        return null;
+                    });
+                } catch (Throwable e) {
+                    log.warn("Fail to update agent {} status: {}", agentPath, e.getMessage());
+                }
+            }
+
+            for (Cmd cmd : cmdsToCallWebhook) {
+                try {
+                    webhookCallback(cmd);
+                } catch (Throwable e) {
+                    log.warn("Fail to call webhook for cmd {}: {}", cmd.getId(), e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Scheduled(fixedDelay = RUNNING_CMD_INDEX_TASK_PERIOD)
+    public void runningCmdIndexTask() {
+        long version = runningCmdIndex.version();
+        List<Cmd> workingCmds = listWorkingCmd(null);
+        runningCmdIndex.reconcile(workingCmds, version);
+        log.trace("Running cmd index reconciled with {} working cmd", workingCmds.size());
+    }
+
     @Override
     public void saveLog(String cmdId, MultipartFile file) {
         CmdLog cmdLog = cmdLogDao.get(cmdId);
@@ -260,14 +400,100 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
 
         try {
             Path target = Paths.get(cmdLogDir.toString(), file.getOriginalFilename());
-            Files.write(target, file.getBytes());
+
+            // stream to file instead of load whole zipped log to memory
+            try (InputStream content = file.getInputStream()) {
+                Files.copy(content, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            cmdLog.setLogPath(target.toString());
+            cmdLogDao.update(cmdLog);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public long appendLog(String cmdId, long offset, InputStream chunk) {
+        if (cmdLogDao.get(cmdId) == null) {
+            throw new IllegalArgumentException("Cmd not exist");
+        }
+
+        Lock lock = logUploadLocks.get(cmdId);
+        lock.lock();
+
+        try (FileChannel channel = FileChannel.open(logPartPath(cmdId), CREATE, WRITE)) {
+            long size = channel.size();
+
+            // chunk been acknowledged or previous chunk missing, let agent resume from current size
+            if (offset != size) {
+                return size;
+            }
+
+            return size + channel.transferFrom(Channels.newChannel(chunk), size, Long.MAX_VALUE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void completeLog(String cmdId, long size) {
+        CmdLog cmdLog = cmdLogDao.get(cmdId);
+        if (cmdLog == null) {
+            throw new IllegalArgumentException("Cmd not exist");
+        }
+
+        Lock lock = logUploadLocks.get(cmdId);
+        lock.lock();
+
+        try {
+            Path part = logPartPath(cmdId);
+            if (!Files.exists(part) || Files.size(part) != size) {
+                throw new IllegalStatusException("Cmd log upload not finished");
+            }
+
+            Path target = Paths.get(cmdLogDir.toString(), logFileName(cmdId));
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
             cmdLog.setLogPath(target.toString());
             cmdLogDao.update(cmdLog);
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Zipped log file name as agent side, the slash in cmd id is replaced with '-'
+     */
+    private static String logFileName(String cmdId) {
+        return cmdId.replace('/', '-') + ".out.zip";
+    }
+
+    private Path logPartPath(String cmdId) {
+        return Paths.get(cmdLogDir.toString(), logFileName(cmdId) + ".part");
+    }
+
+    /**
+     * Run after current transaction committed, or run immediately if not in transaction
+     */
+    private static void afterCommit(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            runnable.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
     /**
      * Update agent status when report cmd status and result
      * - DONOT update agent status if cmd with session, since it controlled by session cmd
@@ -280,25 +506,21 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
             return;
         }
 
-        AgentPath agentPath = cmd.getAgentPath();
-        boolean isAgentBusy = false;
-
-        for (Cmd tmp : listByAgentPath(agentPath)) {
-            if (tmp.getType() != CmdType.RUN_SHELL) {
-                continue;
-            }
+        updateAgentStatus(cmd.getAgentPath());
+    }
 
-            if (!tmp.getAgentPath().equals(agentPath)) {
-                continue;
-            }
+    private void updateAgentStatus(AgentPath agentPath) {
+        updateAgentStatus(agentService.find(agentPath));
+    }
 
-            if (tmp.isCurrent()) {
-                isAgentBusy = true;
-                break;
-            }
+    @Override
+    public void updateAgentStatus(Agent agent) {
+        if (agent == null) {
+            return;
         }
 
-        Agent agent = agentService.find(agentPath);
+        int numOfUsedSlots = agent.numOfSessions() + runningCmdIndex.numOfRunning(agent.getPath());
+        boolean isAgentBusy = numOfUsedSlots >= agent.numOfSlots();
         agentService.saveWithStatus(agent, isAgentBusy ? AgentStatus.BUSY : AgentStatus.IDLE);
     }
 
@@ -20,15 +20,19 @@ import com.flow.platform.core.service.SysInfoServiceImplBase;
 import com.flow.platform.core.sysinfo.AppServerLoader;
 import com.flow.platform.core.sysinfo.DBInfoLoader;
 import com.flow.platform.core.sysinfo.JvmLoader;
+import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.core.sysinfo.MQLoader;
+import com.flow.platform.core.sysinfo.QueueLoader;
 import com.flow.platform.core.sysinfo.SystemInfo;
 import com.flow.platform.core.sysinfo.SystemInfo.Category;
 import com.flow.platform.core.sysinfo.SystemInfo.Type;
 import com.flow.platform.core.sysinfo.SystemInfoLoader;
 import com.flow.platform.core.sysinfo.ZooKeeperLoader;
+import com.flow.platform.queue.PlatformQueue;
 import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -49,6 +53,12 @@ public class SysInfoServiceImpl extends SysInfoServiceImplBase {
     @Value("${mq.management.host}")
     private String mqManagementHost;
 
+    @Autowired
+    private PlatformQueue<PriorityMessage> cmdQueue;
+
+    @Autowired
+    private PlatformQueue<PriorityMessage> cmdStatusQueue;
+
     @PostConstruct
     public void init() {
         infoLoaders.put(Category.CC, new HashMap<>(5));
@@ -64,6 +74,8 @@ public class SysInfoServiceImpl extends SysInfoServiceImplBase {
 
         MQLoader.MQURL mqUrl = new MQLoader.MQURL(mqHost);
         infoLoaders.get(Category.CC).put(SystemInfo.Type.MQ, new MQLoader(mqManagementHost, mqUrl.getUser(), mqUrl.getPass()));
+
+        infoLoaders.get(Category.CC).put(SystemInfo.Type.QUEUE, new QueueLoader(cmdQueue, cmdStatusQueue));
     }
 
     @Override
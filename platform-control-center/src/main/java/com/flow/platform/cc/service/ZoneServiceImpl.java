@@ -17,11 +17,14 @@
 package com.flow.platform.cc.service;
 
 import com.flow.platform.cc.config.TaskConfig;
+import com.flow.platform.cc.domain.IdleAgentPool;
 import com.flow.platform.cc.util.ZKHelper;
 import com.flow.platform.cloud.InstanceManager;
 import com.flow.platform.core.context.ContextEvent;
 import com.flow.platform.core.context.SpringContext;
+import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.AgentCapacity;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.AgentSettings;
 import com.flow.platform.domain.AgentStatus;
@@ -29,7 +32,9 @@ import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Instance;
+import com.flow.platform.domain.Jsonable;
 import com.flow.platform.domain.Zone;
+import com.flow.platform.queue.PartitionedQueue;
 import com.flow.platform.util.zk.ZKClient;
 import com.google.common.collect.Lists;
 import java.util.HashMap;
@@ -64,6 +69,9 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
     @Autowired
     private AgentSettings agentSettings;
 
+    @Autowired
+    private IdleAgentPool idleAgentPool;
+
     @Autowired
     private SpringContext springContext;
 
@@ -73,11 +81,16 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
     @Autowired
     private List<Zone> defaultZones;
 
+    @Autowired
+    private PartitionedQueue<PriorityMessage> cmdQueue;
+
     @Autowired
     protected ZKClient zkClient;
 
     private final Map<Zone, ZoneEventListener> zoneEventWatchers = new HashMap<>();
 
+    private final Map<Zone, CapacityEventListener> capacityEventWatchers = new HashMap<>();
+
     @Override
     public void start() {
         // init root node
@@ -117,8 +130,17 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
             }
         }
 
+        // init cmd queue for zone
+        cmdQueue.partition(zone.getName());
+
         ZoneEventListener zoneEventWatcher = zoneEventWatchers.computeIfAbsent(zone, ZoneEventListener::new);
         zkClient.watchChildren(zonePath, zoneEventWatcher);
+
+        // watch capacity advertised by agents of zone
+        final String capacityPath = zkClient.create(ZKHelper.buildCapacityPath(zone.getName(), null), null);
+        CapacityEventListener capacityWatcher = capacityEventWatchers.computeIfAbsent(zone, CapacityEventListener::new);
+        zkClient.watchChildren(capacityPath, true, capacityWatcher);
+
         return zonePath;
     }
 
@@ -177,6 +199,10 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
         if (numOfIdle > zone.getMaxPoolSize()) {
             int numOfRemove = numOfIdle - zone.getMaxPoolSize();
 
+            // idle agent with free slots may still have sessions
+            agentList.removeIf(agent -> agent.numOfSessions() > 0);
+            numOfRemove = Math.min(numOfRemove, agentList.size());
+
             for (int i = 0; i < numOfRemove; i++) {
                 Agent idleAgent = agentList.get(i);
 
@@ -235,15 +261,64 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
             final String name = ZKHelper.getNameFromPath(path);
             log.debug("Receive zookeeper event {} {}", eventType, path);
 
+            final AgentPath agentPath = new AgentPath(zone.getName(), name);
+
             if (eventType == Type.CHILD_ADDED || eventType == Type.CHILD_UPDATED) {
-                agentService.report(new AgentPath(zone.getName(), name), AgentStatus.IDLE);
+                agentService.report(agentPath, AgentStatus.IDLE);
+
+                // put online idle agent to pool only when node added, cmd is delivered to agent mailbox
+                // so CHILD_UPDATED is only from node data changed, the idle slots are released by cmd status
+                if (eventType == Type.CHILD_ADDED) {
+                    Agent agent = agentService.find(agentPath);
+                    if (agent != null && agent.isAvailable()) {
+                        idleAgentPool.release(agentPath);
+                    }
+                }
                 return;
             }
 
             if (eventType == Type.CHILD_REMOVED) {
-                agentService.report(new AgentPath(zone.getName(), name), AgentStatus.OFFLINE);
+                idleAgentPool.offline(agentPath);
+                agentService.report(agentPath, AgentStatus.OFFLINE);
                 return;
             }
         }
     }
+
+    private class CapacityEventListener implements PathChildrenCacheListener {
+
+        private final Zone zone;
+
+        CapacityEventListener(Zone zone) {
+            this.zone = zone;
+        }
+
+        @Override
+        public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
+            if (event.getData() == null) {
+                return;
+            }
+
+            final Type eventType = event.getType();
+            final String name = ZKHelper.getNameFromPath(event.getData().getPath());
+            final AgentPath agentPath = new AgentPath(zone.getName(), name);
+
+            if (eventType == Type.CHILD_ADDED || eventType == Type.CHILD_UPDATED) {
+                byte[] raw = event.getData().getData();
+                if (raw == null || raw.length == 0) {
+                    return;
+                }
+
+                AgentCapacity capacity = Jsonable.parse(raw, AgentCapacity.class);
+                idleAgentPool.capacity(agentPath, capacity);
+                agentService.updateSlots(agentPath, capacity.getCapacity());
+                log.debug("Agent {} capacity updated: {}", agentPath, capacity);
+                return;
+            }
+
+            if (eventType == Type.CHILD_REMOVED) {
+                idleAgentPool.capacity(agentPath, null);
+            }
+        }
+    }
 }
@@ -28,6 +28,12 @@ import org.springframework.stereotype.Component;
 @Component
 public class ZKHelper {
 
+    private final static String CAPACITY_ROOT_SUFFIX = "-capacity";
+
+    private final static String MAILBOX_ROOT_SUFFIX = "-mailbox";
+
+    private final static String MAILBOX_CMD_PREFIX = "cmd-";
+
     private static String ROOT_NODE;
 
     @Value("${zk.node.root}")
@@ -53,6 +59,33 @@ public class ZKHelper {
         return ZKPaths.makePath(ROOT_NODE, agentPath.getZone(), agentPath.getName());
     }
 
+    /**
+     * Get zk path of capacity advertised by agent, /{root}-capacity/{zone}/{name}
+     *
+     * @param zone zone name (nullable)
+     * @param name agent name (nullable)
+     */
+    public static String buildCapacityPath(String zone, String name) {
+        return ZKPaths.makePath(ROOT_NODE + CAPACITY_ROOT_SUFFIX, zone, name);
+    }
+
+    /**
+     * Get zk path of cmd mailbox of agent, /{root}-mailbox/{zone}/{name}
+     *
+     * @param zone zone name (nullable)
+     * @param name agent name (nullable)
+     */
+    public static String buildMailboxPath(String zone, String name) {
+        return ZKPaths.makePath(ROOT_NODE + MAILBOX_ROOT_SUFFIX, zone, name);
+    }
+
+    /**
+     * Get zk path prefix of sequential cmd node in agent mailbox, /{root}-mailbox/{zone}/{name}/cmd-
+     */
+    public static String buildMailboxCmdPath(AgentPath agentPath) {
+        return ZKPaths.makePath(buildMailboxPath(agentPath.getZone(), agentPath.getName()), MAILBOX_CMD_PREFIX);
+    }
+
     public static String getNameFromPath(String path) {
         return ZKPaths.getNodeFromPath(path);
     }
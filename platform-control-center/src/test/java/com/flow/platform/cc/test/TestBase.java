@@ -21,16 +21,21 @@ import com.flow.platform.cc.dao.AgentDao;
 import com.flow.platform.cc.dao.CmdDao;
 import com.flow.platform.cc.dao.CmdResultDao;
 import com.flow.platform.cc.resource.PropertyResourceLoader;
+import com.flow.platform.cc.service.CmdService;
 import com.flow.platform.cc.util.ZKHelper;
 import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.Cmd;
 import com.flow.platform.util.zk.ZKClient;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
 import org.apache.curator.test.TestingServer;
+import org.apache.curator.utils.ZKPaths;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -96,6 +101,9 @@ public abstract class TestBase {
     @Autowired
     protected CmdResultDao cmdResultDao;
 
+    @Autowired
+    protected CmdService cmdService;
+
     @Autowired
     protected ZKClient zkClient;
 
@@ -121,6 +129,9 @@ public abstract class TestBase {
         agentDao.deleteAll();
         cmdDao.deleteAll();
         cmdResultDao.deleteAll();
+
+        // reset running cmd index since cmd deleted from db directly
+        cmdService.runningCmdIndexTask();
     }
 
     @AfterClass
@@ -143,6 +154,21 @@ public abstract class TestBase {
         return agentPath;
     }
 
+    /**
+     * Get latest cmd delivered to agent mailbox
+     */
+    protected Cmd getLatestCmdInMailbox(AgentPath agentPath) {
+        String mailboxPath = ZKHelper.buildMailboxPath(agentPath.getZone(), agentPath.getName());
+        List<String> cmdNodes = zkClient.getChildren(mailboxPath);
+        if (cmdNodes.isEmpty()) {
+            return null;
+        }
+
+        Collections.sort(cmdNodes);
+        byte[] raw = zkClient.getData(ZKPaths.makePath(mailboxPath, cmdNodes.get(cmdNodes.size() - 1)));
+        return Cmd.parse(raw, Cmd.class);
+    }
+
     protected void deleteNodeWithChildren(String node) {
         if (!zkClient.exist(node)) {
             return;
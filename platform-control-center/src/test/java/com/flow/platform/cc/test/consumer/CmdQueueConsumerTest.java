@@ -112,9 +112,8 @@ public class CmdQueueConsumerTest extends TestBase {
         // then: webhook been invoked
         verify(1, postRequestedFor(urlEqualTo("/node/callback")));
 
-        // then: cmd should received in zookeeper agent node
-        byte[] raw = zkClient.getData(ZKHelper.buildPath(agentPath));
-        Cmd received = Cmd.parse(raw, Cmd.class);
+        // then: cmd should received in zookeeper agent mailbox
+        Cmd received = getLatestCmdInMailbox(agentPath);
         Assert.assertNotNull(received);
         Assert.assertNotNull(received.getId());
         Assert.assertEquals(mockCmd.getAgentPath(), received.getAgentPath());
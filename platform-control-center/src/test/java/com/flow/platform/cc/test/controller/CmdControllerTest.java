@@ -36,14 +36,17 @@ import com.flow.platform.domain.CmdReport;
 import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
-import com.flow.platform.domain.Jsonable;
 import com.flow.platform.domain.Zone;
 import com.flow.platform.core.exception.IllegalParameterException;
+import com.flow.platform.core.queue.PriorityMessage;
+import com.flow.platform.queue.PlatformQueue;
 import com.google.common.collect.Sets;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -75,6 +78,9 @@ public class CmdControllerTest extends TestBase {
     @Autowired
     private Path cmdLogDir;
 
+    @Autowired
+    private PlatformQueue<PriorityMessage> cmdStatusQueue;
+
     @Test
     public void should_list_cmd_types() throws Throwable {
         // when:
@@ -119,6 +125,48 @@ public class CmdControllerTest extends TestBase {
         Assert.assertTrue(loaded.getStatus().equals(CmdStatus.EXECUTED));
     }
 
+    @Test
+    public void should_queue_every_cmd_status_of_batch_report() throws Throwable {
+        // given:
+        String zone = "test-mos-mac";
+        String agent = "test-002";
+
+        AgentPath path = new AgentPath(zone, agent);
+        agentService.report(path, AgentStatus.IDLE);
+        Thread.sleep(1000);
+
+        List<Cmd> cmds = new ArrayList<>();
+        List<CmdReport> reports = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Cmd cmd = cmdService.create(new CmdInfo(zone, agent, CmdType.STOP, null));
+            cmds.add(cmd);
+            reports.add(new CmdReport(cmd.getId(), CmdStatus.EXECUTED, new CmdResult()));
+        }
+
+        // when: post batch report while status queue paused
+        cmdStatusQueue.pause();
+        int initSize = cmdStatusQueue.size();
+
+        try {
+            MockHttpServletRequestBuilder content = post("/cmd/report/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(gsonConfig.toJson(reports));
+
+            this.mockMvc.perform(content).andDo(print()).andExpect(status().isOk());
+
+            // then: every item is in status queue
+            Assert.assertEquals(initSize + reports.size(), cmdStatusQueue.size());
+        } finally {
+            cmdStatusQueue.resume();
+        }
+
+        // then: wait queue processing and check status
+        Thread.sleep(2000);
+        for (Cmd cmd : cmds) {
+            Assert.assertEquals(CmdStatus.EXECUTED, cmdService.find(cmd.getId()).getStatus());
+        }
+    }
+
     @Test
     public void should_send_cmd_to_agent() throws Throwable {
         // given:
@@ -157,11 +205,8 @@ public class CmdControllerTest extends TestBase {
         Assert.assertEquals(2, cmdInfo.getInputs().size());
         Assert.assertEquals("/user/flow", cmdInfo.getWorkingDir());
 
-        // then: check node data
-        byte[] raw = zkClient.getData(path);
-        Assert.assertNotNull(raw);
-
-        Cmd received = Jsonable.parse(raw, Cmd.class);
+        // then: check cmd in mailbox
+        Cmd received = getLatestCmdInMailbox(new AgentPath(zoneName, agentName));
         Assert.assertNotNull(received);
         Assert.assertEquals(cmdInfo, received);
         Assert.assertEquals(2, received.getInputs().size());
@@ -118,6 +118,15 @@ public class CmdDaoTest extends TestBase {
         Assert.assertNotNull(result);
         Assert.assertEquals(1, result.size());
         Assert.assertEquals(cmd1, result.get(0));
+
+        // when: get cmd by type and status without agent path
+        result = cmdDao.list(null, Sets.newHashSet(CmdType.SHUTDOWN), Sets.newHashSet(CmdStatus.RUNNING));
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(cmd1, result.get(0));
+
+        result = cmdDao.list(null, null, Sets.newHashSet(CmdStatus.KILLED));
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(cmd0, result.get(0));
     }
 
     @Test
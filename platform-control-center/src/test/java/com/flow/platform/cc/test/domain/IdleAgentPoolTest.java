@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flow.platform.cc.test.domain;
+
+import com.flow.platform.cc.domain.IdleAgentPool;
+import com.flow.platform.cc.selector.AffinityAgentSelector;
+import com.flow.platform.cc.selector.LeastLoadedAgentSelector;
+import com.flow.platform.cc.selector.LruAgentSelector;
+import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.AgentCapacity;
+import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdType;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class IdleAgentPoolTest {
+
+    private final static String ZONE = "test-zone";
+
+    private final AgentPath first = new AgentPath(ZONE, "first");
+
+    private final AgentPath second = new AgentPath(ZONE, "second");
+
+    @Test
+    public void should_claim_longest_idle_agent_by_lru() {
+        // given:
+        IdleAgentPool pool = new IdleAgentPool(new LruAgentSelector());
+        pool.release(first);
+        pool.release(second);
+
+        // when: first agent released again
+        pool.release(first);
+
+        // then:
+        Assert.assertEquals(second, pool.claim(ZONE, createCmd(null)));
+        Assert.assertEquals(first, pool.claim(ZONE, createCmd(null)));
+        Assert.assertNull(pool.claim(ZONE, createCmd(null)));
+        Assert.assertNull(pool.claim("not-exist-zone", createCmd(null)));
+    }
+
+    @Test
+    public void should_claim_agent_with_least_dispatched_cmd() {
+        // given: first agent has been dispatched once
+        IdleAgentPool pool = new IdleAgentPool(new LeastLoadedAgentSelector());
+        pool.release(first);
+        Assert.assertEquals(first, pool.claim(ZONE, createCmd(null)));
+
+        pool.release(first);
+        pool.release(second);
+
+        // then:
+        Assert.assertEquals(second, pool.claim(ZONE, createCmd(null)));
+    }
+
+    @Test
+    public void should_claim_agent_with_same_affinity() {
+        // given: second agent ran the cmd of flow
+        IdleAgentPool pool = new IdleAgentPool(new AffinityAgentSelector(new LruAgentSelector()));
+        pool.release(second);
+        Assert.assertEquals(second, pool.claim(ZONE, createCmd("flow-a")));
+
+        pool.release(first);
+        pool.release(second);
+
+        // then:
+        Assert.assertEquals(second, pool.claim(ZONE, createCmd("flow-a")));
+        Assert.assertEquals(first, pool.claim(ZONE, createCmd("flow-a")));
+    }
+
+    @Test
+    public void should_not_claim_agent_without_free_capacity() {
+        // given: first agent advertised all capacity used
+        IdleAgentPool pool = new IdleAgentPool(new LruAgentSelector());
+        pool.capacity(first, new AgentCapacity(2, 2));
+        pool.capacity(second, new AgentCapacity(2, 1));
+        pool.release(first);
+        pool.release(second);
+
+        // then:
+        Assert.assertEquals(second, pool.claim(ZONE, createCmd(null)));
+        Assert.assertNull(pool.claim(ZONE, createCmd(null)));
+
+        // when: first agent capacity node removed
+        pool.capacity(first, null);
+
+        // then:
+        Assert.assertEquals(first, pool.claim(ZONE, createCmd(null)));
+    }
+
+    @Test
+    public void should_not_claim_same_agent_concurrently() throws Throwable {
+        // given:
+        final int numOfAgents = 100;
+        IdleAgentPool pool = new IdleAgentPool(new LruAgentSelector());
+        for (int i = 0; i < numOfAgents; i++) {
+            pool.release(new AgentPath(ZONE, "agent-" + i));
+        }
+
+        // when: claim by multiple threads
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Set<AgentPath> claimed = ConcurrentHashMap.newKeySet();
+        AtomicInteger numOfClaimed = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(numOfAgents * 2);
+
+        for (int i = 0; i < numOfAgents * 2; i++) {
+            executor.execute(() -> {
+                AgentPath path = pool.claim(ZONE, createCmd(null));
+                if (path != null) {
+                    claimed.add(path);
+                    numOfClaimed.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+
+        // then:
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(numOfAgents, claimed.size());
+        Assert.assertEquals(numOfAgents, numOfClaimed.get());
+        Assert.assertEquals(0, pool.size(ZONE));
+    }
+
+    @Test
+    public void should_reconcile_with_idle_agents_from_db() {
+        // given:
+        IdleAgentPool pool = new IdleAgentPool(new LruAgentSelector());
+        pool.release(first);
+
+        // when: first agent claimed after idle agents loaded
+        long version = pool.version();
+        Assert.assertEquals(first, pool.claim(ZONE, createCmd(null)));
+        pool.reconcile(ZONE, Lists.newArrayList(new Agent(first), new Agent(second)), version);
+
+        // then: claimed agent should not be added back
+        Assert.assertEquals(1, pool.size(ZONE));
+        Assert.assertEquals(second, pool.claim(ZONE, createCmd(null)));
+
+        // when: reconcile again
+        pool.release(first);
+        pool.reconcile(ZONE, Collections.emptyList(), pool.version());
+
+        // then: agent not idle in db should be removed
+        Assert.assertEquals(0, pool.size(ZONE));
+    }
+
+    private static Cmd createCmd(String extra) {
+        Cmd cmd = new Cmd(ZONE, null, CmdType.RUN_SHELL, null);
+        cmd.setExtra(extra);
+        return cmd;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cc.test.domain;
+
+import com.flow.platform.cc.domain.RunningCmdIndex;
+import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdStatus;
+import com.flow.platform.domain.CmdType;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class RunningCmdIndexTest {
+
+    private final AgentPath agentPath = new AgentPath("test-zone", "test-agent");
+
+    private final RunningCmdIndex index = new RunningCmdIndex();
+
+    @Test
+    public void should_update_num_of_running_by_cmd_status() {
+        // given:
+        Cmd first = createCmd("1", CmdType.RUN_SHELL, CmdStatus.RUNNING);
+        Cmd second = createCmd("2", CmdType.RUN_SHELL, CmdStatus.SENT);
+
+        // when:
+        index.update(first);
+        index.update(second);
+        index.update(createCmd("3", CmdType.STOP, CmdStatus.SENT));
+
+        // then:
+        Assert.assertEquals(2, index.numOfRunning(agentPath));
+
+        // when: finish all cmd
+        first.setStatus(CmdStatus.LOGGED);
+        index.update(first);
+        second.setStatus(CmdStatus.KILLED);
+        index.update(second);
+
+        // then:
+        Assert.assertEquals(0, index.numOfRunning(agentPath));
+    }
+
+    @Test
+    public void should_reconcile_with_working_cmd_from_db() {
+        // given: cmd in index which is not working in db
+        index.update(createCmd("1", CmdType.RUN_SHELL, CmdStatus.RUNNING));
+
+        // when:
+        long version = index.version();
+        index.reconcile(Lists.newArrayList(createCmd("2", CmdType.RUN_SHELL, CmdStatus.RUNNING)), version);
+
+        // then:
+        Assert.assertEquals(1, index.numOfRunning(agentPath));
+
+        // when: reconcile with empty working cmd
+        index.reconcile(Collections.emptyList(), index.version());
+
+        // then:
+        Assert.assertEquals(0, index.numOfRunning(agentPath));
+    }
+
+    @Test
+    public void should_not_add_finished_cmd_when_reconcile() {
+        // when:
+        index.reconcile(Lists.newArrayList(
+            createCmd("1", CmdType.RUN_SHELL, CmdStatus.LOGGED),
+            createCmd("2", CmdType.RUN_SHELL, CmdStatus.KILLED)), index.version());
+
+        // then:
+        Assert.assertEquals(0, index.numOfRunning(agentPath));
+    }
+
+    @Test
+    public void should_keep_changes_after_working_cmd_loaded() {
+        // given: load working cmd from db
+        Cmd running = createCmd("1", CmdType.RUN_SHELL, CmdStatus.RUNNING);
+        index.update(running);
+
+        long version = index.version();
+        Cmd loaded = createCmd("1", CmdType.RUN_SHELL, CmdStatus.RUNNING);
+
+        // when: cmd finished and new cmd started before reconcile
+        running.setStatus(CmdStatus.LOGGED);
+        index.update(running);
+        index.update(createCmd("2", CmdType.RUN_SHELL, CmdStatus.RUNNING));
+
+        index.reconcile(Lists.newArrayList(loaded), version);
+
+        // then: finished cmd not be added back, new cmd not be removed
+        Assert.assertEquals(1, index.numOfRunning(agentPath));
+
+        // when: reconcile again with loaded data
+        index.reconcile(Lists.newArrayList(createCmd("2", CmdType.RUN_SHELL, CmdStatus.RUNNING)), index.version());
+
+        // then:
+        Assert.assertEquals(1, index.numOfRunning(agentPath));
+    }
+
+    private Cmd createCmd(String id, CmdType type, CmdStatus status) {
+        Cmd cmd = new Cmd(agentPath.getZone(), agentPath.getName(), type, null);
+        cmd.setId(id);
+        cmd.setStatus(status);
+        return cmd;
+    }
+}
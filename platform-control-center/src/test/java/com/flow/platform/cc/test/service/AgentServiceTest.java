@@ -29,6 +29,7 @@ import com.flow.platform.cc.service.ZoneService;
 import com.flow.platform.cc.test.TestBase;
 import com.flow.platform.cc.util.ZKHelper;
 import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.AgentCapacity;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.AgentSettings;
 import com.flow.platform.domain.AgentStatus;
@@ -101,6 +102,33 @@ public class AgentServiceTest extends TestBase {
         verify(strategy, postRequestedFor(urlEqualTo("/agent/callback")));
     }
 
+    @Test
+    public void should_update_agent_slots_from_advertised_capacity() throws Throwable {
+        // given: online agent
+        String zoneName = defaultZones.get(0).getName();
+        AgentPath agentPath = createMockAgent(zoneName, "capacity-agent");
+        Thread.sleep(1000);
+        Assert.assertEquals(1, agentService.find(agentPath).numOfSlots());
+
+        // when: agent advertise capacity
+        String capacityPath = ZKHelper.buildCapacityPath(zoneName, agentPath.getName());
+        zkClient.createEphemeral(capacityPath, new AgentCapacity(3, 0).toBytes());
+        Thread.sleep(1000);
+
+        // then:
+        Agent loaded = agentService.find(agentPath);
+        Assert.assertEquals(3, loaded.numOfSlots());
+        Assert.assertEquals(AgentStatus.IDLE, loaded.getStatus());
+
+        // when: capacity reduced
+        zkClient.createEphemeral(capacityPath, new AgentCapacity(2, 1).toBytes());
+        Thread.sleep(1000);
+
+        // then:
+        Assert.assertEquals(2, agentService.find(agentPath).numOfSlots());
+        zkClient.delete(capacityPath, false);
+    }
+
     @Test
     public void should_has_agent_config_in_zone_data() throws Throwable {
         // given:
@@ -236,12 +264,11 @@ public class AgentServiceTest extends TestBase {
     public void should_agent_session_timeout() throws Throwable {
         // when:
         Agent mockAgent = new Agent("test-zone", "session-timeout-agent");
-        mockAgent.setSessionId("mock-session-id");
-        mockAgent.setSessionDate(ZonedDateTime.now());
+        mockAgent.addSession("mock-session-id", ZonedDateTime.now());
 
         // then:
         Thread.sleep(1500); // wait for 2 seconds
-        Assert.assertTrue(agentService.isSessionTimeout(mockAgent, DateUtil.utcNow(), 1));
+        Assert.assertTrue(agentService.isSessionTimeout(mockAgent, "mock-session-id", DateUtil.utcNow(), 1));
     }
 
     @Test
@@ -37,7 +37,7 @@ import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Zone;
-import com.flow.platform.queue.PlatformQueue;
+import com.flow.platform.queue.PartitionedQueue;
 import java.util.List;
 import org.junit.After;
 import org.junit.Assert;
@@ -66,7 +66,7 @@ public class CmdDispatchServiceTest extends TestBase {
     private List<Zone> defaultZones;
 
     @Autowired
-    private PlatformQueue<PriorityMessage> cmdQueue;
+    private PartitionedQueue<PriorityMessage> cmdQueue;
 
     private AgentPath agentPath;
 
@@ -100,7 +100,8 @@ public class CmdDispatchServiceTest extends TestBase {
     @Test
     public void should_broadcast_agent_resource_event_if_no_available_agent() throws Throwable {
         // given: make no available agent resource
-        Assert.assertEquals(true, cmdQueue.isRunning());
+        String zoneName = agentPath.getZone();
+        Assert.assertEquals(true, cmdQueue.isRunning(zoneName));
 
         // when: send create session cmd
         Cmd cmdToCreateSession = cmdService.create(new CmdInfo(agentPath, CmdType.CREATE_SESSION, null));
@@ -111,8 +112,9 @@ public class CmdDispatchServiceTest extends TestBase {
 
         }
 
-        // then: queue should be pause since no available
-        Assert.assertEquals(false, cmdQueue.isRunning());
+        // then: queue of zone should be pause since no available, the cmd queue still running for other zones
+        Assert.assertEquals(false, cmdQueue.isRunning(zoneName));
+        Assert.assertEquals(true, cmdQueue.isRunning());
 
         // when: send delete session to release agent
         CmdInfo cmd = new CmdInfo(agentPath, CmdType.DELETE_SESSION, null);
@@ -121,7 +123,7 @@ public class CmdDispatchServiceTest extends TestBase {
         cmdDispatchService.dispatch(cmdToDeleteSession);
 
         // then: queue should be resumed since agent resource released
-        Assert.assertEquals(true, cmdQueue.isRunning());
+        Assert.assertEquals(true, cmdQueue.isRunning(zoneName));
     }
 
     @Test
@@ -169,7 +171,7 @@ public class CmdDispatchServiceTest extends TestBase {
         cmdDispatchService.dispatch(cmdService.create(cmdToDelSession));
 
         // then: new kill cmd should been sent to agent
-        Cmd killCmd = Cmd.parse(zkClient.getData(ZKHelper.buildPath(agentPath)), Cmd.class);
+        Cmd killCmd = getLatestCmdInMailbox(agentPath);
         Assert.assertNotNull(killCmd);
         Assert.assertEquals(CmdType.KILL, killCmd.getType());
         Assert.assertNotEquals(cmd.getId(), killCmd.getId());
@@ -199,7 +201,7 @@ public class CmdDispatchServiceTest extends TestBase {
         cmdDispatchService.dispatch(cmdService.create(cmdToDelSession));
 
         // then: cmd in agent not changed
-        Cmd notChangeCmd = Cmd.parse(zkClient.getData(ZKHelper.buildPath(agentPath)), Cmd.class);
+        Cmd notChangeCmd = getLatestCmdInMailbox(agentPath);
         Assert.assertNotNull(notChangeCmd);
         Assert.assertEquals(CmdType.RUN_SHELL, notChangeCmd.getType());
         Assert.assertEquals(cmd.getId(), notChangeCmd.getId());
@@ -210,6 +212,37 @@ public class CmdDispatchServiceTest extends TestBase {
         Assert.assertEquals(AgentStatus.IDLE, sessionShouldReleased.getStatus());
     }
 
+    @Test
+    public void should_create_multiple_sessions_on_agent_with_multiple_slots() throws Throwable {
+        // given: agent has two slots, and one is used by session
+        target.setConcurrentProc(2);
+        cmdService.updateAgentStatus(target);
+        Assert.assertEquals(AgentStatus.IDLE, agentService.find(agentPath).getStatus());
+
+        // when: create session again
+        Cmd cmd = cmdService.create(new CmdInfo(agentPath, CmdType.CREATE_SESSION, null));
+        cmd = cmdDispatchService.dispatch(cmd);
+
+        // then: agent is busy since all slots are used
+        Agent agent = agentService.find(agentPath);
+        Assert.assertEquals(AgentStatus.BUSY, agent.getStatus());
+        Assert.assertEquals(2, agent.numOfSessions());
+        Assert.assertEquals(agentPath, agentService.find(target.getSessionId()).getPath());
+        Assert.assertEquals(agentPath, agentService.find(cmd.getSessionId()).getPath());
+
+        // when: delete first session
+        CmdInfo cmdToDelSession = new CmdInfo(agentPath, CmdType.DELETE_SESSION, null);
+        cmdToDelSession.setSessionId(target.getSessionId());
+        cmdDispatchService.dispatch(cmdService.create(cmdToDelSession));
+
+        // then: slot released and second session is kept
+        agent = agentService.find(agentPath);
+        Assert.assertEquals(AgentStatus.IDLE, agent.getStatus());
+        Assert.assertEquals(1, agent.numOfSessions());
+        Assert.assertEquals(cmd.getSessionId(), agent.getSessionId());
+        Assert.assertNull(agentService.find(target.getSessionId()));
+    }
+
     @After
     public void cleanMockAgent() throws Throwable {
         String path = ZKHelper.buildPath(agentPath);
@@ -34,11 +34,12 @@ import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
-import com.flow.platform.domain.Jsonable;
 import com.flow.platform.domain.Zone;
 import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.util.DateUtil;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
@@ -46,12 +47,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.UUID;
 import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * @author gy@fir.im
@@ -79,6 +83,9 @@ public class CmdServiceTest extends TestBase {
     @Autowired
     private Path cmdLogDir;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     private final static String MOCK_PROVIDER_NAME = "mock-cloud-provider";
 
     private Process mockProcess = new Process() {
@@ -240,6 +247,83 @@ public class CmdServiceTest extends TestBase {
         Assert.assertEquals(2, loadedResults.get(0).getExceptions().size());
     }
 
+    @Test
+    public void should_report_cmd_status_in_batch() throws Throwable {
+        // given:
+        String zoneName = defaultZones.get(0).getName();
+        AgentPath agentPath = new AgentPath(zoneName, "test-agent-for-batch-report-cmd");
+        agentService.report(agentPath, AgentStatus.IDLE);
+        Thread.sleep(1000);
+
+        Cmd first = cmdService.create(new CmdInfo(agentPath, CmdType.RUN_SHELL, null));
+        Cmd second = cmdService.create(new CmdInfo(agentPath, CmdType.RUN_SHELL, null));
+
+        CmdResult firstResult = new CmdResult();
+        firstResult.setProcessId(100);
+
+        CmdResult finalResult = new CmdResult();
+        finalResult.setProcessId(100);
+        finalResult.setExitValue(0);
+
+        // when: report multiple status for first cmd, the running status after logged is invalid
+        List<CmdStatusItem> items = Lists.newArrayList(
+            new CmdStatusItem(first.getId(), CmdStatus.RUNNING, firstResult, true, false),
+            new CmdStatusItem(second.getId(), CmdStatus.RUNNING, null, true, false),
+            new CmdStatusItem(first.getId(), CmdStatus.LOGGED, finalResult, true, false),
+            new CmdStatusItem(first.getId(), CmdStatus.RUNNING, firstResult, true, false),
+            new CmdStatusItem("not-existed-cmd-id", CmdStatus.RUNNING, null, true, false)
+        );
+        cmdService.updateStatus(items);
+
+        // then: first cmd should be final status with final result
+        Assert.assertEquals(CmdStatus.LOGGED, cmdService.find(first.getId()).getStatus());
+        Assert.assertEquals((Integer) 0, cmdResultDao.get(first.getId()).getExitValue());
+        Assert.assertEquals(CmdStatus.RUNNING, cmdService.find(second.getId()).getStatus());
+
+        // then: agent should be busy since second cmd is running
+        Assert.assertEquals(AgentStatus.BUSY, agentService.find(agentPath).getStatus());
+
+        // when: finish second cmd
+        cmdService.updateStatus(Lists.newArrayList(
+            new CmdStatusItem(second.getId(), CmdStatus.EXCEPTION, null, true, false)));
+
+        // then:
+        Assert.assertEquals(CmdStatus.EXCEPTION, cmdService.find(second.getId()).getStatus());
+        Assert.assertEquals(AgentStatus.IDLE, agentService.find(agentPath).getStatus());
+    }
+
+    @Test
+    public void should_not_update_index_and_agent_status_if_batch_rolled_back() throws Throwable {
+        // given: running cmd on agent
+        String zoneName = defaultZones.get(0).getName();
+        AgentPath agentPath = new AgentPath(zoneName, "test-agent-for-batch-rollback");
+        agentService.report(agentPath, AgentStatus.IDLE);
+        Thread.sleep(1000);
+
+        Cmd cmd = cmdService.create(new CmdInfo(agentPath, CmdType.RUN_SHELL, null));
+        cmdService.updateStatus(Lists.newArrayList(
+            new CmdStatusItem(cmd.getId(), CmdStatus.RUNNING, null, true, false)));
+        Assert.assertEquals(AgentStatus.BUSY, agentService.find(agentPath).getStatus());
+
+        // when: finish cmd in batch but transaction rolled back
+        new TransactionTemplate(transactionManager).execute(status -> {
+            cmdService.updateStatus(Lists.newArrayList(
+                new CmdStatusItem(cmd.getId(), CmdStatus.LOGGED, null, true, false)));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        // then: agent still busy since cmd is running
+        Assert.assertEquals(CmdStatus.RUNNING, cmdService.find(cmd.getId()).getStatus());
+        Assert.assertEquals(AgentStatus.BUSY, agentService.find(agentPath).getStatus());
+
+        // when: agent status updated by running cmd index
+        cmdService.updateAgentStatus(agentService.find(agentPath));
+
+        // then:
+        Assert.assertEquals(AgentStatus.BUSY, agentService.find(agentPath).getStatus());
+    }
+
     @Test
     public void should_cmd_timeout() throws Throwable {
         // given:
@@ -327,6 +411,33 @@ public class CmdServiceTest extends TestBase {
         }
     }
 
+    @Test
+    public void should_not_mark_agent_busy_by_finished_cmd_when_reconcile_running_cmd_index() throws Throwable {
+        // given: agent with finished cmd in db
+        String zoneName = defaultZones.get(0).getName();
+        AgentPath agentPath = createMockAgent(zoneName, "test-agent-reconcile");
+        Thread.sleep(ZK_NODE_WAIT_TIME);
+
+        for (CmdStatus status : Cmd.FINISH_STATUS) {
+            saveCmd(agentPath, status);
+        }
+
+        // when:
+        cmdService.runningCmdIndexTask();
+        cmdService.updateAgentStatus(agentService.find(agentPath));
+
+        // then:
+        Assert.assertEquals(AgentStatus.IDLE, agentService.find(agentPath).getStatus());
+
+        // when: working cmd in db
+        saveCmd(agentPath, CmdStatus.RUNNING);
+        cmdService.runningCmdIndexTask();
+        cmdService.updateAgentStatus(agentService.find(agentPath));
+
+        // then:
+        Assert.assertEquals(AgentStatus.BUSY, agentService.find(agentPath).getStatus());
+    }
+
     @Test
     public void should_send_cmd_to_agent() throws InterruptedException {
         // given:
@@ -353,9 +464,8 @@ public class CmdServiceTest extends TestBase {
         // then: check agent status
         Assert.assertEquals(AgentStatus.BUSY, agentService.find(cmd.getAgentPath()).getStatus());
 
-        // then: check zk node received the same cmd
-        byte[] raw = zkClient.getData(agentPath);
-        Cmd loaded = Jsonable.parse(raw, Cmd.class);
+        // then: check zk mailbox received the same cmd
+        Cmd loaded = getLatestCmdInMailbox(new AgentPath(zoneName, agentName));
         Assert.assertEquals(cmdInfo, loaded);
         Thread.sleep(1000); // mock network delay
 
@@ -482,9 +592,41 @@ public class CmdServiceTest extends TestBase {
         Assert.assertTrue(Files.exists(Paths.get(cmdLogDir.toString(), originalFilename)));
     }
 
+    @Test
+    public void should_append_cmd_log_in_chunks() throws Throwable {
+        // given:
+        String zoneName = defaultZones.get(0).getName();
+        String agentName = "test-agent-005";
+
+        CmdInfo baseInfo = new CmdInfo(zoneName, agentName, CmdType.RUN_SHELL, "/test.sh");
+        Cmd created = cmdService.create(baseInfo);
+
+        byte[] first = "first".getBytes();
+        byte[] second = "second".getBytes();
+
+        // when: append chunks and resend first chunk
+        long offset = cmdService.appendLog(created.getId(), 0, new ByteArrayInputStream(first));
+        Assert.assertEquals(first.length, offset);
+        Assert.assertEquals(offset, cmdService.appendLog(created.getId(), 0, new ByteArrayInputStream(first)));
+
+        offset = cmdService.appendLog(created.getId(), offset, new ByteArrayInputStream(second));
+        cmdService.completeLog(created.getId(), offset);
+
+        // then:
+        Path logPath = Paths.get(cmdLogDir.toString(), created.getId() + ".out.zip");
+        Assert.assertEquals("firstsecond", new String(Files.readAllBytes(logPath)));
+    }
+
     private Cmd send(CmdInfo info) {
         Cmd cmd = cmdService.create(info);
         cmdDispatchService.dispatch(cmd);
         return cmdService.find(cmd.getId());
     }
+
+    private void saveCmd(AgentPath agentPath, CmdStatus status) {
+        Cmd cmd = new Cmd(agentPath.getZone(), agentPath.getName(), CmdType.RUN_SHELL, "echo hello");
+        cmd.setId(UUID.randomUUID().toString());
+        cmd.setStatus(status);
+        cmdDao.save(cmd);
+    }
 }
@@ -18,6 +18,7 @@ package com.flow.platform.core.controller;
 
 import com.flow.platform.core.exception.FlowException;
 import com.flow.platform.core.response.ResponseError;
+import com.flow.platform.queue.QueueFullException;
 import javax.servlet.http.HttpServletRequest;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.http.HttpStatus;
@@ -40,6 +41,14 @@ public class GlobalExceptionHandler {
         return new ResponseError(e.getMessage());
     }
 
+    @ExceptionHandler(QueueFullException.class)
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+    @ResponseBody
+    public ResponseError handleQueueFullException(HttpServletRequest request, QueueFullException e) {
+        log.warn(e.getMessage());
+        return new ResponseError(e.getMessage());
+    }
+
     @ExceptionHandler(Throwable.class)
     @ResponseStatus(value = HttpStatus.INTERNAL_SERVER_ERROR)
     @ResponseBody
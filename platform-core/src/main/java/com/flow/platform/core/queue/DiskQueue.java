@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.core.queue;
+
+import com.flow.platform.core.context.ContextEvent;
+import com.flow.platform.queue.JournalQueue;
+import com.flow.platform.queue.OverflowPolicy;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+/**
+ * Persistent queue with journal on local disk, pending messages will be recovered on restart
+ *
+ * @author yang
+ */
+public class DiskQueue extends JournalQueue<PriorityMessage> implements ContextEvent {
+
+    public DiskQueue(Executor executor, int maxSize, String name, int concurrency, Path dir) {
+        super(executor, maxSize, name, null, concurrency, PriorityMessage::getKey, dir, new PriorityMessageSerializer());
+    }
+
+    public DiskQueue(Executor executor, int maxSize, String name, int concurrency, Path dir, OverflowPolicy policy) {
+        this(executor, maxSize, name, concurrency, dir);
+        setOverflowPolicy(policy);
+    }
+}
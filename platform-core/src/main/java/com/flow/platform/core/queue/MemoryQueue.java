@@ -18,6 +18,7 @@ package com.flow.platform.core.queue;
 
 import com.flow.platform.core.context.ContextEvent;
 import com.flow.platform.queue.InMemoryQueue;
+import com.flow.platform.queue.OverflowPolicy;
 import java.util.concurrent.Executor;
 
 /**
@@ -28,4 +29,19 @@ public class MemoryQueue extends InMemoryQueue<PriorityMessage> implements Conte
     public MemoryQueue(Executor executor, int maxSize, String name) {
         super(executor, maxSize, name);
     }
+
+    /**
+     * Create memory queue with num of consumers, message ordering is kept by PriorityMessage key
+     */
+    public MemoryQueue(Executor executor, int maxSize, String name, int concurrency) {
+        super(executor, maxSize, name, null, concurrency, PriorityMessage::getKey);
+    }
+
+    /**
+     * Create bounded memory queue which apply overflow policy when queue reached max size
+     */
+    public MemoryQueue(Executor executor, int maxSize, String name, int concurrency, OverflowPolicy policy) {
+        this(executor, maxSize, name, concurrency);
+        setOverflowPolicy(policy);
+    }
 }
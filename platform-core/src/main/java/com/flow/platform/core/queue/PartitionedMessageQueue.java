@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.core.queue;
+
+import com.flow.platform.core.context.ContextEvent;
+import com.flow.platform.queue.PartitionedQueue;
+import com.flow.platform.queue.PlatformQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Message queue partitioned by PriorityMessage key
+ *
+ * @author yang
+ */
+public class PartitionedMessageQueue extends PartitionedQueue<PriorityMessage> implements ContextEvent {
+
+    public PartitionedMessageQueue(Executor executor,
+                                   int maxSize,
+                                   String name,
+                                   int concurrency,
+                                   Function<String, PlatformQueue<PriorityMessage>> factory) {
+        super(executor, maxSize, name, concurrency, PriorityMessage::getKey, factory);
+    }
+}
@@ -25,6 +25,16 @@ import org.springframework.amqp.core.MessageProperties;
  */
 public class PriorityMessage extends Message implements PriorityQueueItem {
 
+    /**
+     * Message header for queue partition key
+     */
+    public final static String KEY_HEADER = "x-flow-queue-key";
+
+    /**
+     * Message header for num of retry
+     */
+    public final static String RETRY_HEADER = "x-flow-queue-retry";
+
     private Long priority;
 
     private Long timestamp;
@@ -34,9 +44,21 @@ public class PriorityMessage extends Message implements PriorityQueueItem {
         return new PriorityMessage(content, properties, priority);
     }
 
+    /**
+     * Create message with key, the messages with same key will be processed in order
+     */
+    public static PriorityMessage create(byte[] content, long priority, String key) {
+        PriorityMessage message = create(content, priority);
+        message.getMessageProperties().setHeader(KEY_HEADER, key);
+        return message;
+    }
+
     public PriorityMessage(Message message) {
         super(message.getBody(), message.getMessageProperties());
-        this.timestamp = System.nanoTime();
+        this.timestamp = System.currentTimeMillis();
+
+        Integer priority = message.getMessageProperties().getPriority();
+        this.priority = priority == null ? 0L : priority.longValue();
     }
 
     public PriorityMessage(byte[] body, MessageProperties messageProperties, long priority) {
@@ -54,6 +76,20 @@ public class PriorityMessage extends Message implements PriorityQueueItem {
         this.priority = priority;
     }
 
+    public String getKey() {
+        Object key = getMessageProperties().getHeaders().get(KEY_HEADER);
+        return key == null ? null : key.toString();
+    }
+
+    public int getRetry() {
+        Object retry = getMessageProperties().getHeaders().get(RETRY_HEADER);
+        return retry == null ? 0 : Integer.parseInt(retry.toString());
+    }
+
+    public void setRetry(int retry) {
+        getMessageProperties().setHeader(RETRY_HEADER, retry);
+    }
+
     @Override
     public Long getTimestamp() {
         return this.timestamp;
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.core.queue;
+
+import com.flow.platform.queue.QueueItemSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.springframework.amqp.core.MessageProperties;
+
+/**
+ * Serialize priority, timestamp, headers and body of PriorityMessage
+ *
+ * The string, integer, long and boolean header values are kept in type, others are kept as string
+ *
+ * @author yang
+ */
+public class PriorityMessageSerializer implements QueueItemSerializer<PriorityMessage> {
+
+    private final static byte TYPE_STRING = 0;
+
+    private final static byte TYPE_INT = 1;
+
+    private final static byte TYPE_LONG = 2;
+
+    private final static byte TYPE_BOOLEAN = 3;
+
+    @Override
+    public byte[] serialize(PriorityMessage item) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(item.getBody().length + 64);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(item.getPriority());
+            out.writeLong(item.getTimestamp());
+
+            Map<String, Object> headers = new HashMap<>(item.getMessageProperties().getHeaders());
+            headers.values().removeIf(Objects::isNull);
+
+            out.writeInt(headers.size());
+            for (Map.Entry<String, Object> header : headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                writeValue(out, header.getValue());
+            }
+
+            out.writeInt(item.getBody().length);
+            out.write(item.getBody());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public PriorityMessage deserialize(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            long priority = in.readLong();
+            long timestamp = in.readLong();
+
+            MessageProperties properties = new MessageProperties();
+            int numOfHeaders = in.readInt();
+            for (int i = 0; i < numOfHeaders; i++) {
+                properties.setHeader(in.readUTF(), readValue(in));
+            }
+
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+
+            PriorityMessage message = new PriorityMessage(body, properties, priority);
+            message.setTimestamp(timestamp);
+            return message;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+            return;
+        }
+
+        if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+            return;
+        }
+
+        if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+            return;
+        }
+
+        out.writeByte(TYPE_STRING);
+        out.writeUTF(value.toString());
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_STRING:
+                return in.readUTF();
+            case TYPE_INT:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            default:
+                throw new IOException("Unknown header value type: " + type);
+        }
+    }
+}
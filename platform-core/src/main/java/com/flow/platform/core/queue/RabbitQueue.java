@@ -18,14 +18,18 @@ package com.flow.platform.core.queue;
 
 import com.flow.platform.core.context.ContextEvent;
 import com.flow.platform.queue.PlatformQueue;
+import com.flow.platform.queue.QueueFullException;
 import com.flow.platform.queue.QueueListener;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
@@ -33,9 +37,21 @@ import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.support.CorrelationData;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 /**
+ * Queue on RabbitMQ, the message published with publisher confirms
+ *
+ * The queue is declared with 'reject-publish' overflow, so the message is nacked by broker when queue is full.
+ * The single enqueue does not wait for confirm, the nacked message is counted as overflow and not retried.
+ * The batch enqueue waits for confirms of all messages and throws QueueFullException if any nacked
+ *
+ * The message priority is applied to AMQP priority in range of 0 to max priority of queue,
+ * the message order is not guaranteed if concurrency more than 1
+ *
  * @author yang
  */
 @Log4j2
@@ -43,21 +59,50 @@ public class RabbitQueue extends PlatformQueue<PriorityMessage> implements Conte
 
     private final static int DEFAULT_CONCURRENCY = 1;
 
+    private final static int DEFAULT_PREFETCH = 1;
+
+    private final static long CONFIRM_TIMEOUT = 10000; // in millis
+
+    private final static MessagePropertiesConverter PROPERTIES_CONVERTER = new DefaultMessagePropertiesConverter();
+
     private final String host;
 
     private final String name;
 
     private final int maxPriority;
 
+    /**
+     * Num of unacknowledged messages can be delivered to each consumer
+     */
+    private final int prefetch;
+
+    private RabbitAdmin admin;
+
     private RabbitTemplate template;
 
     private SimpleMessageListenerContainer container;
 
     public RabbitQueue(ThreadPoolTaskExecutor executor, String host, int maxSize, int maxPriority, String queueName) {
-        super(executor, maxSize, queueName);
+        this(executor, host, maxSize, maxPriority, queueName, DEFAULT_CONCURRENCY, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * @param maxPriority max AMQP priority of queue, message with higher priority will be applied to max priority
+     * @param concurrency num of consumers
+     * @param prefetch num of unacknowledged messages for each consumer, high prefetch makes priority less effective
+     */
+    public RabbitQueue(ThreadPoolTaskExecutor executor,
+                       String host,
+                       int maxSize,
+                       int maxPriority,
+                       String queueName,
+                       int concurrency,
+                       int prefetch) {
+        super(executor, maxSize, queueName, concurrency);
         this.host = host;
         this.name = queueName;
         this.maxPriority = maxPriority;
+        this.prefetch = prefetch;
 
         try {
             initRabbitMQ();
@@ -94,7 +139,38 @@ public class RabbitQueue extends PlatformQueue<PriorityMessage> implements Conte
 
     @Override
     public void enqueue(PriorityMessage item) {
-        template.send("", name, item);
+        applyPriority(item);
+        template.send("", name, item, new CorrelationData(name));
+    }
+
+    /**
+     * Publish messages on the same channel and wait for publisher confirms once for all messages
+     *
+     * @throws QueueFullException if any message not confirmed by broker
+     */
+    @Override
+    public void enqueue(Collection<PriorityMessage> items) {
+        Boolean confirmed = template.execute(channel -> {
+            for (PriorityMessage item : items) {
+                applyPriority(item);
+                channel.basicPublish("", name, false,
+                    PROPERTIES_CONVERTER.fromMessageProperties(item.getMessageProperties(), "UTF-8"),
+                    item.getBody());
+            }
+
+            try {
+                channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT);
+                return true;
+            } catch (Throwable e) {
+                log.warn("Messages not confirmed by RabbitMQ for queue '{}': {}", name, e.getMessage());
+                return false;
+            }
+        });
+
+        if (!Boolean.TRUE.equals(confirmed)) {
+            numOfOverflow.addAndGet(items.size());
+            throw new QueueFullException(name, maxSize);
+        }
     }
 
     @Override
@@ -112,33 +188,67 @@ public class RabbitQueue extends PlatformQueue<PriorityMessage> implements Conte
         return container.isRunning();
     }
 
+    /**
+     * Get num of ready messages from broker
+     */
     @Override
     public int size() {
-        return 0;
+        try {
+            Properties properties = admin.getQueueProperties(name);
+            if (properties == null) {
+                return 0;
+            }
+
+            Object count = properties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT);
+            return count == null ? 0 : Integer.parseInt(count.toString());
+        } catch (Throwable e) {
+            log.warn("Unable to get size of RabbitMQ queue '{}': {}", name, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Apply message priority to AMQP priority property in range of queue
+     */
+    private void applyPriority(PriorityMessage item) {
+        MessageProperties properties = item.getMessageProperties();
+        Long priority = item.getPriority();
+        if (priority != null) {
+            properties.setPriority((int) Math.max(0, Math.min(priority, maxPriority)));
+        }
     }
 
     private void initRabbitMQ() throws URISyntaxException {
         CachingConnectionFactory connectionFactory = new CachingConnectionFactory(new URI(host));
+        connectionFactory.setPublisherConfirms(true);
 
         Map<String, Object> cmdQueueArgs = new HashMap<>();
         cmdQueueArgs.put("x-max-length", maxSize);
         cmdQueueArgs.put("x-max-priority", maxPriority);
+        cmdQueueArgs.put("x-overflow", "reject-publish");
         Queue cmdQueue = new Queue(name, true, false, false, cmdQueueArgs);
 
-        RabbitAdmin rabbitAdmin = new RabbitAdmin(connectionFactory);
-        rabbitAdmin.declareQueue(cmdQueue);
+        admin = new RabbitAdmin(connectionFactory);
+        admin.declareQueue(cmdQueue);
 
         // setup listener container factory
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
-        factory.setConcurrentConsumers(DEFAULT_CONCURRENCY);
-        factory.setMaxConcurrentConsumers(DEFAULT_CONCURRENCY);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(concurrency);
+        factory.setPrefetchCount(prefetch);
         factory.setTaskExecutor(executor);
         factory.setAutoStartup(false);
 
         // setup rabbit template
         template = new RabbitTemplate(connectionFactory);
         template.setQueue(name);
+        template.setConfirmCallback((correlationData, ack, cause) -> {
+            if (!ack) {
+                numOfOverflow.incrementAndGet();
+                log.warn("Message not confirmed by RabbitMQ for queue '{}': {}", name, cause);
+            }
+        });
 
         // setup container
         SimpleRabbitListenerEndpoint simpleEndpoint = new SimpleRabbitListenerEndpoint();
@@ -146,7 +256,8 @@ public class RabbitQueue extends PlatformQueue<PriorityMessage> implements Conte
 
         container = factory.createListenerContainer(simpleEndpoint);
         container.setQueueNames(name);
-        log.trace("RabbitMQ initialized on '{}' with queue name '{}'", host, name);
+        log.trace("RabbitMQ initialized on '{}' with queue name '{}', concurrency {} and prefetch {}",
+            host, name, concurrency, prefetch);
     }
 
     private class RabbitMessageListener implements MessageListener {
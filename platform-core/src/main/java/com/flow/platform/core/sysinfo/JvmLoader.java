@@ -18,8 +18,11 @@ package com.flow.platform.core.sysinfo;
 
 import com.flow.platform.core.sysinfo.SystemInfo.Status;
 import com.flow.platform.core.sysinfo.SystemInfo.Type;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Sets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -34,7 +37,9 @@ public class JvmLoader implements SystemInfoLoader {
 
         GENERAL,
 
-        MEMORY
+        MEMORY,
+
+        CACHE
     }
 
     private final static Map<JvmGroup, Set<String>> GROUP_KEYS = new HashMap<>();
@@ -58,6 +63,16 @@ public class JvmLoader implements SystemInfoLoader {
         ));
     }
 
+    private final Map<String, Cache<?, ?>> caches = new LinkedHashMap<>();
+
+    /**
+     * Add in memory cache which hit and miss stats are loaded in cache group
+     */
+    public JvmLoader withCache(String name, Cache<?, ?> cache) {
+        caches.put(name, cache);
+        return this;
+    }
+
     public SystemInfo load() {
         Properties properties = System.getProperties();
         GroupSystemInfo jvm = new GroupSystemInfo(Type.JVM);
@@ -76,6 +91,19 @@ public class JvmLoader implements SystemInfoLoader {
         memory.put("java.vm.memory.total", Long.toString(runtime.totalMemory()));
         jvm.put(JvmGroup.MEMORY, memory);
 
+        // in memory cache stats
+        HashMap<String, String> cache = new HashMap<>(caches.size() * 5);
+        for (Map.Entry<String, Cache<?, ?>> entry : caches.entrySet()) {
+            String prefix = "cache." + entry.getKey();
+            CacheStats stats = entry.getValue().stats();
+            cache.put(prefix + ".size", Long.toString(entry.getValue().size()));
+            cache.put(prefix + ".hit", Long.toString(stats.hitCount()));
+            cache.put(prefix + ".miss", Long.toString(stats.missCount()));
+            cache.put(prefix + ".hit_rate", String.format("%.2f", stats.hitRate()));
+            cache.put(prefix + ".eviction", Long.toString(stats.evictionCount()));
+        }
+        jvm.put(JvmGroup.CACHE, cache);
+
         return jvm;
     }
 
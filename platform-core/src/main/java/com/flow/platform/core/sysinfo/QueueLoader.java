@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.core.sysinfo;
+
+import com.flow.platform.core.sysinfo.SystemInfo.Status;
+import com.flow.platform.core.sysinfo.SystemInfo.Type;
+import com.flow.platform.core.task.KeyedTaskExecutor;
+import com.flow.platform.queue.PlatformQueue;
+import com.google.common.collect.Lists;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load depth and high water mark of platform queues and keyed task executors, grouped by name
+ *
+ * @author yang
+ */
+public class QueueLoader implements SystemInfoLoader {
+
+    private final List<PlatformQueue<?>> queues;
+
+    private final List<KeyedTaskExecutor> executors = new LinkedList<>();
+
+    public QueueLoader(PlatformQueue<?>... queues) {
+        this.queues = Lists.newArrayList(queues);
+    }
+
+    public QueueLoader withExecutors(KeyedTaskExecutor... executors) {
+        this.executors.addAll(Arrays.asList(executors));
+        return this;
+    }
+
+    @Override
+    public SystemInfo load() {
+        GroupSystemInfo info = new GroupSystemInfo(Status.RUNNING, Type.QUEUE);
+        info.setName("Platform Queue");
+
+        for (PlatformQueue<?> queue : queues) {
+            Map<String, String> gauges = new HashMap<>(7);
+            gauges.put("queue.size", Integer.toString(queue.size()));
+            gauges.put("queue.size.max", Integer.toString(queue.getMaxSize()));
+            gauges.put("queue.size.high_water_mark", Integer.toString(queue.getHighWaterMark()));
+            gauges.put("queue.overflow", Long.toString(queue.getNumOfOverflow()));
+            gauges.put("queue.delayed", Integer.toString(queue.getNumOfDelayed()));
+            gauges.put("queue.concurrency", Integer.toString(queue.getConcurrency()));
+            gauges.put("queue.running", Boolean.toString(queue.isRunning()));
+            info.getInfo().put(queue.getName(), gauges);
+        }
+
+        for (KeyedTaskExecutor executor : executors) {
+            Map<String, String> gauges = new HashMap<>(8);
+            gauges.put("queue.size", Integer.toString(executor.size()));
+            gauges.put("queue.size.max", Integer.toString(executor.getMaxQueueSize()));
+            gauges.put("queue.size.high_water_mark", Integer.toString(executor.getHighWaterMark()));
+            gauges.put("queue.keys", Integer.toString(executor.getNumOfKeys()));
+            gauges.put("queue.concurrency", Integer.toString(executor.getConcurrency()));
+            gauges.put("queue.active", Integer.toString(executor.getNumOfRunning()));
+            gauges.put("queue.deduplicated", Long.toString(executor.getNumOfDeduplicated()));
+            gauges.put("queue.rejected", Long.toString(executor.getNumOfRejected()));
+            info.getInfo().put(executor.getName(), gauges);
+        }
+
+        return info;
+    }
+}
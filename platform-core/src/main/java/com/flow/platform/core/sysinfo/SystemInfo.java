@@ -56,6 +56,8 @@ public class SystemInfo extends Jsonable {
         ZK,
 
         MQ,
+
+        QUEUE
     }
 
     @Expose
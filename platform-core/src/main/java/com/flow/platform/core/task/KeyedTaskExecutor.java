@@ -0,0 +1,352 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flow.platform.core.task;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Shared bounded executor which runs tasks of the same key one by one
+ *
+ * - num of threads is the global concurrency, tasks of different keys run in parallel up to it
+ * - num of unfinished tasks is limited by max queue size, the task is rejected when queue is full
+ * - task with the same id of unfinished task is deduplicated, the future of unfinished task is returned
+ *
+ * @author yang
+ */
+@Log4j2
+public class KeyedTaskExecutor {
+
+    private final static long KEEP_ALIVE = 60; // in seconds
+
+    private class Entry<T> {
+
+        private final String key;
+
+        private final String id;
+
+        private final Callable<T> task;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private boolean dispatched;
+
+        private volatile Thread thread;
+
+        Entry(String key, String id, Callable<T> task) {
+            this.key = key;
+            this.id = id;
+            this.task = task;
+        }
+
+        private void run() {
+            T result = null;
+            Throwable error = null;
+
+            thread = Thread.currentThread();
+
+            try {
+                // skip task which is cancelled before started
+                if (!future.isCancelled()) {
+                    result = task.call();
+                }
+            } catch (Throwable e) {
+                error = e;
+            }
+
+            // no more interrupt from cancel after thread reset, then clear interrupt flag since pool thread is reused
+            synchronized (KeyedTaskExecutor.this) {
+                thread = null;
+            }
+            Thread.interrupted();
+
+            Entry<?> next = onFinished(this);
+
+            // complete future before next task of the same key dispatched, so callbacks run in order of key
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+
+            if (next != null) {
+                dispatchNext(next);
+            }
+        }
+    }
+
+    private final String name;
+
+    private final ThreadPoolExecutor executor;
+
+    // tasks of key in submitted order, the first one is running
+    private final Map<String, Deque<Entry<?>>> queues = new HashMap<>();
+
+    // unfinished tasks by id
+    private final Map<String, Entry<?>> entries = new HashMap<>();
+
+    private int maxQueueSize;
+
+    private int size = 0;
+
+    private int highWaterMark = 0;
+
+    private final AtomicLong numOfDeduplicated = new AtomicLong(0);
+
+    private final AtomicLong numOfRejected = new AtomicLong(0);
+
+    private final AtomicLong numOfCompleted = new AtomicLong(0);
+
+    /**
+     * @param name executor name which is prefix of thread name
+     * @param concurrency max num of running tasks
+     * @param maxQueueSize max num of unfinished tasks
+     */
+    public KeyedTaskExecutor(String name, int concurrency, int maxQueueSize) {
+        this.name = name;
+        this.maxQueueSize = maxQueueSize;
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, KEEP_ALIVE, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Submit task, it runs after unfinished tasks of the same key
+     *
+     * @param key tasks of the same key run one by one
+     * @param id task id for deduplication, can be null if not deduplicate
+     * @param task the task
+     * @return future of task result, the future of unfinished task with same id if deduplicated
+     * @throws RejectedExecutionException if queue is full or executor is shutdown
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> CompletableFuture<T> submit(String key, String id, Callable<T> task) {
+        if (id != null) {
+            Entry<?> unfinished = entries.get(id);
+            if (unfinished != null) {
+                numOfDeduplicated.incrementAndGet();
+                return (CompletableFuture<T>) unfinished.future;
+            }
+        }
+
+        if (size >= maxQueueSize || executor.isShutdown()) {
+            numOfRejected.incrementAndGet();
+            throw new RejectedExecutionException(String.format("Executor %s is full or shutdown", name));
+        }
+
+        Entry<T> entry = new Entry<>(key, id, task);
+        if (id != null) {
+            entries.put(id, entry);
+        }
+
+        Deque<Entry<?>> queue = queues.computeIfAbsent(key, k -> new ArrayDeque<>());
+        queue.add(entry);
+
+        size++;
+        highWaterMark = Math.max(highWaterMark, size);
+
+        if (queue.size() == 1) {
+            dispatch(entry);
+        }
+
+        return entry.future;
+    }
+
+    /**
+     * Cancel all unfinished tasks of key, the running task is interrupted and the next task of key
+     * starts after it returned
+     *
+     * @return num of tasks been cancelled
+     */
+    public synchronized int cancel(String key) {
+        Deque<Entry<?>> queue = queues.get(key);
+        if (queue == null) {
+            return 0;
+        }
+
+        int numOfCancelled = 0;
+        Iterator<Entry<?>> iterator = queue.iterator();
+
+        while (iterator.hasNext()) {
+            Entry<?> entry = iterator.next();
+            if (entry.future.isDone()) {
+                continue;
+            }
+
+            if (entry.id != null) {
+                entries.remove(entry.id);
+            }
+
+            entry.future.cancel(false);
+            numOfCancelled++;
+
+            // keep running task in queue until it returned
+            if (entry.dispatched) {
+                Thread thread = entry.thread;
+                if (thread != null) {
+                    thread.interrupt();
+                }
+                continue;
+            }
+
+            iterator.remove();
+            size--;
+        }
+
+        if (queue.isEmpty()) {
+            queues.remove(key);
+        }
+
+        return numOfCancelled;
+    }
+
+    /**
+     * Set max num of running tasks and max num of unfinished tasks
+     */
+    public synchronized void resize(int concurrency, int maxQueueSize) {
+        if (concurrency > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(concurrency);
+            executor.setCorePoolSize(concurrency);
+        } else {
+            executor.setCorePoolSize(concurrency);
+            executor.setMaximumPoolSize(concurrency);
+        }
+
+        this.maxQueueSize = maxQueueSize;
+        log.trace("Executor {} resized to concurrency {} and queue size {}", name, concurrency, maxQueueSize);
+    }
+
+    /**
+     * Stop all running tasks and reject new tasks
+     */
+    public synchronized void shutdown() {
+        executor.shutdownNow();
+
+        for (Deque<Entry<?>> queue : queues.values()) {
+            for (Entry<?> entry : queue) {
+                entry.future.cancel(false);
+            }
+        }
+
+        queues.clear();
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Num of unfinished tasks
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public synchronized int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public synchronized int getNumOfKeys() {
+        return queues.size();
+    }
+
+    public int getConcurrency() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getNumOfRunning() {
+        return executor.getActiveCount();
+    }
+
+    public long getNumOfDeduplicated() {
+        return numOfDeduplicated.get();
+    }
+
+    public long getNumOfRejected() {
+        return numOfRejected.get();
+    }
+
+    public long getNumOfCompleted() {
+        return numOfCompleted.get();
+    }
+
+    private void dispatch(Entry<?> entry) {
+        entry.dispatched = true;
+        executor.execute(entry::run);
+    }
+
+    /**
+     * Remove finished task
+     *
+     * @return next task of the same key, or null if no more task of key
+     */
+    private synchronized Entry<?> onFinished(Entry<?> entry) {
+        numOfCompleted.incrementAndGet();
+
+        if (entry.id != null && entries.get(entry.id) == entry) {
+            entries.remove(entry.id);
+        }
+
+        Deque<Entry<?>> queue = queues.get(entry.key);
+        if (queue == null || queue.peekFirst() != entry) {
+            return null;
+        }
+
+        queue.pollFirst();
+        size--;
+
+        if (queue.isEmpty()) {
+            queues.remove(entry.key);
+            return null;
+        }
+
+        return queue.peekFirst();
+    }
+
+    /**
+     * Dispatch next task of the same key if it's not cancelled meanwhile
+     */
+    private synchronized void dispatchNext(Entry<?> next) {
+        Deque<Entry<?>> queue = queues.get(next.key);
+        if (queue == null || queue.peekFirst() != next || next.dispatched) {
+            return;
+        }
+
+        if (!executor.isShutdown()) {
+            dispatch(next);
+        }
+    }
+}
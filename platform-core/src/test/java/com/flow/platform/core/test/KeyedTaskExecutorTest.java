@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flow.platform.core.test;
+
+import com.flow.platform.core.task.KeyedTaskExecutor;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class KeyedTaskExecutorTest {
+
+    private KeyedTaskExecutor executor;
+
+    @Before
+    public void init() {
+        executor = new KeyedTaskExecutor("test-executor", 4, 3);
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void should_run_tasks_of_same_key_in_order() throws Throwable {
+        // given:
+        List<Integer> results = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        // when: submit three tasks for the same key
+        CompletableFuture<Integer> first = executor.submit("flow", null, () -> {
+            latch.await();
+            results.add(1);
+            return 1;
+        });
+        executor.submit("flow", null, () -> results.add(2));
+        CompletableFuture<Boolean> last = executor.submit("flow", null, () -> results.add(3));
+
+        // then: the next tasks wait for the first one
+        Assert.assertEquals(1, executor.getNumOfKeys());
+        Assert.assertEquals(3, executor.size());
+        Assert.assertTrue(results.isEmpty());
+
+        latch.countDown();
+        Assert.assertEquals(1, first.get(5, TimeUnit.SECONDS).intValue());
+        last.get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals("[1, 2, 3]", results.toString());
+        Assert.assertEquals(0, executor.size());
+        Assert.assertEquals(0, executor.getNumOfKeys());
+        Assert.assertEquals(3, executor.getHighWaterMark());
+    }
+
+    @Test
+    public void should_run_callback_of_task_before_next_task_of_same_key() throws Throwable {
+        // given:
+        List<String> results = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        // when: register callback on first task before it finished
+        CompletableFuture<Boolean> first = executor.submit("flow", null, () -> {
+            latch.await();
+            return results.add("task-1");
+        });
+        CompletableFuture<Void> callback = first.thenRun(() -> {
+            sleep(200);
+            results.add("callback-1");
+        });
+        CompletableFuture<Boolean> last = executor.submit("flow", null, () -> results.add("task-2"));
+
+        latch.countDown();
+        callback.get(5, TimeUnit.SECONDS);
+        last.get(5, TimeUnit.SECONDS);
+
+        // then:
+        Assert.assertEquals("[task-1, callback-1, task-2]", results.toString());
+    }
+
+    @Test
+    public void should_share_future_of_unfinished_task_with_same_id() throws Throwable {
+        // given:
+        CountDownLatch latch = new CountDownLatch(1);
+        CompletableFuture<String> first = executor.submit("flow", "flow@master", () -> {
+            latch.await();
+            return "yml";
+        });
+
+        // when:
+        CompletableFuture<String> second = executor.submit("flow", "flow@master", () -> "other");
+
+        // then:
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, executor.size());
+        Assert.assertEquals(1, executor.getNumOfDeduplicated());
+
+        latch.countDown();
+        Assert.assertEquals("yml", second.get(5, TimeUnit.SECONDS));
+
+        // then: new task with same id is submitted after the first finished
+        Assert.assertEquals("other", executor.submit("flow", "flow@master", () -> "other").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void should_reject_task_when_queue_is_full() throws Throwable {
+        // given: queue is full
+        CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < executor.getMaxQueueSize(); i++) {
+            executor.submit("flow-" + i, null, () -> {
+                latch.await();
+                return null;
+            });
+        }
+
+        // when:
+        try {
+            executor.submit("flow", null, () -> null);
+            Assert.fail("should throw RejectedExecutionException");
+        } catch (RejectedExecutionException ignore) {
+        }
+
+        // then:
+        Assert.assertEquals(1, executor.getNumOfRejected());
+        latch.countDown();
+    }
+
+    @Test
+    public void should_cancel_running_and_pending_tasks_of_key() throws Throwable {
+        // given:
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Object> running = executor.submit("flow", null, () -> {
+            started.countDown();
+            Thread.sleep(10000);
+            return null;
+        });
+        CompletableFuture<Object> pending = executor.submit("flow", null, () -> null);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // when:
+        int numOfCancelled = executor.cancel("flow");
+
+        // then: the running task is interrupted and the queue is released
+        Assert.assertEquals(2, numOfCancelled);
+        Assert.assertTrue(running.isCancelled());
+        Assert.assertTrue(pending.isCancelled());
+
+        Assert.assertEquals("next", executor.submit("flow", null, () -> "next").get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, executor.size());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignore) {
+        }
+    }
+}
@@ -21,8 +21,11 @@ import com.flow.platform.core.util.ThreadUtil;
 import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.queue.QueueListener;
 import com.flow.platform.util.ObjectWrapper;
+import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.junit.After;
@@ -50,11 +53,15 @@ public class PlatformQueueTest {
     @Autowired
     private PlatformQueue<PriorityMessage> rabbitQueue;
 
+    @Autowired
+    private PlatformQueue<PriorityMessage> concurrentRabbitQueue;
+
     @Before
     public void init() {
         inMemoryQueue.clean();
         inMemoryQueue.cleanListener();
         rabbitQueue.cleanListener();
+        concurrentRabbitQueue.cleanListener();
     }
 
     @Test
@@ -79,6 +86,92 @@ public class PlatformQueueTest {
         Assert.assertEquals("hello", new String(result.getInstance().getBody(), "UTF-8"));
     }
 
+    @Test
+    public void should_enqueue_in_batch_with_confirms_for_rabbit_queue() throws Throwable {
+        // given:
+        CountDownLatch latch = new CountDownLatch(3);
+        concurrentRabbitQueue.register(item -> latch.countDown());
+        concurrentRabbitQueue.start();
+
+        // when: publish in batch and wait for confirms
+        concurrentRabbitQueue.enqueue(Lists.newArrayList(
+            PriorityMessage.create("1".getBytes(), 1),
+            PriorityMessage.create("2".getBytes(), 1),
+            PriorityMessage.create("3".getBytes(), 1)));
+
+        // then:
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, concurrentRabbitQueue.getNumOfOverflow());
+    }
+
+    @Test
+    public void should_clamp_priority_to_max_priority_for_rabbit_queue() throws Throwable {
+        // given: queue with max priority 5
+        CountDownLatch latch = new CountDownLatch(1);
+        ObjectWrapper<PriorityMessage> result = new ObjectWrapper<>();
+        concurrentRabbitQueue.register(item -> {
+            result.setInstance(item);
+            latch.countDown();
+        });
+        concurrentRabbitQueue.start();
+
+        // when: enqueue with priority higher than max
+        concurrentRabbitQueue.enqueue(PriorityMessage.create("high".getBytes(), 100));
+
+        // then: priority is applied to max priority
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(5L, result.getInstance().getPriority().longValue());
+    }
+
+    @Test
+    public void should_consume_by_each_consumer_with_prefetch_for_rabbit_queue() throws Throwable {
+        // given: two consumers and prefetch 1, each consumer holds the message until both received
+        CountDownLatch received = new CountDownLatch(2);
+        Set<String> threads = new CopyOnWriteArraySet<>();
+
+        concurrentRabbitQueue.register(item -> {
+            threads.add(Thread.currentThread().getName());
+            received.countDown();
+
+            try {
+                received.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignore) {
+            }
+        });
+        concurrentRabbitQueue.start();
+
+        // when:
+        concurrentRabbitQueue.enqueue(PriorityMessage.create("1".getBytes(), 1));
+        concurrentRabbitQueue.enqueue(PriorityMessage.create("2".getBytes(), 1));
+
+        // then: the second message is not prefetched by busy consumer and delivered to the other one
+        Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, threads.size());
+    }
+
+    @Test
+    public void should_get_num_of_ready_messages_for_rabbit_queue() throws Throwable {
+        // given: queue is not started
+        concurrentRabbitQueue.pause();
+        int initSize = concurrentRabbitQueue.size();
+
+        // when:
+        for (int i = 0; i < 3; i++) {
+            concurrentRabbitQueue.enqueue(PriorityMessage.create("size".getBytes(), 1));
+        }
+
+        // then: size is from broker after messages confirmed
+        Assert.assertTrue(waitForSize(concurrentRabbitQueue, initSize + 3));
+
+        // when: consume all messages
+        concurrentRabbitQueue.register(item -> {
+        });
+        concurrentRabbitQueue.start();
+
+        // then:
+        Assert.assertTrue(waitForSize(concurrentRabbitQueue, 0));
+    }
+
     @Test
     public void should_enqueue_with_priority_in_memory_queue() throws Throwable {
         // given: queue listener
@@ -155,6 +248,17 @@ public class PlatformQueueTest {
     public void stop() {
         inMemoryQueue.stop();
         rabbitQueue.stop();
+        concurrentRabbitQueue.stop();
+    }
+
+    private static boolean waitForSize(PlatformQueue<PriorityMessage> queue, int size) {
+        for (int i = 0; i < 100; i++) {
+            if (queue.size() == size) {
+                return true;
+            }
+            ThreadUtil.sleep(100);
+        }
+        return false;
     }
 
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flow.platform.core.test;
+
+import com.flow.platform.core.queue.PriorityMessage;
+import com.flow.platform.core.queue.PriorityMessageSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class PriorityMessageSerializerTest {
+
+    private final PriorityMessageSerializer serializer = new PriorityMessageSerializer();
+
+    @Test
+    public void should_keep_headers_when_serialize_message() throws Throwable {
+        // given:
+        PriorityMessage message = PriorityMessage.create("hello".getBytes(), 5L, "key-1");
+        message.setRetry(3);
+        message.getMessageProperties().setHeader("x-long", 10L);
+        message.getMessageProperties().setHeader("x-boolean", true);
+
+        // when:
+        PriorityMessage loaded = serializer.deserialize(serializer.serialize(message));
+
+        // then:
+        Assert.assertEquals("hello", new String(loaded.getBody()));
+        Assert.assertEquals(5L, loaded.getPriority().longValue());
+        Assert.assertEquals(message.getTimestamp(), loaded.getTimestamp());
+        Assert.assertEquals("key-1", loaded.getKey());
+        Assert.assertEquals(3, loaded.getRetry());
+        Assert.assertEquals(10L, loaded.getMessageProperties().getHeaders().get("x-long"));
+        Assert.assertEquals(true, loaded.getMessageProperties().getHeaders().get("x-boolean"));
+    }
+}
@@ -33,6 +33,8 @@ public class TestConfig {
 
     private final ThreadPoolTaskExecutor executor = ThreadUtil.createTaskExecutor(2, 2, 2, "test-executor");
 
+    private final ThreadPoolTaskExecutor rabbitExecutor = ThreadUtil.createTaskExecutor(4, 4, 4, "test-rabbit");
+
     @Bean
     public ThreadPoolTaskExecutor executor() {
         return executor;
@@ -47,4 +49,9 @@ public class TestConfig {
     public PlatformQueue<PriorityMessage> rabbitQueue() {
         return new RabbitQueue(executor, "amqp://localhost:5672", 1, 1, "ut-queue");
     }
+
+    @Bean
+    public PlatformQueue<PriorityMessage> concurrentRabbitQueue() {
+        return new RabbitQueue(rabbitExecutor, "amqp://localhost:5672", 10, 5, "ut-concurrent-queue", 2, 1);
+    }
 }
@@ -18,6 +18,8 @@ package com.flow.platform.domain;
 
 import com.google.gson.annotations.Expose;
 import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -40,7 +42,7 @@ public class Agent extends Webhookable {
     private AgentPath path;
 
     /**
-     * Max concurrent proc number
+     * Max concurrent proc number, which is num of slots can be used by session or cmd without session
      */
     @Setter
     @Getter
@@ -48,7 +50,7 @@ public class Agent extends Webhookable {
     private Integer concurrentProc = 1;
 
     /**
-     * Agent busy or idle
+     * Agent busy if all slots are used, otherwise idle
      */
     @Setter
     @Getter
@@ -56,7 +58,7 @@ public class Agent extends Webhookable {
     private AgentStatus status = AgentStatus.OFFLINE;
 
     /**
-     * Reserved for session id
+     * Id of latest created session in sessions
      */
     @Setter
     @Getter
@@ -64,13 +66,21 @@ public class Agent extends Webhookable {
     private String sessionId;
 
     /**
-     * The date to start session
+     * The date to start latest created session
      */
     @Setter
     @Getter
     @Expose
     private ZonedDateTime sessionDate;
 
+    /**
+     * Sessions on agent, session id to the date to start session, each session uses one slot
+     */
+    @Setter
+    @Getter
+    @Expose
+    private Map<String, ZonedDateTime> sessions = new HashMap<>();
+
     /**
      * agent token
      */
@@ -115,6 +125,54 @@ public class Agent extends Webhookable {
         return getStatus() == AgentStatus.IDLE;
     }
 
+    public int numOfSlots() {
+        return concurrentProc == null || concurrentProc < 1 ? 1 : concurrentProc;
+    }
+
+    public boolean hasSession(String sessionId) {
+        return sessions.containsKey(sessionId);
+    }
+
+    public int numOfSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Add session and set it as latest session
+     */
+    public void addSession(String sessionId, ZonedDateTime sessionDate) {
+        sessions.put(sessionId, sessionDate);
+        this.sessionId = sessionId;
+        this.sessionDate = sessionDate;
+    }
+
+    /**
+     * Remove session, the latest session is reset from rest of sessions
+     */
+    public void removeSession(String sessionId) {
+        sessions.remove(sessionId);
+
+        if (sessionId == null || !sessionId.equals(this.sessionId)) {
+            return;
+        }
+
+        this.sessionId = null;
+        this.sessionDate = null;
+
+        for (Map.Entry<String, ZonedDateTime> entry : sessions.entrySet()) {
+            if (this.sessionDate == null || entry.getValue().isAfter(this.sessionDate)) {
+                this.sessionId = entry.getKey();
+                this.sessionDate = entry.getValue();
+            }
+        }
+    }
+
+    public void clearSessions() {
+        sessions.clear();
+        sessionId = null;
+        sessionDate = null;
+    }
+
     @Override
     public String toString() {
         return "Agent{" +
@@ -122,6 +180,7 @@ public class Agent extends Webhookable {
             ", name='" + path.getName() + '\'' +
             ", status=" + status + '\'' +
             ", sessionId=" + sessionId +
+            ", sessions=" + sessions.keySet() +
             '}';
     }
 }
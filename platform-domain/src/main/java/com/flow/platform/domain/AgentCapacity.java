@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain;
+
+import com.google.gson.annotations.Expose;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Capacity of agent which is advertised by agent through zookeeper
+ *
+ * @author yang
+ */
+@NoArgsConstructor
+@ToString
+public class AgentCapacity extends Jsonable {
+
+    /**
+     * Max num of cmd can be run concurrently
+     */
+    @Getter
+    @Setter
+    @Expose
+    private int capacity;
+
+    /**
+     * Num of running cmd
+     */
+    @Getter
+    @Setter
+    @Expose
+    private int running;
+
+    /**
+     * Host load average per cpu, negative if not available
+     */
+    @Getter
+    @Setter
+    @Expose
+    private double cpuLoad;
+
+    /**
+     * Free physical memory in bytes, negative if not available
+     */
+    @Getter
+    @Setter
+    @Expose
+    private long freeMemory;
+
+    /**
+     * Ratio of cpu time waiting for disk io, negative if not available
+     */
+    @Getter
+    @Setter
+    @Expose
+    private double ioWait;
+
+    public AgentCapacity(int capacity, int running) {
+        this.capacity = capacity;
+        this.running = running;
+    }
+
+    /**
+     * Num of cmd can be accepted
+     */
+    public int getFree() {
+        return Math.max(capacity - running, 0);
+    }
+}
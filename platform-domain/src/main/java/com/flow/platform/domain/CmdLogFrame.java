@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary frame for cmd real time log between agent and web socket server
+ *
+ * - header frame: [1][version][cmd type][zone][agent][cmd id], sent once per session
+ * - lines frame: [2]([number: int][length: int][content: utf-8 bytes])*, batch of log lines
+ *
+ * The string in header frame is encoded as [length: short][utf-8 bytes]
+ *
+ * @author yang
+ */
+public final class CmdLogFrame {
+
+    public final static byte TYPE_HEADER = 1;
+
+    public final static byte TYPE_LINES = 2;
+
+    public final static byte VERSION = 1;
+
+    /**
+     * Header of log session
+     */
+    public final static class Header {
+
+        private final String cmdType;
+
+        private final String zone;
+
+        private final String agent;
+
+        private final String cmdId;
+
+        public Header(String cmdType, String zone, String agent, String cmdId) {
+            this.cmdType = cmdType;
+            this.zone = zone;
+            this.agent = agent;
+            this.cmdId = cmdId;
+        }
+
+        public String getCmdType() {
+            return cmdType;
+        }
+
+        public String getZone() {
+            return zone;
+        }
+
+        public String getAgent() {
+            return agent;
+        }
+
+        public String getCmdId() {
+            return cmdId;
+        }
+    }
+
+    /**
+     * Consumer of log line in lines frame, content is utf-8 bytes in buffer from offset with length
+     */
+    public interface LineConsumer {
+
+        void accept(int number, byte[] buffer, int offset, int length);
+    }
+
+    /**
+     * Accumulate log lines to lines frame, not thread safe
+     */
+    public final static class LinesWriter {
+
+        private byte[] buffer;
+
+        private int size = 0;
+
+        private int numOfLines = 0;
+
+        public LinesWriter(int initSize) {
+            buffer = new byte[Math.max(initSize, 1)];
+        }
+
+        public void add(int number, byte[] content) {
+            if (size == 0) {
+                ensure(1);
+                buffer[size++] = TYPE_LINES;
+            }
+
+            ensure(8 + content.length);
+            writeInt(number);
+            writeInt(content.length);
+            System.arraycopy(content, 0, buffer, size, content.length);
+            size += content.length;
+            numOfLines++;
+        }
+
+        /**
+         * Size of frame in bytes
+         */
+        public int size() {
+            return size;
+        }
+
+        public int numOfLines() {
+            return numOfLines;
+        }
+
+        /**
+         * Get frame of added lines and reset writer
+         */
+        public ByteBuffer flush() {
+            ByteBuffer frame = ByteBuffer.wrap(Arrays.copyOf(buffer, size));
+            size = 0;
+            numOfLines = 0;
+            return frame;
+        }
+
+        private void writeInt(int value) {
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        private void ensure(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+    }
+
+    public static ByteBuffer header(Header header) {
+        byte[][] fields = {
+            bytes(header.getCmdType()), bytes(header.getZone()), bytes(header.getAgent()), bytes(header.getCmdId())
+        };
+
+        int size = 2;
+        for (byte[] field : fields) {
+            size += 2 + field.length;
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        frame.put(TYPE_HEADER).put(VERSION);
+
+        for (byte[] field : fields) {
+            frame.putShort((short) field.length).put(field);
+        }
+
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Get frame type and move buffer position to frame body
+     */
+    public static byte readType(ByteBuffer frame) {
+        return frame.get();
+    }
+
+    /**
+     * Read header frame body
+     */
+    public static Header readHeader(ByteBuffer frame) {
+        byte version = frame.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported cmd log frame version " + version);
+        }
+
+        return new Header(readString(frame), readString(frame), readString(frame), readString(frame));
+    }
+
+    /**
+     * Read lines frame body
+     */
+    public static void readLines(ByteBuffer frame, LineConsumer consumer) {
+        if (!frame.hasArray()) {
+            ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+            copy.put(frame).flip();
+            frame = copy;
+        }
+
+        byte[] array = frame.array();
+
+        while (frame.remaining() >= 8) {
+            int number = frame.getInt();
+            int length = frame.getInt();
+            int offset = frame.arrayOffset() + frame.position();
+
+            consumer.accept(number, array, offset, length);
+            frame.position(frame.position() + length);
+        }
+    }
+
+    private static String readString(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.getShort()];
+        frame.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private CmdLogFrame() {
+
+    }
+}
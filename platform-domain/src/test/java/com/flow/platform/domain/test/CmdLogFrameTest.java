@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain.test;
+
+import com.flow.platform.domain.CmdLogFrame;
+import com.flow.platform.domain.CmdLogFrame.Header;
+import com.flow.platform.domain.CmdLogFrame.LinesWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class CmdLogFrameTest {
+
+    @Test
+    public void should_encode_and_decode_header_frame() {
+        // given:
+        ByteBuffer frame = CmdLogFrame.header(new Header("RUN_SHELL", "zone", "agent", "cmd-id"));
+
+        // when:
+        Assert.assertEquals(CmdLogFrame.TYPE_HEADER, CmdLogFrame.readType(frame));
+        Header header = CmdLogFrame.readHeader(frame);
+
+        // then:
+        Assert.assertEquals("RUN_SHELL", header.getCmdType());
+        Assert.assertEquals("zone", header.getZone());
+        Assert.assertEquals("agent", header.getAgent());
+        Assert.assertEquals("cmd-id", header.getCmdId());
+    }
+
+    @Test
+    public void should_encode_and_decode_lines_frame() {
+        // given:
+        LinesWriter writer = new LinesWriter(4);
+        writer.add(1, "hello".getBytes(StandardCharsets.UTF_8));
+        writer.add(2, new byte[0]);
+        writer.add(3, "世界".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(3, writer.numOfLines());
+
+        // when:
+        ByteBuffer frame = writer.flush();
+        Assert.assertEquals(0, writer.size());
+
+        List<String> lines = new ArrayList<>();
+        Assert.assertEquals(CmdLogFrame.TYPE_LINES, CmdLogFrame.readType(frame));
+        CmdLogFrame.readLines(frame, (number, buffer, offset, length) ->
+            lines.add(number + "#" + new String(buffer, offset, length, StandardCharsets.UTF_8)));
+
+        // then:
+        Assert.assertEquals(3, lines.size());
+        Assert.assertEquals("1#hello", lines.get(0));
+        Assert.assertEquals("2#", lines.get(1));
+        Assert.assertEquals("3#世界", lines.get(2));
+    }
+}
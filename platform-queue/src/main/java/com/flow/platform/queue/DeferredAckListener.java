@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue;
+
+/**
+ * Queue listener which acknowledges item after it has been processed asynchronously,
+ * for example buffered and written in batch.
+ *
+ * The item is removed from journal of queue only after ack is called, the ack must be called
+ * once processed even if it's failed, otherwise the item is kept until restart and delivered again.
+ * For queues not support deferred ack, the item is acknowledged after listener returned
+ *
+ * @author yang
+ */
+public interface DeferredAckListener<T> extends QueueListener<T> {
+
+    /**
+     * @param item queue item
+     * @param ack callback to acknowledge item
+     */
+    void onQueueItem(T item, Runnable ack);
+
+    @Override
+    default void onQueueItem(T item) {
+        onQueueItem(item, () -> {
+        });
+    }
+}
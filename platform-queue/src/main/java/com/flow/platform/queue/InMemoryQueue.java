@@ -16,93 +16,255 @@
 
 package com.flow.platform.queue;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import lombok.extern.log4j.Log4j2;
 
 /**
+ * In memory priority queue which can be consumed by multiple processors
+ *
+ * Items are split into partitions by key, each partition has its own processor,
+ * so items with the same key are always processed in order by the same thread
+ *
+ * The max size is only enforced when overflow policy is not UNBOUNDED
+ *
+ * All state is guarded by a single lock, processors wait on the condition of its partition
+ * and will be signaled on enqueue, resume and stop, so the state change takes effect immediately
+ *
  * @author yang
  */
 @Log4j2
 public class InMemoryQueue<T extends Comparable> extends PlatformQueue<T> {
 
-    private final PriorityBlockingQueue<T> queue;
+    private final static long DEQUEUE_TIMEOUT = 1000; // in millis
+
+    private final List<Partition> partitions;
+
+    private final Comparator<Entry<T>> entryComparator;
+
+    /**
+     * Resolve partition key from item, null key item will be distributed by round robin
+     */
+    private final Function<T, ?> keyResolver;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signaled when item removed from queue
+     */
+    private final Condition notFull = lock.newCondition();
 
-    private final Object lock = new Object();
+    /**
+     * Signaled when item added to any partition, for dequeue
+     */
+    private final Condition notEmpty = lock.newCondition();
+
+    private long sequence = 0;
+
+    private int roundRobin = 0;
+
+    private int count = 0;
+
+    /**
+     * Increased on every start, the processors from previous start will exit
+     */
+    private long generation = 0;
+
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.UNBOUNDED;
+
+    private volatile long offerTimeout = 10000; // in millis
 
     private volatile boolean stop = false;
 
     private volatile boolean pause = false;
 
     public InMemoryQueue(Executor executor, int maxSize, String name) {
-        super(executor, maxSize, name);
-        this.queue = new PriorityBlockingQueue<>(maxSize);
+        this(executor, maxSize, name, null);
     }
 
     public InMemoryQueue(Executor executor, int maxSize, String name, Comparator<T> comparator) {
-        super(executor, maxSize, name);
-        this.queue = new PriorityBlockingQueue<>(maxSize, comparator);
+        this(executor, maxSize, name, comparator, 1, null);
+    }
+
+    public InMemoryQueue(Executor executor,
+                         int maxSize,
+                         String name,
+                         Comparator<T> comparator,
+                         int concurrency,
+                         Function<T, ?> keyResolver) {
+        super(executor, maxSize, name, concurrency);
+        this.keyResolver = keyResolver;
+        this.entryComparator = new EntryComparator<>(comparator);
+
+        this.partitions = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            partitions.add(new Partition());
+        }
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    }
+
+    /**
+     * Set max time to wait for free space with BLOCK policy
+     */
+    public void setOfferTimeout(long timeout, TimeUnit unit) {
+        this.offerTimeout = unit.toMillis(timeout);
     }
 
     @Override
     public void start() {
-        stop = false;
-        executor.execute(new QueueProcessor());
+        long current;
+
+        lock.lock();
+        try {
+            stop = false;
+            current = ++generation;
+            signalPartitions();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Partition partition : partitions) {
+            executor.execute(new QueueProcessor(partition, current));
+        }
     }
 
     @Override
     public void stop() {
         cleanListener();
-        stop = true;
+
+        lock.lock();
+        try {
+            stop = true;
+            signalPartitions();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void enqueue(T item) {
-        queue.offer(item);
+        lock.lock();
+        try {
+            Entry<T> entry = new Entry<>(item, sequence++);
+
+            if (!reserve(entry)) {
+                return;
+            }
+
+            onEnqueue(item, entry.seq);
+
+            Partition partition = partitionOf(item);
+            partition.queue.offer(entry);
+            count++;
+            highWaterMark.accumulateAndGet(count, Math::max);
+
+            partition.notEmpty.signal();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * Get the highest priority item from queue, wait 1 second if queue is empty
+     */
     @Override
     public T dequeue() {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(DEQUEUE_TIMEOUT);
+
+        lock.lock();
         try {
-            return queue.poll(1, TimeUnit.SECONDS);
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            Partition target = null;
+            for (Partition partition : partitions) {
+                Entry<T> head = partition.queue.peek();
+                if (head == null) {
+                    continue;
+                }
+
+                if (target == null || entryComparator.compare(head, target.queue.peek()) < 0) {
+                    target = partition;
+                }
+            }
+
+            Entry<T> entry = take(target);
+            onRemove(entry.item, entry.seq);
+            return entry.item;
         } catch (InterruptedException e) {
             return null;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public int size() {
-        return queue.size();
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void pause() {
-        if (pause) {
-            return;
-        }
-
         pause = true;
     }
 
     @Override
     public void resume() {
-        if (!pause) {
-            return;
-        }
+        lock.lock();
+        try {
+            if (!pause) {
+                return;
+            }
 
-        synchronized (lock) {
-            lock.notifyAll();
+            pause = false;
+            signalPartitions();
+        } finally {
+            lock.unlock();
         }
-
-        pause = false;
     }
 
     @Override
     public void clean() {
-        queue.clear();
+        lock.lock();
+        try {
+            for (Partition partition : partitions) {
+                for (Entry<T> entry : partition.queue) {
+                    onRemove(entry.item, entry.seq);
+                }
+                partition.queue.clear();
+            }
+            count = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -110,35 +272,246 @@ public class InMemoryQueue<T extends Comparable> extends PlatformQueue<T> {
         return !pause && !stop;
     }
 
+    /**
+     * Called with queue lock held when item accepted by queue, the item will not be enqueued if exception thrown
+     *
+     * @param seq unique enqueue sequence of the item in this queue instance
+     */
+    protected void onEnqueue(T item, long seq) {
+    }
+
+    /**
+     * Called when item is processed by listeners, dequeued, dropped or cleaned from queue
+     *
+     * @param seq the enqueue sequence from onEnqueue
+     */
+    protected void onRemove(T item, long seq) {
+    }
+
+    /**
+     * Make space for the entry by overflow policy, must be called with lock held
+     *
+     * @return false if the entry should be dropped
+     */
+    private boolean reserve(Entry<T> entry) {
+        if (overflowPolicy == OverflowPolicy.UNBOUNDED || count < maxSize) {
+            return true;
+        }
+
+        if (overflowPolicy == OverflowPolicy.REJECT) {
+            numOfOverflow.incrementAndGet();
+            throw new QueueFullException(name, maxSize);
+        }
+
+        if (overflowPolicy == OverflowPolicy.DROP_LOWEST) {
+            numOfOverflow.incrementAndGet();
+            return dropLowest(entry);
+        }
+
+        // BLOCK policy
+        long nanos = TimeUnit.MILLISECONDS.toNanos(offerTimeout);
+        try {
+            while (count >= maxSize) {
+                if (nanos <= 0) {
+                    numOfOverflow.incrementAndGet();
+                    throw new QueueFullException(name, maxSize);
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueueFullException(name, maxSize);
+        }
+    }
+
+    /**
+     * Remove the lowest priority entry if it's lower than the given entry, must be called with lock held
+     *
+     * @return false if the given entry is the lowest one
+     */
+    private boolean dropLowest(Entry<T> entry) {
+        Partition target = null;
+        Entry<T> lowest = entry;
+
+        for (Partition partition : partitions) {
+            for (Entry<T> item : partition.queue) {
+                if (entryComparator.compare(item, lowest) > 0) {
+                    lowest = item;
+                    target = partition;
+                }
+            }
+        }
+
+        log.warn("Queue '{}' is full, drop item: {}", name, lowest.item);
+
+        if (target == null) {
+            return false;
+        }
+
+        target.queue.remove(lowest);
+        onRemove(lowest.item, lowest.seq);
+        count--;
+        return true;
+    }
+
+    /**
+     * Take head item from partition, must be called with lock held
+     */
+    private Entry<T> take(Partition partition) {
+        Entry<T> entry = partition.queue.poll();
+        if (entry == null) {
+            return null;
+        }
+
+        count--;
+        notFull.signal();
+        return entry;
+    }
+
+    /**
+     * Wake up all processors to check queue state, must be called with lock held
+     */
+    private void signalPartitions() {
+        for (Partition partition : partitions) {
+            partition.notEmpty.signalAll();
+        }
+    }
+
+    /**
+     * Get partition for item, must be called with lock held
+     */
+    private Partition partitionOf(T item) {
+        if (partitions.size() == 1) {
+            return partitions.get(0);
+        }
+
+        Object key = keyResolver == null ? null : keyResolver.apply(item);
+        int index = Objects.isNull(key) ? roundRobin++ : key.hashCode();
+        return partitions.get(Math.floorMod(index, partitions.size()));
+    }
+
+    private class Partition {
+
+        private final PriorityQueue<Entry<T>> queue = new PriorityQueue<>(entryComparator);
+
+        private final Condition notEmpty = lock.newCondition();
+    }
+
+    /**
+     * Queue entry with enqueue sequence, to keep FIFO order for items with same priority
+     */
+    private static class Entry<T> {
+
+        private final T item;
+
+        private final long seq;
+
+        Entry(T item, long seq) {
+            this.item = item;
+            this.seq = seq;
+        }
+    }
+
+    private static class EntryComparator<T> implements Comparator<Entry<T>> {
+
+        private final Comparator<T> comparator;
+
+        EntryComparator(Comparator<T> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compare(Entry<T> o1, Entry<T> o2) {
+            int result = comparator == null
+                ? ((Comparable) o1.item).compareTo(o2.item)
+                : comparator.compare(o1.item, o2.item);
+
+            return result != 0 ? result : Long.compare(o1.seq, o2.seq);
+        }
+    }
+
     private class QueueProcessor implements Runnable {
 
+        private final Partition partition;
+
+        private final long generation;
+
+        QueueProcessor(Partition partition, long generation) {
+            this.partition = partition;
+            this.generation = generation;
+        }
+
         @Override
+        @SuppressWarnings("unchecked")
         public void run() {
-            while (!stop) {
+            Entry<T> entry;
+
+            while ((entry = next()) != null) {
+                Entry<T> current = entry;
+
+                // item is removed after returned from all listeners and acked by deferred ack listeners
+                AtomicInteger numOfUnacked = new AtomicInteger(1);
+                Runnable remove = () -> {
+                    if (numOfUnacked.decrementAndGet() == 0) {
+                        onRemove(current.item, current.seq);
+                    }
+                };
 
-                synchronized (lock) {
-                    if (pause) {
-                        try {
-                            lock.wait();
-                        } catch (InterruptedException ignore) {
+                for (QueueListener<T> listener : listeners) {
+                    try {
+                        if (listener instanceof DeferredAckListener) {
+                            numOfUnacked.incrementAndGet();
+                            ((DeferredAckListener<T>) listener).onQueueItem(entry.item, once(remove));
+                            continue;
                         }
+
+                        listener.onQueueItem(entry.item);
+                    } catch (Throwable e) {
+                        log.error("Unexpected exception while queue '{}' processing: {}", name, e.getMessage());
                     }
                 }
 
-                try {
-                    T item = queue.poll(1000, TimeUnit.SECONDS);
+                remove.run();
+            }
+
+            log.trace("Queue '{}' processor exited", name);
+        }
+
+        private Runnable once(Runnable runnable) {
+            AtomicBoolean called = new AtomicBoolean(false);
+            return () -> {
+                if (called.compareAndSet(false, true)) {
+                    runnable.run();
+                }
+            };
+        }
 
-                    if (Objects.isNull(item)) {
-                        continue;
+        /**
+         * Wait for next item
+         *
+         * @return entry or null if processor should exit
+         */
+        private Entry<T> next() {
+            lock.lock();
+            try {
+                while (true) {
+                    if (stop || generation != InMemoryQueue.this.generation) {
+                        return null;
                     }
 
-                    for (QueueListener<T> listener : listeners) {
-                        listener.onQueueItem(item);
+                    if (!pause && !partition.queue.isEmpty()) {
+                        return take(partition);
                     }
 
-                } catch (InterruptedException ignore) {
-                    log.warn("InterruptedException occurred while queue processing: ", ignore.getMessage());
+                    partition.notEmpty.await();
                 }
+            } catch (InterruptedException e) {
+                log.warn("InterruptedException occurred while queue '{}' processing", name);
+                return null;
+            } finally {
+                lock.unlock();
             }
         }
     }
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Persistent priority queue which writes items to append-only memory mapped segment journal
+ *
+ * Record layout: [int length][byte type][long id][payload][int crc], length = 0 means end of segment.
+ * Processed items are marked by ACK record, and pending items will be recovered on queue created.
+ *
+ * A checkpoint writes all pending items to a new segment and deletes old segments,
+ * it's applied when segment is full or every 'checkpointInterval' records
+ *
+ * Items are delivered at least once, the item is re-delivered after restart if it was not processed
+ *
+ * @author yang
+ */
+@Log4j2
+public class JournalQueue<T extends PriorityQueueItem> extends InMemoryQueue<T> {
+
+    public final static int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024; // 64 MB
+
+    public final static int DEFAULT_CHECKPOINT_INTERVAL = 100000; // num of records
+
+    private final static String SEGMENT_PREFIX = "segment-";
+
+    private final static String SEGMENT_SUFFIX = ".log";
+
+    private final static byte TYPE_ADD = 1;
+
+    private final static byte TYPE_ACK = 2;
+
+    // length + type + id + crc
+    private final static int RECORD_OVERHEAD = 4 + 1 + 8 + 4;
+
+    private final Path dir;
+
+    private final QueueItemSerializer<T> serializer;
+
+    private final int segmentSize;
+
+    private final int checkpointInterval;
+
+    private final Object journalLock = new Object();
+
+    /**
+     * Pending item payload by enqueue sequence, in enqueue order
+     */
+    private final Map<Long, byte[]> pending = new LinkedHashMap<>();
+
+    private final List<Path> segments = new ArrayList<>();
+
+    private MappedByteBuffer active;
+
+    private long nextSegment = 0;
+
+    /**
+     * Record id = enqueue sequence + offset, the offset makes ids never overlap with ids in recovered segments
+     */
+    private long idOffset = 0;
+
+    private int numOfRecords = 0;
+
+    private boolean recovering = false;
+
+    private boolean checkpointing = false;
+
+    public JournalQueue(Executor executor,
+                        int maxSize,
+                        String name,
+                        Comparator<T> comparator,
+                        int concurrency,
+                        Function<T, ?> keyResolver,
+                        Path dir,
+                        QueueItemSerializer<T> serializer) {
+        this(executor, maxSize, name, comparator, concurrency, keyResolver, dir, serializer,
+            DEFAULT_SEGMENT_SIZE, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public JournalQueue(Executor executor,
+                        int maxSize,
+                        String name,
+                        Comparator<T> comparator,
+                        int concurrency,
+                        Function<T, ?> keyResolver,
+                        Path dir,
+                        QueueItemSerializer<T> serializer,
+                        int segmentSize,
+                        int checkpointInterval) {
+        super(executor, maxSize, name, comparator, concurrency, keyResolver);
+        this.dir = dir;
+        this.serializer = serializer;
+        this.segmentSize = segmentSize;
+        this.checkpointInterval = checkpointInterval;
+
+        try {
+            Files.createDirectories(dir);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to init queue journal at " + dir, e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+
+        synchronized (journalLock) {
+            active.force();
+        }
+    }
+
+    /**
+     * Write pending items to new segment and remove old segments
+     */
+    public void checkpoint() {
+        synchronized (journalLock) {
+            List<Path> old = new ArrayList<>(segments);
+            checkpointing = true;
+
+            try {
+                roll();
+                for (Map.Entry<Long, byte[]> entry : pending.entrySet()) {
+                    append(TYPE_ADD, entry.getKey(), entry.getValue());
+                }
+                active.force();
+
+                for (Path segment : old) {
+                    Files.deleteIfExists(segment);
+                    segments.remove(segment);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to checkpoint queue journal at " + dir, e);
+            } finally {
+                checkpointing = false;
+                numOfRecords = 0;
+            }
+
+            log.trace("Queue '{}' checkpoint with {} pending items", name, pending.size());
+        }
+    }
+
+    @Override
+    protected void onEnqueue(T item, long seq) {
+        byte[] payload = serializer.serialize(item);
+
+        synchronized (journalLock) {
+            long id = seq + idOffset;
+
+            if (!recovering) {
+                append(TYPE_ADD, id, payload);
+            }
+
+            pending.put(id, payload);
+        }
+    }
+
+    @Override
+    protected void onRemove(T item, long seq) {
+        synchronized (journalLock) {
+            long id = seq + idOffset;
+
+            if (pending.remove(id) == null) {
+                return;
+            }
+
+            append(TYPE_ACK, id, new byte[0]);
+        }
+    }
+
+    /**
+     * Load pending items from existing segments and enqueue to memory
+     */
+    private void recover() throws IOException {
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                existing.add(path);
+            }
+        }
+
+        Collections.sort(existing);
+        Map<Long, byte[]> recovered = new LinkedHashMap<>();
+
+        for (Path segment : existing) {
+            idOffset = Math.max(idOffset, read(segment, recovered) + 1);
+            segments.add(segment);
+            nextSegment = Math.max(nextSegment, segmentIndex(segment) + 1);
+        }
+
+        // enqueue recovered items without writing to journal, then write them to new segment by checkpoint
+        recovering = true;
+        try {
+            for (byte[] payload : recovered.values()) {
+                enqueue(serializer.deserialize(payload));
+            }
+        } finally {
+            recovering = false;
+        }
+
+        checkpoint();
+
+        if (!recovered.isEmpty()) {
+            log.info("Queue '{}' recovered {} pending items from {}", name, recovered.size(), dir);
+        }
+    }
+
+    /**
+     * Read records from segment
+     *
+     * @return max record id in segment
+     */
+    private long read(Path segment, Map<Long, byte[]> recovered) throws IOException {
+        long maxId = -1;
+
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+
+            while (buffer.remaining() >= RECORD_OVERHEAD) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+
+                // end of segment or broken record
+                if (length < 9 || length > buffer.remaining() - 4) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(region(buffer, start + 4, length));
+
+                byte type = buffer.get();
+                long id = buffer.getLong();
+                byte[] payload = new byte[length - 9];
+                buffer.get(payload);
+                int checksum = buffer.getInt();
+
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Queue '{}' broken record at {} of {}", name, start, segment);
+                    break;
+                }
+
+                maxId = Math.max(maxId, id);
+
+                if (type == TYPE_ADD) {
+                    recovered.put(id, payload);
+                } else if (type == TYPE_ACK) {
+                    recovered.remove(id);
+                }
+            }
+        }
+
+        return maxId;
+    }
+
+    /**
+     * Append record to active segment, must be called with journal lock held
+     */
+    private void append(byte type, long id, byte[] payload) {
+        int size = RECORD_OVERHEAD + payload.length;
+        if (size + 4 > segmentSize) {
+            throw new IllegalArgumentException("Queue item is too large for journal segment: " + size);
+        }
+
+        if (active.remaining() < size + 4 || (!checkpointing && numOfRecords >= checkpointInterval)) {
+            if (checkpointing) {
+                roll();
+            } else {
+                checkpoint();
+            }
+        }
+
+        int start = active.position();
+        int length = 9 + payload.length;
+
+        active.position(start + 4);
+        active.put(type);
+        active.putLong(id);
+        active.put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(region(active, start + 4, length));
+        active.putInt((int) crc.getValue());
+
+        // write length at last, so the record is invisible until it's completed
+        active.putInt(start, length);
+        numOfRecords++;
+    }
+
+    /**
+     * Create new segment as active segment
+     */
+    private void roll() {
+        Path segment = dir.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX));
+
+        try (FileChannel channel = FileChannel.open(segment,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            if (active != null) {
+                active.force();
+            }
+
+            active = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+            segments.add(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create queue journal segment " + segment, e);
+        }
+    }
+
+    private static ByteBuffer region(ByteBuffer buffer, int position, int length) {
+        ByteBuffer region = buffer.duplicate();
+        region.limit(position + length);
+        region.position(position);
+        return region;
+    }
+
+    private static long segmentIndex(Path segment) {
+        String fileName = segment.getFileName().toString();
+        String index = fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length());
+        try {
+            return Long.parseLong(index);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
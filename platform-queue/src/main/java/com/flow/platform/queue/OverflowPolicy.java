@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue;
+
+/**
+ * Policy to apply when enqueue to a queue which reached max size
+ *
+ * @author yang
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Max size is not enforced
+     */
+    UNBOUNDED,
+
+    /**
+     * Block caller until queue has space, throw QueueFullException if timeout
+     */
+    BLOCK,
+
+    /**
+     * Throw QueueFullException immediately
+     */
+    REJECT,
+
+    /**
+     * Remove the lowest priority item from queue, or drop the new item if it has the lowest priority
+     */
+    DROP_LOWEST
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Queue layer which routes items to partition queue by key, each partition can be paused and resumed independently
+ *
+ * Partition queues are created by factory on demand and each one has its own processor, the processors
+ * share the permits of concurrency from a fair semaphore, so items are drained across partitions in turn
+ * and a partition with many items cannot starve the others
+ *
+ * @author yang
+ */
+@Log4j2
+public class PartitionedQueue<T> extends PlatformQueue<T> {
+
+    /**
+     * Partition key for item without key
+     */
+    public final static String DEFAULT_KEY = "_default";
+
+    private final Function<T, String> keyResolver;
+
+    private final Function<String, PlatformQueue<T>> factory;
+
+    private final Map<String, PlatformQueue<T>> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Keys of partition paused by key
+     */
+    private final Set<String> pausedKeys = ConcurrentHashMap.newKeySet();
+
+    private final Semaphore permits;
+
+    private final AtomicInteger roundRobin = new AtomicInteger(0);
+
+    private volatile boolean started = false;
+
+    private volatile boolean pause = false;
+
+    /**
+     * @param concurrency num of items can be processed at the same time across all partitions
+     * @param keyResolver resolve partition key from item
+     * @param factory create partition queue by key
+     */
+    public PartitionedQueue(Executor executor,
+                            int maxSize,
+                            String name,
+                            int concurrency,
+                            Function<T, String> keyResolver,
+                            Function<String, PlatformQueue<T>> factory) {
+        super(executor, maxSize, name, concurrency);
+        this.keyResolver = keyResolver;
+        this.factory = factory;
+        this.permits = new Semaphore(concurrency, true);
+    }
+
+    /**
+     * Get partition queue by key, the partition will be created and started if queue is started
+     */
+    public PlatformQueue<T> partition(String key) {
+        return partitions.computeIfAbsent(key, k -> {
+            PlatformQueue<T> queue = factory.apply(k);
+            if (started) {
+                start(k, queue);
+            }
+
+            log.trace("Partition '{}' created for queue '{}'", k, name);
+            return queue;
+        });
+    }
+
+    /**
+     * Get keys of created partitions
+     */
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(partitions.keySet());
+    }
+
+    /**
+     * Hold partition which not process queue item, other partitions are not affected
+     */
+    public void pause(String key) {
+        pausedKeys.add(key);
+        partition(key).pause();
+    }
+
+    /**
+     * Resume partition, it's still on hold if the whole queue is paused
+     */
+    public void resume(String key) {
+        pausedKeys.remove(key);
+        if (!pause) {
+            partition(key).resume();
+        }
+    }
+
+    /**
+     * Partition processor is running
+     */
+    public boolean isRunning(String key) {
+        return isRunning() && !pausedKeys.contains(key);
+    }
+
+    @Override
+    public void start() {
+        started = true;
+        partitions.forEach(this::start);
+    }
+
+    @Override
+    public void stop() {
+        cleanListener();
+        started = false;
+
+        for (PlatformQueue<T> queue : partitions.values()) {
+            queue.stop();
+        }
+    }
+
+    @Override
+    public void enqueue(T item) {
+        String key = keyResolver.apply(item);
+
+        try {
+            partition(key == null ? DEFAULT_KEY : key).enqueue(item);
+        } catch (QueueFullException e) {
+            numOfOverflow.incrementAndGet();
+            throw e;
+        }
+
+        highWaterMark.accumulateAndGet(size(), Math::max);
+    }
+
+    /**
+     * Enqueue items to each partition in batch
+     */
+    @Override
+    public void enqueue(Collection<T> items) {
+        Map<String, List<T>> batches = new LinkedHashMap<>();
+        for (T item : items) {
+            String key = keyResolver.apply(item);
+            batches.computeIfAbsent(key == null ? DEFAULT_KEY : key, k -> new ArrayList<>()).add(item);
+        }
+
+        for (Map.Entry<String, List<T>> batch : batches.entrySet()) {
+            try {
+                partition(batch.getKey()).enqueue(batch.getValue());
+            } catch (QueueFullException e) {
+                numOfOverflow.incrementAndGet();
+                throw e;
+            }
+        }
+
+        highWaterMark.accumulateAndGet(size(), Math::max);
+    }
+
+    /**
+     * Get item from partitions in turn, the paused partitions are skipped
+     */
+    @Override
+    public T dequeue() {
+        List<String> keys = new ArrayList<>(partitions.keySet());
+
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(Math.floorMod(roundRobin.getAndIncrement(), keys.size()));
+            PlatformQueue<T> queue = partitions.get(key);
+
+            if (!isRunning(key) || queue.size() == 0) {
+                continue;
+            }
+
+            T item = queue.dequeue();
+            if (item != null) {
+                return item;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (PlatformQueue<T> queue : partitions.values()) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void pause() {
+        pause = true;
+
+        for (PlatformQueue<T> queue : partitions.values()) {
+            queue.pause();
+        }
+    }
+
+    @Override
+    public void resume() {
+        pause = false;
+
+        partitions.forEach((key, queue) -> {
+            if (!pausedKeys.contains(key)) {
+                queue.resume();
+            }
+        });
+    }
+
+    @Override
+    public void clean() {
+        for (PlatformQueue<T> queue : partitions.values()) {
+            queue.clean();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return started && !pause;
+    }
+
+    private void start(String key, PlatformQueue<T> queue) {
+        boolean paused = pause || pausedKeys.contains(key);
+
+        // pause before start for queue which keeps pause state, and after start for queue which not
+        if (paused) {
+            queue.pause();
+        }
+
+        queue.cleanListener();
+        queue.register(this::dispatch);
+        queue.start();
+
+        if (paused) {
+            queue.pause();
+        }
+    }
+
+    /**
+     * Dispatch item from partition processor to listeners when permit acquired
+     */
+    private void dispatch(T item) {
+        permits.acquireUninterruptibly();
+
+        try {
+            for (QueueListener<T> listener : listeners) {
+                try {
+                    listener.onQueueItem(item);
+                } catch (Throwable e) {
+                    log.error("Unexpected exception while queue '{}' processing: {}", name, e.getMessage());
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -16,34 +16,104 @@
 
 package com.flow.platform.queue;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.log4j.Log4j2;
 
 /**
  * @author yang
  */
+@Log4j2
 public abstract class PlatformQueue<T> {
 
+    /**
+     * The delay timer thread exits if no delayed item within the time
+     */
+    private final static long DELAY_TIMER_IDLE_TIMEOUT = 60; // in seconds
+
     protected final Executor executor;
 
     protected final int maxSize;
 
     protected final String name;
 
-    protected final List<QueueListener<T>> listeners = new LinkedList<>();
+    /**
+     * Num of consumers to process queue item
+     */
+    protected final int concurrency;
+
+    protected final List<QueueListener<T>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Max num of items in queue since queue created
+     */
+    protected final AtomicInteger highWaterMark = new AtomicInteger(0);
+
+    /**
+     * Num of items rejected or dropped since queue is full
+     */
+    protected final AtomicLong numOfOverflow = new AtomicLong(0);
+
+    /**
+     * Items waiting for delivery time, which are enqueued by delay timer thread
+     */
+    private final DelayQueue<DelayedItem<T>> delayed = new DelayQueue<>();
+
+    private final Object delayTimerLock = new Object();
+
+    private Thread delayTimer;
 
     public PlatformQueue(Executor executor, int maxSize, String name) {
+        this(executor, maxSize, name, 1);
+    }
+
+    public PlatformQueue(Executor executor, int maxSize, String name, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Queue concurrency must be positive");
+        }
+
         this.executor = executor;
         this.maxSize = maxSize;
         this.name = name;
+        this.concurrency = concurrency;
     }
 
     public String getName() {
         return name;
     }
 
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    public long getNumOfOverflow() {
+        return numOfOverflow.get();
+    }
+
+    /**
+     * Num of items waiting for delivery time
+     */
+    public int getNumOfDelayed() {
+        return delayed.size();
+    }
+
     /**
      * Register queue item listener
      */
@@ -68,9 +138,45 @@ public abstract class PlatformQueue<T> {
 
     /**
      * Put queue item to queue
+     *
+     * @throws QueueFullException if queue is bounded and item cannot be enqueued
      */
     public abstract void enqueue(T item);
 
+    /**
+     * Put queue items in batch, default is enqueue one by one, queue on broker can override it
+     * to publish in batch
+     *
+     * @throws QueueFullException if queue is bounded and item cannot be enqueued
+     */
+    public void enqueue(Collection<T> items) {
+        for (T item : items) {
+            enqueue(item);
+        }
+    }
+
+    /**
+     * Put queue item to queue after delay, the consumer thread is not blocked while waiting
+     *
+     * The delayed items are kept in memory until delivered, and do not count to queue size
+     */
+    public void enqueue(T item, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            enqueue(item);
+            return;
+        }
+
+        delayed.put(new DelayedItem<>(item, System.nanoTime() + unit.toNanos(delay)));
+
+        synchronized (delayTimerLock) {
+            if (delayTimer == null) {
+                delayTimer = new Thread(this::deliverDelayed, name + "-delay-timer");
+                delayTimer.setDaemon(true);
+                delayTimer.start();
+            }
+        }
+    }
+
     /**
      * Get top item from queue
      */
@@ -100,4 +206,73 @@ public abstract class PlatformQueue<T> {
      * Queue processor is running
      */
     public abstract boolean isRunning();
+
+    /**
+     * Delay timer loop to enqueue items when delivery time reached
+     */
+    private void deliverDelayed() {
+        while (true) {
+            DelayedItem<T> delayedItem;
+
+            try {
+                delayedItem = delayed.poll(DELAY_TIMER_IDLE_TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                synchronized (delayTimerLock) {
+                    delayTimer = null;
+                }
+                return;
+            }
+
+            if (delayedItem == null) {
+                synchronized (delayTimerLock) {
+                    if (delayed.isEmpty()) {
+                        delayTimer = null;
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            // deliver all items reached delivery time in batch
+            List<T> items = new ArrayList<>();
+            items.add(delayedItem.item);
+
+            List<DelayedItem<T>> expired = new ArrayList<>();
+            delayed.drainTo(expired);
+            for (DelayedItem<T> item : expired) {
+                items.add(item.item);
+            }
+
+            try {
+                enqueue(items);
+            } catch (Throwable e) {
+                log.warn("Unable to enqueue {} delayed items to queue '{}': {}", items.size(), name, e.getMessage());
+            }
+        }
+    }
+
+    private static class DelayedItem<T> implements Delayed {
+
+        private final T item;
+
+        /**
+         * Delivery time in nanos from System.nanoTime
+         */
+        private final long deliverAt;
+
+        DelayedItem(T item, long deliverAt) {
+            this.item = item;
+            this.deliverAt = deliverAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deliverAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(deliverAt, ((DelayedItem) o).deliverAt);
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue.test;
+
+import com.flow.platform.queue.DefaultQueueMessage;
+import com.flow.platform.queue.InMemoryQueue;
+import com.flow.platform.queue.PriorityQueueItem;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of in memory queue with different num of consumers,
+ * the listener simulates a short blocking call like db round trip
+ *
+ * Run by main method from IDE or 'java -cp <test classpath> ...InMemoryQueueBenchmark'
+ *
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryQueueBenchmark {
+
+    private final static int NUM_OF_ITEMS = 1000;
+
+    private final static int NUM_OF_KEYS = 64;
+
+    private final static long PROCESS_TIME_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    @Param({"1", "4", "16"})
+    private int consumers;
+
+    private ExecutorService executor;
+
+    private InMemoryQueue<PriorityQueueItem> queue;
+
+    private volatile CountDownLatch latch;
+
+    private DefaultQueueMessage[] messages;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = Executors.newFixedThreadPool(consumers);
+        queue = new InMemoryQueue<>(executor, NUM_OF_ITEMS, "BenchmarkQueue", null, consumers,
+            item -> new String(item.getBody()));
+
+        queue.register(item -> {
+            LockSupport.parkNanos(PROCESS_TIME_NANOS);
+            latch.countDown();
+        });
+
+        messages = new DefaultQueueMessage[NUM_OF_ITEMS];
+        for (int i = 0; i < NUM_OF_ITEMS; i++) {
+            messages[i] = new DefaultQueueMessage(Integer.toString(i % NUM_OF_KEYS).getBytes(), 1L);
+        }
+
+        queue.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        queue.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_OF_ITEMS)
+    public void enqueueAndProcess() throws InterruptedException {
+        latch = new CountDownLatch(NUM_OF_ITEMS);
+
+        for (DefaultQueueMessage message : messages) {
+            queue.enqueue(message);
+        }
+
+        latch.await();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(InMemoryQueueBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue.test;
+
+import com.flow.platform.queue.DefaultQueueMessage;
+import com.flow.platform.queue.InMemoryQueue;
+import com.flow.platform.queue.OverflowPolicy;
+import com.flow.platform.queue.PriorityQueueItem;
+import com.flow.platform.queue.QueueFullException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class InMemoryQueueTest {
+
+    private final static int MAX_SIZE = 2;
+
+    private final static long MAX_LATENCY = 100; // in millis
+
+    private ExecutorService executor;
+
+    private InMemoryQueue<PriorityQueueItem> queue;
+
+    @Before
+    public void init() {
+        executor = Executors.newCachedThreadPool();
+        queue = new InMemoryQueue<>(executor, MAX_SIZE, "TestQueue");
+    }
+
+    @After
+    public void stop() {
+        queue.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void should_not_limit_size_for_unbounded_queue() {
+        queue.enqueue(message("1", 1));
+        queue.enqueue(message("2", 1));
+        queue.enqueue(message("3", 1));
+
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(3, queue.getHighWaterMark());
+        Assert.assertEquals(0, queue.getNumOfOverflow());
+    }
+
+    @Test(expected = QueueFullException.class)
+    public void should_reject_item_when_queue_is_full() {
+        queue.setOverflowPolicy(OverflowPolicy.REJECT);
+        queue.enqueue(message("1", 1));
+        queue.enqueue(message("2", 1));
+        queue.enqueue(message("3", 1));
+    }
+
+    @Test
+    public void should_throw_exception_when_block_timeout() {
+        queue.setOverflowPolicy(OverflowPolicy.BLOCK);
+        queue.setOfferTimeout(100, TimeUnit.MILLISECONDS);
+        queue.enqueue(message("1", 1));
+        queue.enqueue(message("2", 1));
+
+        long start = System.currentTimeMillis();
+        try {
+            queue.enqueue(message("3", 1));
+            Assert.fail();
+        } catch (QueueFullException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+        }
+
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(1, queue.getNumOfOverflow());
+    }
+
+    @Test
+    public void should_enqueue_when_space_released_for_block_policy() throws Throwable {
+        queue.setOverflowPolicy(OverflowPolicy.BLOCK);
+        queue.setOfferTimeout(10, TimeUnit.SECONDS);
+        queue.enqueue(message("1", 1));
+        queue.enqueue(message("2", 1));
+
+        executor.execute(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignore) {
+            }
+            queue.dequeue();
+        });
+
+        queue.enqueue(message("3", 1));
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals("2", body(queue.dequeue()));
+        Assert.assertEquals("3", body(queue.dequeue()));
+    }
+
+    @Test
+    public void should_drop_lowest_priority_item_when_queue_is_full() {
+        queue.setOverflowPolicy(OverflowPolicy.DROP_LOWEST);
+        queue.enqueue(message("low", 1));
+        queue.enqueue(message("high", 10));
+
+        // when: enqueue higher priority item, the lowest one should be dropped
+        queue.enqueue(message("middle", 5));
+        Assert.assertEquals(2, queue.size());
+
+        // when: enqueue lowest priority item, it should be dropped
+        queue.enqueue(message("lowest", 0));
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(2, queue.getNumOfOverflow());
+
+        Assert.assertEquals("high", body(queue.dequeue()));
+        Assert.assertEquals("middle", body(queue.dequeue()));
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void should_dispatch_item_immediately_after_resume() throws Throwable {
+        // given: paused queue with item
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong dispatchedAt = new AtomicLong();
+        queue.register(item -> {
+            dispatchedAt.set(System.nanoTime());
+            latch.countDown();
+        });
+
+        queue.start();
+        queue.pause();
+        queue.enqueue(message("1", 1));
+
+        // then: item should not be dispatched while pause
+        Assert.assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(queue.isRunning());
+
+        // when:
+        long resumeAt = System.nanoTime();
+        queue.resume();
+
+        // then: latency from resume to first dispatched item
+        Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        long latency = TimeUnit.NANOSECONDS.toMillis(dispatchedAt.get() - resumeAt);
+        Assert.assertTrue("Resume latency " + latency + " ms", latency < MAX_LATENCY);
+    }
+
+    @Test
+    public void should_exit_processor_immediately_after_stop() throws Throwable {
+        // given:
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        InMemoryQueue<PriorityQueueItem> queue = new InMemoryQueue<>(single, MAX_SIZE, "StopQueue");
+        queue.start();
+        Thread.sleep(50);
+
+        // when:
+        long stopAt = System.nanoTime();
+        queue.stop();
+        single.shutdown();
+
+        // then: processor thread released
+        Assert.assertTrue(single.awaitTermination(1, TimeUnit.SECONDS));
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stopAt);
+        Assert.assertTrue("Stop latency " + latency + " ms", latency < MAX_LATENCY);
+    }
+
+    @Test
+    public void should_deliver_item_after_delay_without_blocking() throws Throwable {
+        // given:
+        CountDownLatch latch = new CountDownLatch(2);
+        AtomicLong delayedAt = new AtomicLong();
+        queue.register(item -> {
+            if (body(item).equals("delayed")) {
+                delayedAt.set(System.nanoTime());
+            }
+            latch.countDown();
+        });
+        queue.start();
+
+        // when: enqueue delayed item before normal item
+        long enqueueAt = System.nanoTime();
+        queue.enqueue(message("delayed", 1), 300, TimeUnit.MILLISECONDS);
+        queue.enqueue(message("normal", 1));
+
+        // then: delayed item not in queue before due
+        Assert.assertEquals(1, queue.getNumOfDelayed());
+
+        // then: delayed item dispatched after delay
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        long delay = TimeUnit.NANOSECONDS.toMillis(delayedAt.get() - enqueueAt);
+        Assert.assertTrue("Delay " + delay + " ms", delay >= 300);
+        Assert.assertEquals(0, queue.getNumOfDelayed());
+    }
+
+    @Test
+    public void should_enqueue_expired_delayed_items_in_batch() throws Throwable {
+        // given: queue records batch size, the first batch takes time until other items expired
+        List<Integer> batches = new CopyOnWriteArrayList<>();
+        InMemoryQueue<PriorityQueueItem> queue = new InMemoryQueue<PriorityQueueItem>(executor, 10, "BatchQueue") {
+            @Override
+            public void enqueue(Collection<PriorityQueueItem> items) {
+                batches.add(items.size());
+                if (batches.size() == 1) {
+                    sleep(300);
+                }
+                super.enqueue(items);
+            }
+        };
+
+        // when:
+        queue.enqueue(message("1", 1), 50, TimeUnit.MILLISECONDS);
+        queue.enqueue(message("2", 1), 100, TimeUnit.MILLISECONDS);
+        queue.enqueue(message("3", 1), 100, TimeUnit.MILLISECONDS);
+        sleep(1000);
+
+        // then:
+        Assert.assertEquals("[1, 2]", batches.toString());
+        Assert.assertEquals(3, queue.size());
+        queue.stop();
+    }
+
+    @Test
+    public void should_keep_order_for_same_key_with_multiple_consumers() throws Throwable {
+        // given: queue with 4 consumers keyed by first char of body
+        final int numOfItems = 400;
+        InMemoryQueue<PriorityQueueItem> queue = new InMemoryQueue<>(executor, numOfItems, "KeyQueue", null, 4,
+            item -> new String(item.getBody()).charAt(0));
+
+        CountDownLatch latch = new CountDownLatch(numOfItems);
+        int[] last = new int[]{-1, -1};
+        queue.register(item -> {
+            String body = new String(item.getBody());
+            int index = body.charAt(0) - 'a';
+            int value = Integer.parseInt(body.substring(1));
+            Assert.assertTrue(value > last[index]);
+            last[index] = value;
+            latch.countDown();
+        });
+
+        // when:
+        queue.start();
+        for (int i = 0; i < numOfItems / 2; i++) {
+            queue.enqueue(message("a" + i, 1));
+            queue.enqueue(message("b" + i, 1));
+        }
+
+        // then:
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(numOfItems / 2 - 1, last[0]);
+        Assert.assertEquals(numOfItems / 2 - 1, last[1]);
+        queue.stop();
+    }
+
+    private static PriorityQueueItem message(String body, long priority) {
+        return new DefaultQueueMessage(body.getBytes(), priority);
+    }
+
+    private static String body(PriorityQueueItem item) {
+        return new String(item.getBody());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignore) {
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue.test;
+
+import com.flow.platform.queue.DefaultQueueMessage;
+import com.flow.platform.queue.DeferredAckListener;
+import com.flow.platform.queue.JournalQueue;
+import com.flow.platform.queue.PriorityQueueItem;
+import com.flow.platform.queue.QueueItemSerializer;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class JournalQueueTest {
+
+    private final static QueueItemSerializer<PriorityQueueItem> SERIALIZER = new MessageSerializer();
+
+    private ExecutorService executor;
+
+    private Path dir;
+
+    @Before
+    public void init() throws Throwable {
+        executor = Executors.newCachedThreadPool();
+        dir = Files.createTempDirectory("journal-queue-test");
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            Arrays.stream(files).forEach(File::delete);
+        }
+        dir.toFile().delete();
+    }
+
+    @Test
+    public void should_recover_pending_items_with_priority_after_restart() throws Throwable {
+        // given: queue with items
+        JournalQueue<PriorityQueueItem> queue = create(1024 * 1024, 1000);
+        queue.enqueue(message("1", 1));
+        queue.enqueue(message("2", 1));
+        queue.enqueue(message("3", 10));
+        queue.enqueue(message("4", 1));
+
+        // when: dequeue the highest priority item and restart
+        Assert.assertEquals("3", body(queue.dequeue()));
+        queue.stop();
+
+        // then: pending items should be recovered in order
+        JournalQueue<PriorityQueueItem> recovered = create(1024 * 1024, 1000);
+        Assert.assertEquals(3, recovered.size());
+        Assert.assertEquals("1", body(recovered.dequeue()));
+        Assert.assertEquals("2", body(recovered.dequeue()));
+        Assert.assertEquals("4", body(recovered.dequeue()));
+        recovered.stop();
+
+        // then: nothing recovered since all items been dequeued
+        Assert.assertEquals(0, create(1024 * 1024, 1000).size());
+    }
+
+    @Test
+    public void should_ack_item_after_processed_by_listener() throws Throwable {
+        // given:
+        JournalQueue<PriorityQueueItem> queue = create(1024 * 1024, 1000);
+        CountDownLatch latch = new CountDownLatch(2);
+        queue.register(item -> latch.countDown());
+
+        // when:
+        queue.start();
+        queue.enqueue(message("1", 1));
+        queue.enqueue(message("2", 1));
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        queue.stop();
+
+        // then:
+        Assert.assertEquals(0, create(1024 * 1024, 1000).size());
+    }
+
+    @Test
+    public void should_keep_item_in_journal_until_deferred_ack() throws Throwable {
+        // given: listener buffers items and acks later
+        JournalQueue<PriorityQueueItem> queue = create(1024 * 1024, 1000);
+        CountDownLatch latch = new CountDownLatch(2);
+        List<Runnable> acks = new CopyOnWriteArrayList<>();
+
+        queue.register((DeferredAckListener<PriorityQueueItem>) (item, ack) -> {
+            acks.add(ack);
+            latch.countDown();
+        });
+
+        // when: only ack the first item before restart
+        queue.start();
+        queue.enqueue(message("1", 1));
+        queue.enqueue(message("2", 1));
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        acks.get(0).run();
+        acks.get(0).run();
+        queue.stop();
+
+        // then: the unacked item is recovered
+        JournalQueue<PriorityQueueItem> recovered = create(1024 * 1024, 1000);
+        Assert.assertEquals(1, recovered.size());
+        Assert.assertEquals("2", body(recovered.dequeue()));
+    }
+
+    @Test
+    public void should_checkpoint_and_keep_pending_items_when_segment_full() throws Throwable {
+        // given: small segment which can hold few records
+        JournalQueue<PriorityQueueItem> queue = create(256, 5);
+
+        // when: enqueue and dequeue many items to roll segments
+        for (int i = 0; i < 100; i++) {
+            queue.enqueue(message("item-" + i, 1));
+            if (i < 97) {
+                queue.dequeue();
+            }
+        }
+        queue.stop();
+
+        // then: old segments been removed and pending items are recovered
+        Assert.assertTrue(dir.toFile().listFiles().length <= 2);
+
+        JournalQueue<PriorityQueueItem> recovered = create(256, 5);
+        Assert.assertEquals(3, recovered.size());
+        Assert.assertEquals("item-97", body(recovered.dequeue()));
+    }
+
+    private JournalQueue<PriorityQueueItem> create(int segmentSize, int checkpointInterval) {
+        return new JournalQueue<>(executor, 1000, "JournalQueue", null, 1, null, dir, SERIALIZER,
+            segmentSize, checkpointInterval);
+    }
+
+    private static PriorityQueueItem message(String body, long priority) {
+        return new DefaultQueueMessage(body.getBytes(), priority);
+    }
+
+    private static String body(PriorityQueueItem item) {
+        return new String(item.getBody());
+    }
+
+    private static class MessageSerializer implements QueueItemSerializer<PriorityQueueItem> {
+
+        @Override
+        public byte[] serialize(PriorityQueueItem item) {
+            return ByteBuffer.allocate(8 + item.getBody().length)
+                .putLong(item.getPriority())
+                .put(item.getBody())
+                .array();
+        }
+
+        @Override
+        public PriorityQueueItem deserialize(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long priority = buffer.getLong();
+            byte[] body = new byte[buffer.remaining()];
+            buffer.get(body);
+            return new DefaultQueueMessage(body, priority);
+        }
+    }
+}
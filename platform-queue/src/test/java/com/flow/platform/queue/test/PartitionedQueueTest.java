@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue.test;
+
+import com.flow.platform.queue.DefaultQueueMessage;
+import com.flow.platform.queue.InMemoryQueue;
+import com.flow.platform.queue.PartitionedQueue;
+import com.flow.platform.queue.PriorityQueueItem;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class PartitionedQueueTest {
+
+    private ExecutorService executor;
+
+    private PartitionedQueue<PriorityQueueItem> queue;
+
+    @Before
+    public void init() {
+        executor = Executors.newCachedThreadPool();
+
+        // partition key is the first char of body
+        queue = new PartitionedQueue<>(executor, 1000, "ZoneQueue", 1,
+            item -> new String(item.getBody()).substring(0, 1),
+            key -> new InMemoryQueue<>(executor, 1000, "ZoneQueue-" + key));
+    }
+
+    @After
+    public void stop() {
+        queue.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void should_not_block_other_partition_when_partition_paused() throws Throwable {
+        // given:
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> processed = new CopyOnWriteArrayList<>();
+        queue.register(item -> {
+            processed.add(new String(item.getBody()));
+            latch.countDown();
+        });
+        queue.start();
+
+        // when: pause partition 'a' and enqueue to both partitions
+        queue.pause("a");
+        queue.enqueue(message("a1"));
+        queue.enqueue(message("b1"));
+
+        // then: item of partition 'b' been processed
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        Assert.assertEquals(1, processed.size());
+        Assert.assertEquals("b1", processed.get(0));
+        Assert.assertFalse(queue.isRunning("a"));
+        Assert.assertTrue(queue.isRunning("b"));
+        Assert.assertEquals(1, queue.size());
+
+        // when:
+        queue.resume("a");
+
+        // then:
+        Thread.sleep(500);
+        Assert.assertEquals(2, processed.size());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void should_drain_items_across_partitions_in_turn() throws Throwable {
+        // given: many items in partition 'a' and few items in partition 'b'
+        final int numOfItems = 20;
+        for (int i = 0; i < numOfItems; i++) {
+            queue.enqueue(message("a" + i));
+        }
+        queue.enqueue(message("b1"));
+        queue.enqueue(message("b2"));
+
+        CountDownLatch latch = new CountDownLatch(numOfItems + 2);
+        List<String> processed = new CopyOnWriteArrayList<>();
+        queue.register(item -> {
+            processed.add(new String(item.getBody()));
+            sleep(10);
+            latch.countDown();
+        });
+
+        // when:
+        queue.start();
+
+        // then: items of partition 'b' not wait for all items of partition 'a'
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(processed.indexOf("b2") < numOfItems / 2);
+    }
+
+    private static PriorityQueueItem message(String body) {
+        return new DefaultQueueMessage(body.getBytes(), 1L);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignore) {
+        }
+    }
+}
@@ -21,7 +21,6 @@ import com.flow.platform.util.git.model.GitCommit;
 import com.flow.platform.util.git.model.GitProject;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -36,16 +35,23 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import org.eclipse.jgit.api.CloneCommand;
+import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.PullCommand;
 import org.eclipse.jgit.api.TransportCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.util.FileUtils;
 
 /**
@@ -55,6 +61,8 @@ public abstract class JGitBasedClient implements GitClient {
 
     protected static final int GIT_TRANS_TIMEOUT = 30; // in seconds
 
+    private static final String DEFAULT_BRANCH = "master";
+
     /**
      * The url of git repo
      */
@@ -65,6 +73,11 @@ public abstract class JGitBasedClient implements GitClient {
      */
     protected Path targetDir; // target base directory
 
+    /**
+     * The dir of bare mirror for fetching file, ex: /baseDir/{repo name}.git
+     */
+    protected Path mirrorDir;
+
     public JGitBasedClient(String gitUrl, Path baseDir) {
         this.gitUrl = gitUrl;
 
@@ -85,6 +98,7 @@ public abstract class JGitBasedClient implements GitClient {
 
         String repoName = gitUrl.substring(lastSlashIndex + 1, dotGitIndex);
         this.targetDir = Paths.get(baseDir.toString(), repoName);
+        this.mirrorDir = Paths.get(baseDir.toString(), repoName + ".git");
     }
 
     @Override
@@ -131,20 +145,39 @@ public abstract class JGitBasedClient implements GitClient {
         return gitDir;
     }
 
+    /**
+     * Fetch branch to bare mirror incrementally and read file from object database of fetched commit,
+     * the working tree is not checked out
+     */
     @Override
     public String fetch(String branch, String filePath, ProgressMonitor monitor) throws GitException {
-        clone(branch, Sets.newHashSet(filePath), monitor);
-        Path targetPath = Paths.get(targetDir.toString(), filePath);
+        checkGitUrl();
 
-        if (Files.exists(targetPath)) {
-            try {
-                return com.google.common.io.Files.toString(targetPath.toFile(), Charset.forName("UTF-8"));
-            } catch (IOException e) {
+        if (Strings.isNullOrEmpty(branch)) {
+            branch = DEFAULT_BRANCH;
+        }
+
+        try (Git git = mirrorOpen()) {
+            Repository repo = git.getRepository();
+            FetchCommand fetchCommand = git.fetch()
+                .setRemote("origin")
+                .setRefSpecs(new RefSpec(String.format("+refs/heads/%s:refs/heads/%s", branch, branch)))
+                .setTagOpt(TagOpt.NO_TAGS)
+                .setProgressMonitor(monitor == null ? new DebugProgressMonitor() : monitor);
+
+            buildCommand(fetchCommand).setTimeout(GIT_TRANS_TIMEOUT).call();
+
+            Ref ref = repo.exactRef(Constants.R_HEADS + branch);
+            if (ref == null) {
                 return null;
             }
-        }
 
-        return null;
+            return readFile(repo, ref.getObjectId(), filePath);
+        } catch (GitException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new GitException("Fail to fetch file: " + ExceptionUtil.findRootCause(e).getMessage());
+        }
     }
 
     @Override
@@ -205,11 +238,11 @@ public abstract class JGitBasedClient implements GitClient {
     }
 
     /**
-     * Get latest commit by ref name from local .git
+     * Get latest commit by ref name from bare mirror if existed, otherwise from local .git
      */
     @Override
     public GitCommit commit(String refName) throws GitException {
-        try (Git git = gitOpen()) {
+        try (Git git = Files.exists(mirrorDir) ? mirrorOpen() : gitOpen()) {
             Repository repo = git.getRepository();
             Ref head = repo.findRef(refName);
 
@@ -263,6 +296,51 @@ public abstract class JGitBasedClient implements GitClient {
         }
     }
 
+    /**
+     * Open bare mirror, create it with remote info if not existed
+     */
+    private Git mirrorOpen() throws GitException {
+        if (Files.exists(mirrorDir)) {
+            try {
+                return Git.open(mirrorDir.toFile());
+            } catch (IOException e) {
+                // broken mirror will be created again
+                try {
+                    FileUtils.delete(mirrorDir.toFile(), FileUtils.RECURSIVE);
+                } catch (IOException ignore) {
+                }
+            }
+        }
+
+        try {
+            Git git = Git.init().setBare(true).setGitDir(mirrorDir.toFile()).call();
+            configRemote(git.getRepository().getConfig(), "origin", gitUrl);
+            return git;
+        } catch (GitAPIException e) {
+            throw new GitException("Fail to init git mirror at: " + mirrorDir, e);
+        }
+    }
+
+    /**
+     * Read file content of commit from object database
+     *
+     * @return file content or null if file not existed
+     */
+    private static String readFile(Repository repo, ObjectId commitId, String filePath) throws IOException {
+        try (RevWalk walk = new RevWalk(repo)) {
+            RevCommit commit = walk.parseCommit(commitId);
+
+            try (TreeWalk treeWalk = TreeWalk.forPath(repo, filePath, commit.getTree())) {
+                if (treeWalk == null) {
+                    return null;
+                }
+
+                ObjectLoader loader = repo.open(treeWalk.getObjectId(0), Constants.OBJ_BLOB);
+                return new String(loader.getBytes(), Charset.forName("UTF-8"));
+            }
+        }
+    }
+
     private Git gitOpen() throws GitException {
         try {
             return Git.open(getGitPath().toFile());
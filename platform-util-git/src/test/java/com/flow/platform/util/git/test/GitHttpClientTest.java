@@ -19,11 +19,15 @@ package com.flow.platform.util.git.test;
 import com.flow.platform.util.git.GitHttpClient;
 import com.google.common.collect.Sets;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Rule;
@@ -77,6 +81,47 @@ public class GitHttpClientTest {
         }
     }
 
+    @Test
+    public void should_fetch_file_from_mirror_incrementally() throws Throwable {
+        // given: local bare repo as remote with .flow.yml
+        File workDir = folder.newFolder("work");
+        File remoteDir = new File(folder.getRoot(), "for-testing.git");
+
+        try (Git work = Git.init().setDirectory(workDir).call()) {
+            commitFile(work, ".flow.yml", "version: 1");
+            Git.cloneRepository().setBare(true).setURI(workDir.toURI().toString()).setDirectory(remoteDir).call().close();
+
+            String remoteUrl = "file://" + remoteDir.getAbsolutePath();
+            Path baseDir = folder.newFolder("source").toPath();
+            GitHttpClient client = new GitHttpClient(remoteUrl, baseDir, "", "");
+
+            // when: fetch file
+            String content = client.fetch("master", ".flow.yml", null);
+
+            // then: file read from bare mirror without working tree
+            Assert.assertEquals("version: 1", content);
+            Assert.assertTrue(Files.exists(Paths.get(baseDir.toString(), "for-testing.git")));
+            Assert.assertFalse(Files.exists(client.targetPath()));
+            Assert.assertNull(client.fetch("master", "not-exist.yml", null));
+
+            // when: new commit pushed to remote and fetch again
+            RevCommit latest = commitFile(work, ".flow.yml", "version: 2");
+            work.push().setRemote(remoteUrl).add("master").call();
+
+            // then: latest file content and commit loaded from mirror
+            Assert.assertEquals("version: 2", client.fetch("master", ".flow.yml", null));
+            Assert.assertEquals(latest.getId().getName(), client.commit("master").getId());
+        }
+    }
+
+    private static RevCommit commitFile(Git git, String fileName, String content) throws Throwable {
+        File file = new File(git.getRepository().getWorkTree(), fileName);
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+
+        git.add().addFilepattern(fileName).call();
+        return git.commit().setMessage("update " + fileName).call();
+    }
+
     @After
     public void after() {
         folder.delete();
@@ -18,8 +18,10 @@ package com.flow.platform.util.http;
 
 import static com.flow.platform.util.http.HttpResponse.EXCEPTION_STATUS_CODE;
 
+import com.flow.platform.util.ExponentialBackoff;
 import com.flow.platform.util.StringUtil;
 import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -28,9 +30,16 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.http.HttpEntity;
+import org.apache.http.NoHttpResponseException;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -39,14 +48,81 @@ import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 
 /**
+ * Http client on shared connection pool, the connection is kept alive and reused by requests
+ *
  * @author yang
  */
 public class HttpClient {
 
+    private final static int HTTP_TIMEOUT = 5 * 1000;
+
+    private final static int DEFAULT_MAX_TOTAL = 200;
+
+    private final static int DEFAULT_MAX_PER_ROUTE = 20;
+
+    private final static long IDLE_TIMEOUT = 30; // in seconds
+
+    private final static long KEEP_ALIVE_TIMEOUT = 30 * 1000; // in millis
+
+    private final static int VALIDATE_AFTER_INACTIVITY = 1000; // in millis
+
+    private final static long RETRY_INITIAL_DELAY = 100; // in millis
+
+    private final static long RETRY_MAX_DELAY = 5 * 1000; // in millis
+
+    private final static RequestConfig DEFAULT_CONFIG = RequestConfig.custom()
+        .setConnectTimeout(HTTP_TIMEOUT)
+        .setConnectionRequestTimeout(HTTP_TIMEOUT)
+        .setSocketTimeout(HTTP_TIMEOUT)
+        .build();
+
+    private final static PoolingHttpClientConnectionManager CONNECTION_MANAGER = createConnectionManager();
+
+    private final static CloseableHttpClient SHARED_CLIENT = HttpClientBuilder.create()
+        .setConnectionManager(CONNECTION_MANAGER)
+        .setDefaultRequestConfig(DEFAULT_CONFIG)
+        .setKeepAliveStrategy((response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : KEEP_ALIVE_TIMEOUT;
+        })
+        .setRetryHandler((exception, executionCount, context) -> {
+            // the pooled connection may be closed by server while idle
+            if (exception instanceof NoHttpResponseException && executionCount <= 1) {
+                return true;
+            }
+            return DefaultHttpRequestRetryHandler.INSTANCE.retryRequest(exception, executionCount, context);
+        })
+        .evictExpiredConnections()
+        .evictIdleConnections(IDLE_TIMEOUT, TimeUnit.SECONDS)
+        .build();
+
+    private final static ExponentialBackoff RETRY_BACKOFF =
+        new ExponentialBackoff(RETRY_INITIAL_DELAY, RETRY_MAX_DELAY, 0.2);
+
+    /**
+     * Timer to schedule next attempt of submitted request, it only waits for retry delay and never runs request
+     */
+    private final static ScheduledExecutorService RETRY_TIMER = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("http-retry-timer-%d").setDaemon(true).build());
+
+    /**
+     * Set limits of shared connection pool
+     *
+     * @param maxTotal max num of connections
+     * @param maxPerRoute max num of connections for each host
+     */
+    public static void setPoolSize(int maxTotal, int maxPerRoute) {
+        CONNECTION_MANAGER.setMaxTotal(maxTotal);
+        CONNECTION_MANAGER.setDefaultMaxPerRoute(maxPerRoute);
+    }
+
     /**
      * Build basic http authorization header by user and pass
      */
@@ -66,14 +142,6 @@ public class HttpClient {
         return new HttpClient(url);
     }
 
-    private final static int HTTP_TIMEOUT = 5 * 1000;
-
-    private final RequestConfig config = RequestConfig.custom()
-        .setConnectTimeout(HTTP_TIMEOUT)
-        .setConnectionRequestTimeout(HTTP_TIMEOUT)
-        .setSocketTimeout(HTTP_TIMEOUT)
-        .build();
-
     private final String url;
 
     private HttpRequestBase httpRequest;
@@ -82,8 +150,6 @@ public class HttpClient {
 
     private int retried = 0;
 
-    private CloseableHttpResponse failureResponse;
-
     private List<Throwable> exceptions = new LinkedList<>();
 
     private HttpClient(String url) {
@@ -151,24 +217,26 @@ public class HttpClient {
      */
     public HttpResponse<String> bodyAsString() {
         final List<HttpResponse<String>> wrapper = new ArrayList<>(1);
+        exec(httpResponse -> wrapper.add(toStringResponse(httpResponse)));
+        return wrapper.get(0);
+    }
 
-        exec(httpResponse -> {
-            if (httpResponse == null) {
-                wrapper.add(new HttpResponse<>(retried, EXCEPTION_STATUS_CODE, exceptions, StringUtil.EMPTY));
-                return;
-            }
-
-            try {
-                int statusCode = httpResponse.getStatusLine().getStatusCode();
-                String body = EntityUtils.toString(httpResponse.getEntity(), "UTF-8");
-                wrapper.add(new HttpResponse<>(retried, statusCode, exceptions, body));
-            } catch (IOException e) {
-                exceptions.add(e);
-                wrapper.add(new HttpResponse<>(retried, EXCEPTION_STATUS_CODE, exceptions, StringUtil.EMPTY));
-            }
-        });
+    /**
+     * Submit blocking http request to executor, the caller thread is not blocked.
+     *
+     * It is not non-blocking I/O: each attempt holds a thread of the executor until response or timeout,
+     * so num of requests in flight is limited by the executor. Only the delay between retries does not
+     * hold a thread since the next attempt is scheduled by timer
+     *
+     * @param executor executor to run http request, the future is completed exceptionally if rejected
+     */
+    public CompletableFuture<HttpResponse<String>> submitBodyAsString(Executor executor) {
+        requireHttpRequestInstance();
 
-        return wrapper.get(0);
+        CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+        retried = 0;
+        submitAttempt(future, executor);
+        return future;
     }
 
     public void bodyAsStream(Consumer<HttpResponse<InputStream>> response) {
@@ -189,36 +257,126 @@ public class HttpClient {
         });
     }
 
+    /**
+     * Execute http request with retry, the response of last attempt is passed to consumer
+     * and the connection is released to pool after consumer processed
+     */
     private void exec(Consumer<CloseableHttpResponse> consumer) {
         requireHttpRequestInstance();
 
-        if (retried > numOfRetry) {
-            retried--;
-            consumer.accept(failureResponse);
-            return;
+        for (retried = 0; ; retried++) {
+            boolean isLastAttempt = retried >= numOfRetry;
+
+            try (CloseableHttpResponse response = SHARED_CLIENT.execute(httpRequest)) {
+                try {
+                    int statusCode = response.getStatusLine().getStatusCode();
+
+                    if (statusCode == 200 || isLastAttempt) {
+                        consumer.accept(response);
+                        return;
+                    }
+                } finally {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
+            } catch (IOException e) {
+                exceptions.add(e);
+
+                if (isLastAttempt) {
+                    consumer.accept(null);
+                    return;
+                }
+            }
+
+            if (!waitForRetry()) {
+                consumer.accept(null);
+                return;
+            }
         }
+    }
+
+    /**
+     * Execute an attempt of submitted request, schedule next attempt by exponential backoff if it's failed
+     */
+    private void execAttempt(CompletableFuture<HttpResponse<String>> future, Executor executor) {
+        boolean isLastAttempt = retried >= numOfRetry;
 
-        try (CloseableHttpClient httpClient = HttpClientBuilder.create().setDefaultRequestConfig(config).build()) {
-            try (CloseableHttpResponse response = httpClient.execute(httpRequest)) {
+        try (CloseableHttpResponse response = SHARED_CLIENT.execute(httpRequest)) {
+            try {
                 int statusCode = response.getStatusLine().getStatusCode();
 
-                if (statusCode == 200) {
-                    consumer.accept(response);
+                if (statusCode == 200 || isLastAttempt) {
+                    future.complete(toStringResponse(response));
                     return;
                 }
+            } finally {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+        } catch (IOException e) {
+            exceptions.add(e);
 
-                failureResponse = response;
-                retried++;
-                exec(consumer);
+            if (isLastAttempt) {
+                future.complete(toStringResponse(null));
+                return;
             }
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            return;
+        }
+
+        long delay = RETRY_BACKOFF.delay(retried++);
+        RETRY_TIMER.schedule(() -> submitAttempt(future, executor), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void submitAttempt(CompletableFuture<HttpResponse<String>> future, Executor executor) {
+        try {
+            executor.execute(() -> execAttempt(future, executor));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Read response body as string, the null response means request failed with exception
+     */
+    private HttpResponse<String> toStringResponse(CloseableHttpResponse httpResponse) {
+        if (httpResponse == null) {
+            return new HttpResponse<>(retried, EXCEPTION_STATUS_CODE, exceptions, StringUtil.EMPTY);
+        }
+
+        try {
+            int statusCode = httpResponse.getStatusLine().getStatusCode();
+            String body = EntityUtils.toString(httpResponse.getEntity(), "UTF-8");
+            return new HttpResponse<>(retried, statusCode, exceptions, body);
         } catch (IOException e) {
             exceptions.add(e);
+            return new HttpResponse<>(retried, EXCEPTION_STATUS_CODE, exceptions, StringUtil.EMPTY);
+        }
+    }
 
-            retried++;
-            exec(consumer);
+    /**
+     * Wait before next attempt by exponential backoff
+     *
+     * @return false if thread interrupted
+     */
+    private boolean waitForRetry() {
+        try {
+            Thread.sleep(RETRY_BACKOFF.delay(retried));
+            return true;
+        } catch (InterruptedException e) {
+            exceptions.add(e);
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
+    private static PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(DEFAULT_MAX_TOTAL);
+        manager.setDefaultMaxPerRoute(DEFAULT_MAX_PER_ROUTE);
+        manager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+        return manager;
+    }
+
     private void requireHttpRequestInstance() {
         if (httpRequest == null) {
             throw new IllegalArgumentException("The http GET POST PUT DELETE method must be set");
@@ -32,6 +32,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Rule;
@@ -127,6 +131,28 @@ public class HttpClientTest {
         Assert.assertEquals(5, response.getRetried());
     }
 
+    @Test
+    public void should_get_with_retry_when_submit_to_executor() throws Throwable {
+        final String url = "http://127.0.0.1:8080/some/thing";
+        final String errorMessage = "Hello world!";
+
+        stubFor(get(urlEqualTo("/some/thing"))
+            .willReturn(aResponse()
+                .withHeader("Content-Type", "text/plain")
+                .withStatus(500)
+                .withBody(errorMessage)));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CompletableFuture<HttpResponse<String>> future = HttpClient.build(url).get().retry(2).submitBodyAsString(executor);
+
+        HttpResponse<String> response = future.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        Assert.assertEquals(500, response.getStatusCode());
+        Assert.assertEquals(errorMessage, response.getBody());
+        Assert.assertEquals(2, response.getRetried());
+    }
+
     @Test
     public void should_post_with_body_as_string() throws Throwable {
         final String url = "http://127.0.0.1:8080/some/aa";
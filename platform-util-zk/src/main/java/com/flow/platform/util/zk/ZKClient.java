@@ -20,8 +20,10 @@ import com.flow.platform.util.zk.ZkException.BadVersion;
 import com.flow.platform.util.zk.ZkException.NotExitException;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +31,8 @@ import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.framework.api.DeleteBuilder;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
+import org.apache.curator.framework.api.transaction.OperationType;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
 import org.apache.curator.framework.recipes.cache.NodeCache;
 import org.apache.curator.framework.recipes.cache.NodeCacheListener;
@@ -39,6 +43,7 @@ import org.apache.curator.framework.recipes.cache.TreeCacheListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
 
 /**
  * @author yang
@@ -108,6 +113,8 @@ public class ZKClient implements Closeable {
     /**
      * Create zookeeper node if not exist, or update node data
      *
+     * The node is created directly and updated only if NodeExists returned, so no extra existence check
+     *
      * @param path target zookeeper node path
      * @param data node data, it can be set to null
      * @return zookeeper node path just created
@@ -117,16 +124,14 @@ public class ZKClient implements Closeable {
             data = new byte[0];
         }
 
-        if (exist(path)) {
-            setData(path, data);
-            return path;
-        }
-
         try {
             return client.create()
                 .creatingParentsIfNeeded()
                 .withMode(CreateMode.PERSISTENT)
                 .forPath(path, data);
+        } catch (KeeperException.NodeExistsException e) {
+            setData(path, data);
+            return path;
         } catch (Throwable e) {
             throw checkException(String.format("Fail to create node: %s", path), e);
         }
@@ -144,12 +149,14 @@ public class ZKClient implements Closeable {
             data = new byte[0];
         }
 
-        if (exist(path)) {
+        try {
+            return createEphemeralPrivate(path, data);
+        } catch (KeeperException.NodeExistsException e) {
             setData(path, data);
             return path;
+        } catch (Throwable e) {
+            throw checkException(String.format("Fail to create node: %s", path), e);
         }
-
-        return createEphemeralPrivate(path, data);
     }
 
     /**
@@ -158,16 +165,47 @@ public class ZKClient implements Closeable {
      * @return
      */
     public String createEphemeral(String path) {
-        return createEphemeralPrivate(path, null);
+        try {
+            return createEphemeralPrivate(path, null);
+        } catch (Throwable e) {
+            throw checkException(String.format("Fail to create node: %s", path), e);
+        }
     }
 
-    private String createEphemeralPrivate(String path, byte[] data) {
+    private String createEphemeralPrivate(String path, byte[] data) throws Exception {
+        return client.create()
+            .withMode(CreateMode.EPHEMERAL)
+            .forPath(path, data);
+    }
+
+    /**
+     * Create persistent sequential node only if guard node exists, in one transaction
+     *
+     * @param guardPath node path must be existed
+     * @param path sequential node path prefix, the parent node must be existed
+     * @param data node data, it can be set to null
+     * @return zookeeper node path with sequence just created
+     */
+    public String createSequential(String guardPath, String path, byte[] data) {
+        if (data == null) {
+            data = new byte[0];
+        }
+
         try {
-            return client.create()
-                .withMode(CreateMode.EPHEMERAL)
-                .forPath(path, data);
+            Collection<CuratorTransactionResult> results = client.inTransaction()
+                .check().forPath(guardPath).and()
+                .create().withMode(CreateMode.PERSISTENT_SEQUENTIAL).forPath(path, data).and()
+                .commit();
+
+            for (CuratorTransactionResult result : results) {
+                if (result.getType() == OperationType.CREATE) {
+                    return result.getResultPath();
+                }
+            }
+
+            return null;
         } catch (Throwable e) {
-            throw checkException(String.format("Fail to create node: %s", path), e);
+            throw checkException(String.format("Fail to create sequential node: %s", path), e);
         }
     }
 
@@ -179,11 +217,10 @@ public class ZKClient implements Closeable {
         }
     }
 
+    /**
+     * Set node data, throw NotExitException if node not exist
+     */
     public void setData(String path, byte[] data) {
-        if (!exist(path)) {
-            throw new ZkException("Zookeeper node path does not existed", null);
-        }
-
         try {
             client.setData().forPath(path, data);
         } catch (Throwable e) {
@@ -191,11 +228,10 @@ public class ZKClient implements Closeable {
         }
     }
 
+    /**
+     * Get node data, throw NotExitException if node not exist
+     */
     public byte[] getData(String path) {
-        if (!exist(path)) {
-            throw new ZkException("Zookeeper node path does not existed", null);
-        }
-
         try {
             return client.getData().forPath(path);
         } catch (Throwable e) {
@@ -203,6 +239,133 @@ public class ZKClient implements Closeable {
         }
     }
 
+    /**
+     * Create persistent node with parents in background, or update node data if node exists
+     *
+     * @return future of zookeeper node path
+     */
+    public CompletableFuture<String> createAsync(String path, byte[] data) {
+        final byte[] nodeData = data == null ? new byte[0] : data;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        try {
+            client.create()
+                .creatingParentsIfNeeded()
+                .withMode(CreateMode.PERSISTENT)
+                .inBackground((c, event) -> {
+                    Code code = Code.get(event.getResultCode());
+
+                    if (code == Code.NODEEXISTS) {
+                        setDataAsync(path, nodeData).whenComplete((ignore, e) -> complete(future, path, e));
+                        return;
+                    }
+
+                    complete(future, code, event.getName(), "Fail to create node: " + path);
+                }, executor())
+                .forPath(path, nodeData);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(String.format("Fail to create node: %s", path), e));
+        }
+
+        return future;
+    }
+
+    /**
+     * Create ephemeral node in background, or update node data if node exists
+     *
+     * @return future of zookeeper node path
+     */
+    public CompletableFuture<String> createEphemeralAsync(String path, byte[] data) {
+        final byte[] nodeData = data == null ? new byte[0] : data;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        try {
+            client.create()
+                .withMode(CreateMode.EPHEMERAL)
+                .inBackground((c, event) -> {
+                    Code code = Code.get(event.getResultCode());
+
+                    if (code == Code.NODEEXISTS) {
+                        setDataAsync(path, nodeData).whenComplete((ignore, e) -> complete(future, path, e));
+                        return;
+                    }
+
+                    complete(future, code, event.getName(), "Fail to create node: " + path);
+                }, executor())
+                .forPath(path, nodeData);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(String.format("Fail to create node: %s", path), e));
+        }
+
+        return future;
+    }
+
+    /**
+     * Set node data in background, the future completed with NotExitException if node not exist
+     *
+     * @return future of zookeeper node path
+     */
+    public CompletableFuture<String> setDataAsync(String path, byte[] data) {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        try {
+            client.setData()
+                .inBackground((c, event) -> {
+                    Code code = Code.get(event.getResultCode());
+                    complete(future, code, path, "Fail to set data for node: " + path);
+                }, executor())
+                .forPath(path, data);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(String.format("Fail to set data for node: %s", path), e));
+        }
+
+        return future;
+    }
+
+    /**
+     * Get node data in background, the future completed with NotExitException if node not exist
+     *
+     * @return future of node data
+     */
+    public CompletableFuture<byte[]> getDataAsync(String path) {
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        try {
+            client.getData()
+                .inBackground((c, event) -> {
+                    Code code = Code.get(event.getResultCode());
+                    complete(future, code, event.getData(), "Fail to get data for node: " + path);
+                }, executor())
+                .forPath(path);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(String.format("Fail to get data for node: %s", path), e));
+        }
+
+        return future;
+    }
+
+    /**
+     * Delete node in background, the future completed normally if node not exist
+     *
+     * @return future of zookeeper node path
+     */
+    public CompletableFuture<String> deleteAsync(String path) {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        try {
+            client.delete()
+                .inBackground((c, event) -> {
+                    Code code = Code.get(event.getResultCode());
+                    complete(future, code == Code.NONODE ? Code.OK : code, path, "Fail to delete node: " + path);
+                }, executor())
+                .forPath(path);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(String.format("Fail to delete node: %s", path), e));
+        }
+
+        return future;
+    }
+
     public void delete(String path, boolean isDeleteChildren) {
         try {
             if (!exist(path)) {
@@ -290,6 +453,15 @@ public class ZKClient implements Closeable {
     }
 
     public boolean watchChildren(String rootPath, PathChildrenCacheListener listener) {
+        return watchChildren(rootPath, false, listener);
+    }
+
+    /**
+     * Watch children of root path
+     *
+     * @param cacheData is child node data included in event
+     */
+    public boolean watchChildren(String rootPath, boolean cacheData, PathChildrenCacheListener listener) {
         if (!exist(rootPath)) {
             return false;
         }
@@ -300,7 +472,7 @@ public class ZKClient implements Closeable {
         }
 
         try {
-            pcc = new PathChildrenCache(client, rootPath, false);
+            pcc = new PathChildrenCache(client, rootPath, cacheData);
             pcc.start();
 
             if (executor != null) {
@@ -345,6 +517,31 @@ public class ZKClient implements Closeable {
         }
     }
 
+    /**
+     * Executor for background callback, the curator event thread is used if task executor not set
+     */
+    private Executor executor() {
+        return executor != null ? executor : Runnable::run;
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, Code code, T result, String message) {
+        if (code == Code.OK) {
+            future.complete(result);
+            return;
+        }
+
+        future.completeExceptionally(checkException(message, KeeperException.create(code)));
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, T result, Throwable e) {
+        if (e == null) {
+            future.complete(result);
+            return;
+        }
+
+        future.completeExceptionally(e);
+    }
+
     private static ZkException checkException(String defaultMessage, Throwable e) {
         if (e instanceof KeeperException) {
             KeeperException zkException = (KeeperException) e;
@@ -18,8 +18,10 @@ package com.flow.platform.util.zk.test;
 
 import com.flow.platform.util.zk.ZKClient;
 import com.flow.platform.util.zk.ZkException;
+import com.flow.platform.util.zk.ZkException.NotExitException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -169,6 +171,106 @@ public class ZkClientTest {
         Assert.assertEquals(false, zkClient.exist(childPath));
     }
 
+    @Test
+    public void should_create_set_get_and_delete_node_async() throws Throwable {
+        // given:
+        String rootPath = ZKPaths.makePath("/", "flow-test-async");
+        String childPath = ZKPaths.makePath(rootPath, "child-node");
+
+        // when: create child node with parents
+        Assert.assertEquals(childPath, zkClient.createAsync(childPath, "hello".getBytes()).get(10, TimeUnit.SECONDS));
+
+        // then:
+        Assert.assertEquals("hello", new String(zkClient.getDataAsync(childPath).get(10, TimeUnit.SECONDS)));
+
+        // when: create again for existing node
+        Assert.assertEquals(childPath, zkClient.createAsync(childPath, "world".getBytes()).get(10, TimeUnit.SECONDS));
+
+        // then: node data should be updated
+        Assert.assertEquals("world", new String(zkClient.getData(childPath)));
+
+        // when: set data
+        zkClient.setDataAsync(childPath, "flow".getBytes()).get(10, TimeUnit.SECONDS);
+
+        // then:
+        Assert.assertEquals("flow", new String(zkClient.getData(childPath)));
+
+        // when: delete node twice
+        zkClient.deleteAsync(childPath).get(10, TimeUnit.SECONDS);
+        zkClient.deleteAsync(childPath).get(10, TimeUnit.SECONDS);
+
+        // then:
+        Assert.assertFalse(zkClient.exist(childPath));
+        zkClient.delete(rootPath, false);
+    }
+
+    @Test
+    public void should_create_ephemeral_node_async_or_update_data() throws Throwable {
+        // given:
+        String path = ZKPaths.makePath("/", "flow-test-ephemeral-async");
+
+        // when: create ephemeral node twice
+        zkClient.createEphemeralAsync(path, "hello".getBytes()).get(10, TimeUnit.SECONDS);
+        zkClient.createEphemeralAsync(path, "world".getBytes()).get(10, TimeUnit.SECONDS);
+
+        // then:
+        Assert.assertEquals("world", new String(zkClient.getData(path)));
+        Assert.assertEquals(0, zkClient.getChildren(path).size());
+        zkClient.delete(path, false);
+    }
+
+    @Test
+    public void should_throw_not_exist_exception_when_node_not_exist() throws Throwable {
+        // given:
+        String path = ZKPaths.makePath("/", "flow-test-not-exist");
+
+        // when: set data for sync and async
+        try {
+            zkClient.setData(path, "hello".getBytes());
+            Assert.fail();
+        } catch (NotExitException ignore) {
+        }
+
+        try {
+            zkClient.getDataAsync(path).get(10, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            // then:
+            Assert.assertTrue(e.getCause() instanceof NotExitException);
+        }
+    }
+
+    @Test
+    public void should_create_sequential_node_only_if_guard_node_exist() throws Throwable {
+        // given:
+        String guardPath = ZKPaths.makePath("/", "flow-test-guard");
+        String rootPath = ZKPaths.makePath("/", "flow-test-mailbox");
+        zkClient.create(rootPath, null);
+
+        // when: create sequential node without guard node
+        try {
+            zkClient.createSequential(guardPath, ZKPaths.makePath(rootPath, "cmd-"), "hello".getBytes());
+            Assert.fail();
+        } catch (NotExitException ignore) {
+        }
+
+        // then:
+        Assert.assertEquals(0, zkClient.getChildren(rootPath).size());
+
+        // when: create sequential nodes with guard node
+        zkClient.createEphemeral(guardPath, null);
+        String first = zkClient.createSequential(guardPath, ZKPaths.makePath(rootPath, "cmd-"), "1".getBytes());
+        String second = zkClient.createSequential(guardPath, ZKPaths.makePath(rootPath, "cmd-"), "2".getBytes());
+
+        // then: nodes created in order
+        Assert.assertTrue(first.compareTo(second) < 0);
+        Assert.assertEquals("1", new String(zkClient.getData(first)));
+        Assert.assertEquals("2", new String(zkClient.getData(second)));
+
+        zkClient.delete(rootPath, true);
+        zkClient.delete(guardPath, false);
+    }
+
     @Test
     public void should_listen_node_change_event() throws Throwable {
         // init: create node and watch it
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flow.platform.util.zk.test;
+
+import com.flow.platform.util.zk.ZKClient;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.curator.test.TestingServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Latency to dispatch cmd to agent node against embedded zookeeper
+ *
+ * - existCheck: exist + exist + set data per cmd, which is the dispatch path before async api
+ * - setData: single set data per cmd
+ * - setDataAsync: set data in background for a batch of cmd and wait for all
+ *
+ * Run by main method from IDE or 'java -cp <test classpath> ...ZkDispatchBenchmark'
+ *
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZkDispatchBenchmark {
+
+    private final static String AGENT_PATH = "/flow-agents/default/benchmark";
+
+    private final static int BATCH_SIZE = 100;
+
+    private final static byte[] CMD = new byte[512];
+
+    private TestingServer server;
+
+    private ZKClient zkClient;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new TestingServer();
+        server.start();
+
+        zkClient = new ZKClient(server.getConnectString());
+        zkClient.start();
+        zkClient.create(AGENT_PATH, null);
+    }
+
+    @TearDown
+    public void teardown() throws Exception {
+        zkClient.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void existCheck() {
+        if (!zkClient.exist(AGENT_PATH) || !zkClient.exist(AGENT_PATH)) {
+            throw new IllegalStateException("Agent node not found");
+        }
+
+        zkClient.setData(AGENT_PATH, CMD);
+    }
+
+    @Benchmark
+    public void setData() {
+        zkClient.setData(AGENT_PATH, CMD);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void setDataAsync() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            futures[i] = zkClient.setDataAsync(AGENT_PATH, CMD);
+        }
+
+        CompletableFuture.allOf(futures).join();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ZkDispatchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flow.platform.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Calculate retry delay which doubled on each attempt and limited by max delay,
+ * the jitter randomize the delay to avoid retry at the same time
+ *
+ * @author yang
+ */
+public class ExponentialBackoff {
+
+    private final long initialDelay;
+
+    private final long maxDelay;
+
+    /**
+     * Percentage of delay to randomize, from 0 to 1
+     */
+    private final double jitter;
+
+    public ExponentialBackoff(long initialDelay, long maxDelay) {
+        this(initialDelay, maxDelay, 0);
+    }
+
+    public ExponentialBackoff(long initialDelay, long maxDelay, double jitter) {
+        if (initialDelay <= 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Illegal initial delay or max delay for backoff");
+        }
+
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter must be from 0 to 1");
+        }
+
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Get delay for attempt
+     *
+     * @param attempt num of attempt start from 0
+     */
+    public long delay(int attempt) {
+        long delay = maxDelay;
+
+        // avoid overflow on large attempt
+        if (attempt < Long.numberOfLeadingZeros(initialDelay) - 1) {
+            delay = Math.min(initialDelay << Math.max(attempt, 0), maxDelay);
+        }
+
+        if (jitter == 0) {
+            return delay;
+        }
+
+        long range = (long) (delay * jitter);
+        return delay - range + ThreadLocalRandom.current().nextLong(range + 1);
+    }
+}
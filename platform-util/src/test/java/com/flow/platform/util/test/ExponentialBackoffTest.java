@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flow.platform.util.test;
+
+import com.flow.platform.util.ExponentialBackoff;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class ExponentialBackoffTest {
+
+    @Test
+    public void should_double_delay_until_max_delay() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 1000);
+
+        Assert.assertEquals(100, backoff.delay(0));
+        Assert.assertEquals(200, backoff.delay(1));
+        Assert.assertEquals(800, backoff.delay(3));
+        Assert.assertEquals(1000, backoff.delay(4));
+        Assert.assertEquals(1000, backoff.delay(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void should_randomize_delay_with_jitter() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 1000, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.delay(1);
+            Assert.assertTrue(delay >= 100 && delay <= 200);
+        }
+    }
+}
@@ -16,6 +16,19 @@ CREATE TABLE `agent` (
 
 
 
+# ------------------------------------------------------------
+
+CREATE TABLE `agent_session` (
+  `agent_zone` varchar(50) NOT NULL,
+  `agent_name` varchar(100) NOT NULL,
+  `session_id` varchar(50) NOT NULL,
+  `session_date` datetime DEFAULT NULL,
+  PRIMARY KEY (`agent_zone`,`agent_name`,`session_id`),
+  KEY `idx_agent_session_id` (`session_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+
+
 # ------------------------------------------------------------
 
 CREATE TABLE `cmd` (
@@ -0,0 +1,13 @@
+USE flow_cc_db;
+
+CREATE TABLE `agent_session` (
+  `agent_zone` varchar(50) NOT NULL,
+  `agent_name` varchar(100) NOT NULL,
+  `session_id` varchar(50) NOT NULL,
+  `session_date` datetime DEFAULT NULL,
+  PRIMARY KEY (`agent_zone`,`agent_name`,`session_id`),
+  KEY `idx_agent_session_id` (`session_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO agent_session (agent_zone, agent_name, session_id, session_date)
+SELECT agent_zone, agent_name, session_id, session_date FROM agent WHERE session_id IS NOT NULL;